@@ -6,6 +6,9 @@ plugins {
 group = "za.co.wethinkcode"
 version = "1.0-SNAPSHOT"
 
+// Class data sharing archive for the installed CLI, recorded by the cdsArchive task below
+val cdsArchive = "lib/${project.name}.jsa"
+
 application {
     mainClass.set("za.co.wethinkcode.taskmanager.cli.TaskManagerCli")
 }
@@ -17,6 +20,8 @@ repositories {
 dependencies {
     implementation("commons-cli:commons-cli:1.9.0")
     implementation("com.google.code.gson:gson:2.11.0")
+    // Embedded database behind JdbcTaskStore; only reached through JDBC
+    runtimeOnly("com.h2database:h2:2.2.224")
 
     // JUnit Jupiter dependencies
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
@@ -38,4 +43,56 @@ tasks.test {
         events("passed", "skipped", "failed")
         showStandardStreams = true
     }
-}
\ No newline at end of file
+}
+
+// Benchmarks are plain main() classes in their own source set, e.g.
+// ./gradlew benchmark -Pbenchmark=TaskCodecBenchmark --args="100000 1000000"
+// They are compiled only when one is run; TaskFootprintBenchmark reads object layouts through
+// sun.misc.Unsafe, which the compiler warns about.
+val benchmark: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[benchmark.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[benchmark.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+    description = "Runs one of the benchmarks in za.co.wethinkcode.taskmanager.benchmark"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("za.co.wethinkcode.taskmanager.benchmark." + (project.findProperty("benchmark") ?: "TaskCodecBenchmark"))
+    jvmArgs("-Xmx4g")
+}
+
+// Naming a missing archive turns class data sharing off altogether, the JDK's default archive
+// included, so the start scripts pass the flag only once cdsArchive has recorded one
+tasks.startScripts {
+    doLast {
+        val unixArchive = "\$APP_HOME/$cdsArchive"
+        val windowsArchive = "%APP_HOME%\\" + cdsArchive.replace('/', '\\')
+        unixScript.writeText(unixScript.readText().replaceFirst(Regex("(?m)^DEFAULT_JVM_OPTS=.*$")) {
+            it.value + "\nif [ -f \"$unixArchive\" ]; then\n" +
+                "    DEFAULT_JVM_OPTS=\"\\\"-XX:SharedArchiveFile=$unixArchive\\\" \$DEFAULT_JVM_OPTS\"\nfi"
+        })
+        windowsScript.writeText(windowsScript.readText().replaceFirst(Regex("(?m)^set DEFAULT_JVM_OPTS=.*$")) {
+            it.value + "\r\nif exist \"$windowsArchive\" set DEFAULT_JVM_OPTS=" +
+                "\"-XX:SharedArchiveFile=$windowsArchive\" %DEFAULT_JVM_OPTS%"
+        })
+    }
+}
+
+// Scripts start the CLI hundreds of times a minute, mostly paying for JVM boot and class
+// loading. ./gradlew cdsArchive installs the application and runs StartupTraining, which
+// runs every command once, on the installed jars; the classes they loaded are written to
+// lib/TaskManager.jsa on exit and mapped by every later start. The archive only applies to
+// the exact jars it was recorded against, so installDist removes it and it has to be rebuilt.
+tasks.register<JavaExec>("cdsArchive") {
+    group = "distribution"
+    description = "Records a class data sharing archive for the installed CLI from a training run"
+    dependsOn(tasks.installDist)
+    val installDir = tasks.installDist.get().destinationDir
+    // The same jars, in the same order, as the start scripts' class path
+    classpath = files(provider { tasks.startScripts.get().classpath!!.map { File(installDir, "lib/" + it.name) } })
+    mainClass.set("za.co.wethinkcode.taskmanager.cli.StartupTraining")
+    jvmArgs("-XX:ArchiveClassesAtExit=" + File(installDir, cdsArchive))
+}
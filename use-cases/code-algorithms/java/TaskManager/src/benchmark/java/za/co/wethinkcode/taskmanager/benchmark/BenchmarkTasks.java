@@ -0,0 +1,107 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Shared helpers for the benchmarks: a deterministic task generator and
+ * heap measurement through the memory pool MXBeans.
+ */
+final class BenchmarkTasks {
+    private static final String[] TAGS = {
+            "bug", "feature", "docs", "ops", "blocker", "critical", "urgent", "frontend",
+            "backend", "q1", "q2", "q3", "q4", "customer", "tech-debt", "research"
+    };
+
+    private BenchmarkTasks() {
+    }
+
+    /**
+     * Tasks with a realistic mix of statuses, due dates and zero to three tags.
+     */
+    static List<Task> generate(int count, long seed) {
+        List<Task> tasks = new ArrayList<>(count);
+        generate(count, seed, tasks::add);
+        return tasks;
+    }
+
+    /**
+     * The same tasks as {@link #generate(int, long)}, handed over one at a
+     * time so that callers need not hold them all.
+     */
+    static void generate(int count, long seed, Consumer<Task> sink) {
+        Random random = new Random(seed);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+        TaskPriority[] priorities = TaskPriority.values();
+        TaskStatus[] statuses = TaskStatus.values();
+        for (int i = 0; i < count; i++) {
+            List<String> tags = new ArrayList<>();
+            int tagCount = random.nextInt(4);
+            for (int t = 0; t < tagCount; t++) {
+                String tag = TAGS[random.nextInt(TAGS.length)];
+                if (!tags.contains(tag)) {
+                    tags.add(tag);
+                }
+            }
+            LocalDateTime createdAt = base.plusMinutes(random.nextInt(500_000));
+            LocalDateTime dueDate = random.nextInt(3) == 0 ? null : createdAt.plusDays(random.nextInt(60));
+            TaskStatus status = statuses[random.nextInt(statuses.length)];
+            LocalDateTime completedAt = status == TaskStatus.DONE ? createdAt.plusHours(random.nextInt(500)) : null;
+            sink.accept(new Task(
+                    new UUID(random.nextLong(), random.nextLong()).toString(),
+                    "Task " + i + " " + TAGS[random.nextInt(TAGS.length)],
+                    "Generated description for task number " + i,
+                    priorities[random.nextInt(priorities.length)],
+                    status,
+                    createdAt,
+                    completedAt != null ? completedAt : createdAt,
+                    dueDate,
+                    completedAt,
+                    tags));
+        }
+    }
+
+    static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the per-pool peaks since the last reset. Pools peak at different
+     * moments, so this is an upper bound on the true peak.
+     */
+    static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static long usedHeapBytes() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
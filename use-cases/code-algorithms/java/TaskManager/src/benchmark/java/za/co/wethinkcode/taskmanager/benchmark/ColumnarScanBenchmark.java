@@ -0,0 +1,103 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.storage.ColumnarTasks;
+import za.co.wethinkcode.taskmanager.util.TaskPriorityManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap and scan times of the same tasks held as {@code List<Task>}
+ * and as {@link ColumnarTasks}. The statistics scan is what
+ * getStatistics computes (four passes over the list, one over the
+ * columns); the score scan is TaskPriorityManager's task score.
+ *
+ * A size whose objects do not fit in the heap is reported for the
+ * columns only.
+ *
+ * Run with: ./gradlew benchmark -Pbenchmark=ColumnarScanBenchmark --args="1000000 10000000"
+ */
+public class ColumnarScanBenchmark {
+    private static final int ROUNDS = 5;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000_000, 10_000_000};
+
+        System.out.printf("%-10s %-8s %12s %12s %12s%n", "tasks", "layout", "heap", "stats ms", "scores ms");
+        for (int size : sizes) {
+            measureObjects(size);
+            measureColumns(size);
+        }
+    }
+
+    private static void measureObjects(int size) {
+        long before = BenchmarkTasks.usedHeapBytes();
+        List<Task> tasks;
+        try {
+            tasks = BenchmarkTasks.generate(size, 42);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-10d %-8s %12s%n", size, "objects", "out of heap");
+            return;
+        }
+        long heap = BenchmarkTasks.usedHeapBytes() - before;
+        long stats = best(() -> statisticsOf(tasks).size());
+        long scores = best(() -> {
+            long sum = 0;
+            for (Task task : tasks) {
+                sum += TaskPriorityManager.calculateTaskScore(task);
+            }
+            return (int) sum;
+        });
+        System.out.printf("%-10d %-8s %12s %12d %12d%n", size, "objects", BenchmarkTasks.mb(heap), stats, scores);
+    }
+
+    private static void measureColumns(int size) {
+        long before = BenchmarkTasks.usedHeapBytes();
+        ColumnarTasks columns = new ColumnarTasks();
+        BenchmarkTasks.generate(size, 42, columns::put);
+        long heap = BenchmarkTasks.usedHeapBytes() - before;
+        long stats = best(() -> columns.summarize(NOW, NOW.minusDays(7)).getTotal());
+        long scores = best(() -> TaskPriorityManager.calculateTaskScores(columns, NOW).length);
+        System.out.printf("%-10d %-8s %12s %12d %12d%n", size, "columns", BenchmarkTasks.mb(heap), stats, scores);
+    }
+
+    // The list version as TaskManager.getStatistics computes it
+    private static Map<String, Object> statisticsOf(List<Task> tasks) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", tasks.size());
+        Map<String, Integer> byStatus = new HashMap<>();
+        for (Task task : tasks) {
+            byStatus.merge(task.getStatus().getValue(), 1, Integer::sum);
+        }
+        Map<Integer, Integer> byPriority = new HashMap<>();
+        for (Task task : tasks) {
+            byPriority.merge(task.getPriority().getValue(), 1, Integer::sum);
+        }
+        stats.put("byStatus", byStatus);
+        stats.put("byPriority", byPriority);
+        stats.put("overdue", tasks.stream().filter(task -> task.isOverdue(NOW)).count());
+        LocalDateTime weekAgo = NOW.minusDays(7);
+        stats.put("completedLastWeek", tasks.stream()
+                .filter(task -> task.getCompletedAt() != null && task.getCompletedAt().isAfter(weekAgo))
+                .count());
+        return stats;
+    }
+
+    private static long best(Supplier<Integer> scan) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            scan.get();
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        return best;
+    }
+}
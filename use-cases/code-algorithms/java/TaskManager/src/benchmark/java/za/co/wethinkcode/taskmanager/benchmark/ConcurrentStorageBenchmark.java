@@ -0,0 +1,124 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.ConcurrentTaskStorage;
+import za.co.wethinkcode.taskmanager.storage.TaskStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of a mixed read/write workload as the thread count grows, for
+ * a journaled {@link TaskStorage} behind one global lock (how it had to be
+ * shared before) and for {@link ConcurrentTaskStorage}.
+ *
+ * Each operation is a point read, a status query or, with the configured
+ * probability, a status change through modifyTask.
+ *
+ * Run with: ./gradlew benchmark -Pbenchmark=ConcurrentStorageBenchmark --args="10000 10"
+ *   (task count, write percentage)
+ */
+public class ConcurrentStorageBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURE_MILLIS = 3_000;
+
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int writePercent = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        System.out.printf("%d tasks, %d%% writes, %d cores%n", taskCount, writePercent,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %18s %18s%n", "threads", "global lock ops/s", "concurrent ops/s");
+        for (int threads : THREADS) {
+            long locked = run(taskCount, writePercent, threads, false);
+            long concurrent = run(taskCount, writePercent, threads, true);
+            System.out.printf("%-8d %18d %18d%n", threads, locked, concurrent);
+        }
+    }
+
+    private static long run(int taskCount, int writePercent, int threads, boolean concurrent) throws Exception {
+        Path dir = Files.createTempDirectory("tasks-concurrency");
+        String path = dir.resolve("tasks.json").toString();
+        try {
+            TaskStorage storage = concurrent ? new ConcurrentTaskStorage(path, true) : new TaskStorage(path, true);
+            // A large threshold keeps compaction out of the measurement
+            storage.setCompactionThreshold(Long.MAX_VALUE);
+            List<String> ids = new ArrayList<>();
+            for (Task task : BenchmarkTasks.generate(taskCount, 42)) {
+                ids.add(task.getId());
+                storage.addTask(task);
+            }
+            Object globalLock = new Object();
+
+            LongAdder operations = new LongAdder();
+            AtomicBoolean measuring = new AtomicBoolean(false);
+            AtomicBoolean running = new AtomicBoolean(true);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        if (concurrent) {
+                            operate(storage, ids, writePercent, random);
+                        } else {
+                            synchronized (globalLock) {
+                                operate(storage, ids, writePercent, random);
+                            }
+                        }
+                        if (measuring.get()) {
+                            operations.increment();
+                        }
+                    }
+                    done.countDown();
+                });
+                worker.start();
+            }
+
+            Thread.sleep(WARMUP_MILLIS);
+            measuring.set(true);
+            Thread.sleep(MEASURE_MILLIS);
+            measuring.set(false);
+            running.set(false);
+            done.await();
+            storage.close();
+            return operations.sum() * 1000 / MEASURE_MILLIS;
+        } finally {
+            deleteDirectory(dir);
+        }
+    }
+
+    private static void operate(TaskStorage storage, List<String> ids, int writePercent, ThreadLocalRandom random) {
+        String taskId = ids.get(random.nextInt(ids.size()));
+        int roll = random.nextInt(100);
+        if (roll < writePercent) {
+            TaskStatus status = TaskStatus.values()[random.nextInt(TaskStatus.values().length)];
+            storage.modifyTask(taskId, task -> {
+                task.setStatus(status);
+                return true;
+            });
+        } else if (roll < 95) {
+            storage.getTask(taskId);
+        } else {
+            storage.getTasksByPriority(TaskPriority.values()[random.nextInt(TaskPriority.values().length)]);
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+}
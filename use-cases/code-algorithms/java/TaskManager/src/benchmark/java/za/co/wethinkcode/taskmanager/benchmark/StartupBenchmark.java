@@ -0,0 +1,129 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import za.co.wethinkcode.taskmanager.cli.TaskManagerCli;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.storage.TaskTypeAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Time from launching the CLI to its first byte of output, and to its
+ * exit, for each command against stores of several sizes. Every run is a
+ * fresh process, as in a script.
+ *
+ * By default the CLI runs on this JVM's class path. Pass a launcher to
+ * measure an installation instead, for example one with the class data
+ * sharing archive from {@code ./gradlew cdsArchive}.
+ *
+ * Run with: ./gradlew benchmark -Pbenchmark=StartupBenchmark --args="0,1000,100000 5"
+ *   (store sizes, runs per command, then optionally a launcher such as
+ *   build/install/TaskManager/bin/TaskManager)
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{0, 1_000, 100_000};
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> launcher = args.length > 2
+                ? launcher(Arrays.copyOfRange(args, 2, args.length))
+                : List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", System.getProperty("java.class.path"), TaskManagerCli.class.getName());
+
+        System.out.println("Launcher: " + String.join(" ", launcher).replace(System.getProperty("java.class.path"), "<class path>"));
+        System.out.printf("%-8s %-8s %16s %10s%n", "tasks", "command", "first output ms", "exit ms");
+        for (int size : sizes) {
+            Path directory = Files.createTempDirectory("tasks-startup");
+            try {
+                String store = directory.resolve("tasks.json").toString();
+                String taskId = writeStore(store, size);
+                String[][] commands = {
+                        {"help"},
+                        {"show", taskId},
+                        {"list", "--limit", "20"},
+                        {"search", "urgent"},
+                        {"stats"},
+                        {"create", "Benchmark task"},
+                };
+                for (String[] command : commands) {
+                    List<String> line = new ArrayList<>(launcher);
+                    line.add("-f");
+                    line.add(store);
+                    line.addAll(Arrays.asList(command));
+                    long[] firstOutput = new long[runs];
+                    long[] exit = new long[runs];
+                    for (int run = 0; run < runs; run++) {
+                        long[] times = launch(line, directory);
+                        firstOutput[run] = times[0];
+                        exit[run] = times[1];
+                    }
+                    System.out.printf("%-8d %-8s %16.1f %10.1f%n", size, command[0],
+                            median(firstOutput) / 1e6, median(exit) / 1e6);
+                }
+            } finally {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    // Each run starts in the store's directory, so a launcher given by relative path is resolved first
+    private static List<String> launcher(String[] command) {
+        Path program = Paths.get(command[0]);
+        if (Files.exists(program)) {
+            command[0] = program.toAbsolutePath().toString();
+        }
+        return Arrays.asList(command);
+    }
+
+    // The id of a task in the store, for show; one that does not exist when the store is empty
+    private static String writeStore(String store, int size) throws IOException {
+        List<Task> tasks = BenchmarkTasks.generate(size, 42);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(store), StandardCharsets.UTF_8)) {
+            new TaskTypeAdapter().writeArray(writer, tasks);
+        }
+        return tasks.isEmpty() ? "00000000-0000-0000-0000-000000000000" : tasks.get(tasks.size() / 2).getId();
+    }
+
+    // Nanoseconds from start to the first byte on stdout or stderr, and to exit
+    private static long[] launch(List<String> line, Path directory) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(line).directory(directory.toFile()).redirectErrorStream(true);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long firstOutput = -1;
+        try (InputStream out = process.getInputStream()) {
+            if (out.read() >= 0) {
+                firstOutput = System.nanoTime() - start;
+            }
+            out.transferTo(OutputStream.nullOutputStream());
+        }
+        process.waitFor();
+        long exit = System.nanoTime() - start;
+        return new long[]{firstOutput < 0 ? exit : firstOutput, exit};
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import com.google.gson.*;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.storage.TaskTypeAdapter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares loading and saving tasks through reflective Gson (the original
+ * TaskStorage path) with the streaming {@link TaskTypeAdapter}.
+ *
+ * Run with: ./gradlew benchmark -Pbenchmark=TaskCodecBenchmark --args="100000 1000000"
+ */
+public class TaskCodecBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100_000, 1_000_000};
+
+        Gson reflective = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeSerializer())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeDeserializer())
+                .setPrettyPrinting()
+                .create();
+        TaskTypeAdapter adapter = new TaskTypeAdapter();
+
+        System.out.printf("%-10s %-10s %-6s %10s %12s %12s%n", "tasks", "codec", "op", "best ms", "peak heap", "file size");
+        for (int size : sizes) {
+            List<Task> tasks = BenchmarkTasks.generate(size, 42);
+            Path reflectiveFile = Files.createTempFile("tasks-reflective", ".json");
+            Path streamingFile = Files.createTempFile("tasks-streaming", ".json");
+            try {
+                measure(size, "gson", "save", reflectiveFile, () -> {
+                    try (Writer writer = Files.newBufferedWriter(reflectiveFile, StandardCharsets.UTF_8)) {
+                        reflective.toJson(tasks, writer);
+                    }
+                });
+                measure(size, "stream", "save", streamingFile, () -> {
+                    try (Writer writer = Files.newBufferedWriter(streamingFile, StandardCharsets.UTF_8)) {
+                        adapter.writeArray(writer, tasks);
+                    }
+                });
+                measure(size, "gson", "load", reflectiveFile, () -> {
+                    Map<String, Task> loaded = new HashMap<>();
+                    try (Reader reader = Files.newBufferedReader(reflectiveFile, StandardCharsets.UTF_8)) {
+                        for (Task task : reflective.fromJson(reader, Task[].class)) {
+                            loaded.put(task.getId(), task);
+                        }
+                    }
+                    check(loaded, size);
+                });
+                measure(size, "stream", "load", streamingFile, () -> {
+                    Map<String, Task> loaded = new HashMap<>();
+                    try (Reader reader = Files.newBufferedReader(streamingFile, StandardCharsets.UTF_8)) {
+                        adapter.readArray(reader, task -> loaded.put(task.getId(), task));
+                    }
+                    check(loaded, size);
+                });
+            } finally {
+                Files.deleteIfExists(reflectiveFile);
+                Files.deleteIfExists(streamingFile);
+            }
+        }
+    }
+
+    private static void measure(int size, String codec, String op, Path file, IoRunnable body) throws IOException {
+        long best = Long.MAX_VALUE;
+        long peak = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            BenchmarkTasks.resetPeakHeap();
+            long baseline = BenchmarkTasks.usedHeapBytes();
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+            peak = Math.max(peak, BenchmarkTasks.peakHeapBytes() - baseline);
+        }
+        System.out.printf("%-10d %-10s %-6s %10d %12s %12s%n",
+                size, codec, op, best / 1_000_000, BenchmarkTasks.mb(peak), BenchmarkTasks.mb(Files.size(file)));
+    }
+
+    private static void check(Map<String, Task> loaded, int expected) {
+        if (loaded.size() != expected) {
+            throw new IllegalStateException("Loaded " + loaded.size() + " tasks, expected " + expected);
+        }
+    }
+
+    private interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    // The LocalDateTime adapters TaskStorage registered before the streaming codec
+    private static class LocalDateTimeSerializer implements JsonSerializer<LocalDateTime> {
+        private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+        @Override
+        public JsonElement serialize(LocalDateTime src, Type typeOfSrc, JsonSerializationContext context) {
+            return new JsonPrimitive(formatter.format(src));
+        }
+    }
+
+    private static class LocalDateTimeDeserializer implements JsonDeserializer<LocalDateTime> {
+        @Override
+        public LocalDateTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+                throws JsonParseException {
+            return LocalDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+    }
+}
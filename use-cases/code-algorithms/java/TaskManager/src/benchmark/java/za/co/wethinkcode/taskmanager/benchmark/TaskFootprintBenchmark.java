@@ -0,0 +1,231 @@
+package za.co.wethinkcode.taskmanager.benchmark;
+
+import sun.misc.Unsafe;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.TaskStorage;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Memory footprint of {@link Task} against the layout it had before its
+ * fields were encoded (enum references, a LocalDateTime per timestamp and
+ * a list of tag strings), in the style of JOL: the field layout of each
+ * class as the running JVM lays it out, the average size of the object
+ * graph behind one task, and the retained heap of many tasks, both in a
+ * list and inside a {@link TaskStorage} with its indexes.
+ *
+ * Offsets come from {@code sun.misc.Unsafe}, so the figures are those of
+ * this JVM and its flags (compressed oops, alignment). Tag names in the
+ * old layout are separate strings per task, as after loading JSON.
+ *
+ * Run with: ./gradlew benchmark -Pbenchmark=TaskFootprintBenchmark --args="1000000"
+ */
+public class TaskFootprintBenchmark {
+    private static final Unsafe UNSAFE = unsafe();
+    private static final int HEADER = Unsafe.ARRAY_INT_BASE_OFFSET - Integer.BYTES;
+    private static final int ALIGNMENT = 8;
+    private static final int GRAPH_SAMPLE = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        printLayout(ObjectTask.class);
+        printLayout(Task.class);
+
+        List<Task> sample = BenchmarkTasks.generate(GRAPH_SAMPLE, 42);
+        List<ObjectTask> objectSample = new ArrayList<>();
+        sample.forEach(task -> objectSample.add(new ObjectTask(task)));
+        System.out.printf("Average graph per task over %d tasks:%n", GRAPH_SAMPLE);
+        System.out.printf("  %-8s %6d bytes%n", "objects", graphSize(objectSample) / GRAPH_SAMPLE);
+        System.out.printf("  %-8s %6d bytes%n", "compact", graphSize(sample) / GRAPH_SAMPLE);
+        System.out.println();
+
+        System.out.printf("Retained heap of %d tasks:%n", size);
+        long before = settledHeapBytes();
+        List<ObjectTask> objects = new ArrayList<>(size);
+        BenchmarkTasks.generate(size, 42, task -> objects.add(new ObjectTask(task)));
+        System.out.printf("  %-18s %12s%n", "objects in a list", BenchmarkTasks.mb(settledHeapBytes() - before));
+        objects.clear();
+
+        before = settledHeapBytes();
+        List<Task> tasks = BenchmarkTasks.generate(size, 42);
+        System.out.printf("  %-18s %12s%n", "compact in a list", BenchmarkTasks.mb(settledHeapBytes() - before));
+        tasks = null;
+
+        Path dir = Files.createTempDirectory("tasks-footprint");
+        try {
+            before = settledHeapBytes();
+            TaskStorage storage = new TaskStorage(dir.resolve("tasks.json").toString(), true);
+            storage.addTasks(BenchmarkTasks.generate(size, 42));
+            // Closing waits for any background compaction and its buffers
+            storage.close();
+            System.out.printf("  %-18s %12s%n", "compact in storage", BenchmarkTasks.mb(settledHeapBytes() - before));
+            System.out.printf("  (%d tasks held)%n", storage.snapshot().size());
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // A few collections in a row, so that garbage from building the tasks is not counted
+    private static long settledHeapBytes() {
+        BenchmarkTasks.usedHeapBytes();
+        BenchmarkTasks.usedHeapBytes();
+        return BenchmarkTasks.usedHeapBytes();
+    }
+
+    private static void printLayout(Class<?> type) {
+        List<Field> fields = instanceFields(type);
+        fields.sort(Comparator.comparingLong(UNSAFE::objectFieldOffset));
+        System.out.println(type.getName() + " object internals:");
+        System.out.printf("%4s %4s %24s %s%n", "OFF", "SZ", "TYPE", "DESCRIPTION");
+        System.out.printf("%4d %4d %24s %s%n", 0, HEADER, "", "(object header)");
+        long end = HEADER;
+        for (Field field : fields) {
+            long offset = UNSAFE.objectFieldOffset(field);
+            if (offset > end) {
+                System.out.printf("%4d %4d %24s %s%n", end, offset - end, "", "(alignment/padding gap)");
+            }
+            int size = sizeOf(field.getType());
+            System.out.printf("%4d %4d %24s %s.%s%n", offset, size, field.getType().getSimpleName(),
+                    field.getDeclaringClass().getSimpleName(), field.getName());
+            end = offset + size;
+        }
+        long instance = align(end);
+        if (instance > end) {
+            System.out.printf("%4d %4d %24s %s%n", end, instance - end, "", "(object alignment gap)");
+        }
+        System.out.printf("Instance size: %d bytes%n%n", instance);
+    }
+
+    // Every object reachable from the roots counted once; enum constants and classes are shared by all tasks
+    private static long graphSize(Collection<?> roots) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>(roots);
+        long total = 0;
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            if (object instanceof Enum || object instanceof Class || !seen.add(object)) {
+                continue;
+            }
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                int length = Array.getLength(object);
+                total += align(UNSAFE.arrayBaseOffset(type) + (long) length * UNSAFE.arrayIndexScale(type));
+                if (!type.getComponentType().isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        push(pending, Array.get(object, i));
+                    }
+                }
+                continue;
+            }
+            long end = HEADER;
+            for (Field field : instanceFields(type)) {
+                long offset = UNSAFE.objectFieldOffset(field);
+                end = Math.max(end, offset + sizeOf(field.getType()));
+                if (!field.getType().isPrimitive()) {
+                    push(pending, UNSAFE.getObject(object, offset));
+                }
+            }
+            total += align(end);
+        }
+        return total;
+    }
+
+    private static void push(Deque<Object> pending, Object object) {
+        if (object != null) {
+            pending.push(object);
+        }
+    }
+
+    private static List<Field> instanceFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return Unsafe.ARRAY_OBJECT_INDEX_SCALE;
+        }
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        return type == short.class || type == char.class ? 2 : 1;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unsafe is not available", e);
+        }
+    }
+
+    // The fields of Task as they were held before the compact encoding
+    @SuppressWarnings("unused")
+    private static final class ObjectTask {
+        private final String id;
+        private final String title;
+        private final String description;
+        private final TaskPriority priority;
+        private final TaskStatus status;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime updatedAt;
+        private final LocalDateTime dueDate;
+        private final LocalDateTime completedAt;
+        private final List<String> tags = new ArrayList<>();
+
+        ObjectTask(Task task) {
+            this.id = task.getId();
+            this.title = task.getTitle();
+            this.description = task.getDescription();
+            this.priority = task.getPriority();
+            this.status = task.getStatus();
+            this.createdAt = task.getCreatedAt();
+            this.updatedAt = task.getUpdatedAt();
+            this.dueDate = task.getDueDate();
+            this.completedAt = task.getCompletedAt();
+            for (String tag : task.getTagView()) {
+                tags.add(new String(tag.toCharArray()));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package za.co.wethinkcode.taskmanager.app;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Results of {@link TaskManager}'s repeated read calls, keyed by the call's
+ * arguments. Each result remembers the store's modification count when it
+ * was computed and is only handed out while the count still reads the
+ * same. Results that depend on the time, such as overdue tasks, also
+ * remember the time bucket they were computed in and are recomputed once
+ * the clock moves into the next one, so they are at most one bucket old.
+ * The clock is asked for afresh each time, so the buckets follow whatever
+ * clock the store's own time-relative queries use.
+ *
+ * Only the most recently used {@link #DEFAULT_CAPACITY} results are kept.
+ */
+final class QueryCache {
+    static final int DEFAULT_CAPACITY = 64;
+    static final Duration DEFAULT_TIME_BUCKET = Duration.ofSeconds(1);
+
+    private final Supplier<Clock> clock;
+    private final Map<List<?>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<?>, Entry> eldest) {
+            return size() > DEFAULT_CAPACITY;
+        }
+    };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long bucketMillis = DEFAULT_TIME_BUCKET.toMillis();
+
+    QueryCache(Supplier<Clock> clock) {
+        this.clock = clock;
+    }
+
+    void setTimeBucket(Duration bucket) {
+        if (bucket.toMillis() < 1) {
+            throw new IllegalArgumentException("Invalid time bucket: " + bucket);
+        }
+        this.bucketMillis = bucket.toMillis();
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The cached result for the key if it was computed at this modification
+     * count (and, when time-relative, in the current time bucket), otherwise
+     * a newly computed one. The count must be read before anything the
+     * result is computed from, so a change made meanwhile invalidates it.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(List<?> key, long modifications, boolean timeRelative, Supplier<T> compute) {
+        long bucket = timeRelative ? clock.get().millis() / bucketMillis : 0;
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.modifications == modifications && entry.bucket == bucket) {
+            hits.incrementAndGet();
+            return (T) entry.value;
+        }
+        misses.incrementAndGet();
+        // Computed outside the lock; concurrent misses on one key may each compute it
+        T value = compute.get();
+        synchronized (entries) {
+            entries.put(key, new Entry(modifications, bucket, value));
+        }
+        return value;
+    }
+
+    private static final class Entry {
+        private final long modifications;
+        private final long bucket;
+        private final Object value;
+
+        Entry(long modifications, long bucket, Object value) {
+            this.modifications = modifications;
+            this.bucket = bucket;
+            this.value = value;
+        }
+    }
+}
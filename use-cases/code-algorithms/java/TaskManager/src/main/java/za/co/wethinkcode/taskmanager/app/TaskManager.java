@@ -3,28 +3,103 @@ package za.co.wethinkcode.taskmanager.app;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskPriority;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.Durability;
+import za.co.wethinkcode.taskmanager.storage.JdbcTaskStore;
+import za.co.wethinkcode.taskmanager.storage.TaskArchive;
+import za.co.wethinkcode.taskmanager.storage.TaskBatch;
+import za.co.wethinkcode.taskmanager.storage.TaskPage;
+import za.co.wethinkcode.taskmanager.storage.TaskQuery;
+import za.co.wethinkcode.taskmanager.storage.TaskStatistics;
 import za.co.wethinkcode.taskmanager.storage.TaskStorage;
+import za.co.wethinkcode.taskmanager.storage.TaskStore;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 public class TaskManager {
-    private final TaskStorage storage;
+    /** How long a task stays in the store after it is done, unless told otherwise. */
+    public static final int DEFAULT_ARCHIVE_DAYS = 30;
 
+    private final TaskStore storage;
+    private final QueryCache cache;
+
+    /**
+     * Opens the store at the path: an embedded database for a
+     * {@value JdbcTaskStore#DB_EXTENSION} path, otherwise a {@link TaskStorage} file.
+     */
     public TaskManager(String storagePath) {
-        this.storage = new TaskStorage(storagePath);
+        this(storagePath, false);
+    }
+
+    /**
+     * Opens the store at the path as {@link #TaskManager(String)} does; with
+     * {@code journaled}, a file store appends each change to its log
+     * instead of rewriting the whole file, as
+     * {@link TaskStorage#TaskStorage(String, boolean)} describes.
+     *
+     * @throws IllegalArgumentException if journaling is asked of a database store
+     */
+    public TaskManager(String storagePath, boolean journaled) {
+        this(openStore(storagePath, journaled));
     }
 
-    TaskStorage getStorage() {
+    public TaskManager(TaskStore storage) {
+        this.storage = storage;
+        this.cache = new QueryCache(() -> getStorage().getClock());
+    }
+
+    private static TaskStore openStore(String storagePath, boolean journaled) {
+        if (!storagePath.endsWith(JdbcTaskStore.DB_EXTENSION)) {
+            return new TaskStorage(storagePath, journaled);
+        }
+        if (journaled) {
+            throw new IllegalArgumentException("A database store cannot be journaled: " + storagePath);
+        }
+        return JdbcTaskStore.openFile(storagePath);
+    }
+
+    TaskStore getStorage() {
         return storage;
     }
 
+    /**
+     * See {@link TaskStore#setDurability(Durability)}.
+     */
+    public void setDurability(Durability durability) {
+        getStorage().setDurability(durability);
+    }
+
+    public int getPendingMutationCount() {
+        return getStorage().getPendingMutationCount();
+    }
+
+    /**
+     * Blocks until every mutation made so far is on disk.
+     *
+     * @return false if they could not be written; they stay pending
+     */
+    public boolean flush() {
+        return getStorage().flush();
+    }
+
+    /**
+     * Picks up changes other processes made to the store; see {@link TaskStore#refresh()}.
+     */
+    public boolean refresh() {
+        return getStorage().refresh();
+    }
+
     public String createTask(String title, String description, int priorityValue,
                              String dueDateStr, List<String> tags) {
         TaskPriority priority = TaskPriority.fromValue(priorityValue);
@@ -44,36 +119,146 @@ public class TaskManager {
         return getStorage().addTask(task);
     }
 
+    /**
+     * Lists the tasks matching every filter given; null filters and
+     * {@code showOverdue = false} match everything.
+     */
     public List<Task> listTasks(String statusFilter, Integer priorityFilter, boolean showOverdue) {
-        if (showOverdue) {
-            return getStorage().getOverdueTasks();
+        return listTasks(statusFilter, priorityFilter, showOverdue, null, null);
+    }
+
+    /**
+     * Lists tasks as {@link #listTasks(String, Integer, boolean)} does, also
+     * requiring all of {@code allTags} and at least one of {@code anyTags}
+     * (when given).
+     *
+     * Repeated calls are answered from a cache until the store changes; an
+     * overdue list is also recomputed once per time bucket (see
+     * {@link #setCacheTimeBucket(Duration)}). The list is shared with later
+     * calls and cannot be modified.
+     */
+    public List<Task> listTasks(String statusFilter, Integer priorityFilter, boolean showOverdue,
+                                List<String> allTags, List<String> anyTags) {
+        // Copies, so a caller editing its tag list afterwards cannot change a cached key
+        List<String> requiredTags = allTags == null ? null : List.copyOf(allTags);
+        List<String> optionalTags = anyTags == null ? null : List.copyOf(anyTags);
+        List<Object> key = Arrays.asList("list", statusFilter, priorityFilter, showOverdue, requiredTags, optionalTags);
+        return cache.get(key, getStorage().getModificationCount(), showOverdue, () -> Collections.unmodifiableList(
+                scanTasks(statusFilter, priorityFilter, showOverdue, requiredTags, optionalTags)));
+    }
+
+    private List<Task> scanTasks(String statusFilter, Integer priorityFilter, boolean showOverdue,
+                                 List<String> allTags, List<String> anyTags) {
+        boolean hasAllTags = allTags != null && !allTags.isEmpty();
+        boolean hasAnyTags = anyTags != null && !anyTags.isEmpty();
+        int filters = (showOverdue ? 1 : 0) + (statusFilter != null ? 1 : 0) + (priorityFilter != null ? 1 : 0)
+                + (hasAllTags || hasAnyTags ? 1 : 0);
+
+        // A single filter maps straight onto its index
+        if (filters == 0) {
+            return getStorage().getAllTasks();
+        }
+        if (filters == 1) {
+            if (showOverdue) {
+                return getStorage().getOverdueTasks();
+            }
+            if (statusFilter != null) {
+                return getStorage().getTasksByStatus(parseStatus(statusFilter));
+            }
+            if (priorityFilter != null) {
+                return getStorage().getTasksByPriority(TaskPriority.fromValue(priorityFilter));
+            }
+            return getStorage().getTasksByTags(allTags, anyTags);
         }
 
+        TaskQuery query = new TaskQuery();
+        if (showOverdue) {
+            query.overdue();
+        }
         if (statusFilter != null) {
-            TaskStatus status = TaskStatus.fromValue(statusFilter);
-            return getStorage().getTasksByStatus(status);
+            query.status(parseStatus(statusFilter));
         }
-
         if (priorityFilter != null) {
-            TaskPriority priority = TaskPriority.fromValue(priorityFilter);
-            return getStorage().getTasksByPriority(priority);
+            query.priority(TaskPriority.fromValue(priorityFilter));
+        }
+        if (hasAllTags) {
+            query.allTags(allTags);
+        }
+        if (hasAnyTags) {
+            query.anyTags(anyTags);
+        }
+        return findTasks(query);
+    }
+
+    /**
+     * Runs a query combining any of the filters, a sort order and a limit.
+     */
+    public List<Task> findTasks(TaskQuery query) {
+        return getStorage().query(query).collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a query as {@link #findTasks(TaskQuery)} does, over the archive
+     * as well when asked to.
+     */
+    public List<Task> findTasks(TaskQuery query, boolean includeArchived) {
+        TaskArchive archive = getStorage().getArchive();
+        if (!includeArchived || archive == null) {
+            return findTasks(query);
+        }
+        return archive.query(getStorage(), query);
+    }
+
+    /**
+     * One page of the tasks matching the query, in creation order; pass the
+     * page's next cursor as {@code after} to continue.
+     */
+    public TaskPage findTasksPage(TaskQuery query, String after, int pageSize) {
+        return getStorage().page(query, after, pageSize);
+    }
+
+    /**
+     * Up to {@code limit} tasks whose title or description contains every
+     * word of the query, best match first.
+     */
+    public List<Task> search(String query, int limit) {
+        return getStorage().search(query, limit);
+    }
+
+    /**
+     * Searches as {@link #search(String, int)} does; with the archive
+     * included, archived matches follow the store's, up to the limit.
+     */
+    public List<Task> search(String query, int limit, boolean includeArchived) {
+        TaskArchive archive = getStorage().getArchive();
+        if (!includeArchived || archive == null) {
+            return search(query, limit);
         }
+        return archive.search(getStorage(), query, limit);
+    }
 
-        return getStorage().getAllTasks();
+    public void setSubstringSearch(boolean enabled) {
+        getStorage().setSubstringSearch(enabled);
+        TaskArchive archive = getStorage().getArchive();
+        if (archive != null) {
+            archive.setSubstringSearch(enabled);
+        }
+    }
+
+    // Accepts the enum name as well as the value, so IN_PROGRESS works like in_progress
+    private static TaskStatus parseStatus(String statusValue) {
+        return TaskStatus.fromValue(statusValue.toLowerCase(Locale.ROOT));
     }
 
     public boolean updateTaskStatus(String taskId, String newStatusValue) {
         TaskStatus newStatus = TaskStatus.fromValue(newStatusValue);
-        Task task = getStorage().getTask(taskId);
-        if (task != null) {
+        return getStorage().modifyTask(taskId, task -> {
             task.setStatus(newStatus);
             if (newStatus == TaskStatus.DONE) {
                 task.markAsDone();
             }
-            getStorage().save();
             return true;
-        }
-        return false;
+        });
     }
 
     public boolean updateTaskPriority(String taskId, int newPriorityValue) {
@@ -109,71 +294,182 @@ public class TaskManager {
         return getStorage().deleteTask(taskId);
     }
 
+    /**
+     * Sets the status of every listed task with a single write.
+     *
+     * @return false, with nothing changed, if any id is unknown
+     */
+    public boolean updateTasksStatus(List<String> taskIds, String newStatusValue) {
+        TaskStatus newStatus = TaskStatus.fromValue(newStatusValue);
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : taskIds) {
+            batch.modify(taskId, task -> {
+                task.setStatus(newStatus);
+                if (newStatus == TaskStatus.DONE) {
+                    task.markAsDone();
+                }
+            });
+        }
+        return getStorage().applyBatch(batch);
+    }
+
+    public boolean updateTasksPriority(List<String> taskIds, int newPriorityValue) {
+        TaskPriority newPriority;
+        try {
+            newPriority = TaskPriority.fromValue(newPriorityValue);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : taskIds) {
+            batch.modify(taskId, task -> task.setPriority(newPriority));
+        }
+        return getStorage().applyBatch(batch);
+    }
+
+    public boolean addTagToTasks(List<String> taskIds, String tag) {
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : taskIds) {
+            batch.modify(taskId, task -> task.addTag(tag));
+        }
+        return getStorage().applyBatch(batch);
+    }
+
+    public boolean removeTagFromTasks(List<String> taskIds, String tag) {
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : taskIds) {
+            batch.modify(taskId, task -> task.removeTag(tag));
+        }
+        return getStorage().applyBatch(batch);
+    }
+
+    public boolean deleteTasks(List<String> taskIds) {
+        return getStorage().deleteTasks(taskIds);
+    }
+
     public Task getTaskDetails(String taskId) {
         return getStorage().getTask(taskId);
     }
 
+    /**
+     * Looks the task up in the store and then, when asked to, in its archive.
+     */
+    public Task getTaskDetails(String taskId, boolean includeArchived) {
+        Task task = getTaskDetails(taskId);
+        TaskArchive archive = getStorage().getArchive();
+        if (task == null && includeArchived && archive != null) {
+            task = archive.getTask(taskId);
+        }
+        return task;
+    }
+
+    /**
+     * Looks up one task without keeping a TaskManager around; binary stores
+     * are read straight from the snapshot.
+     */
+    public static Task readTask(String storagePath, String taskId) {
+        if (storagePath.endsWith(JdbcTaskStore.DB_EXTENSION)) {
+            try (JdbcTaskStore store = JdbcTaskStore.openFile(storagePath)) {
+                return store.getTask(taskId);
+            }
+        }
+        return TaskStorage.readTask(storagePath, taskId);
+    }
+
+    /**
+     * Looks up one archived task of the store at the path without opening the store.
+     */
+    public static Task readArchivedTask(String storagePath, String taskId) {
+        return TaskArchive.forStore(storagePath).getTask(taskId);
+    }
+
+    /**
+     * Moves tasks done for more than the given number of days out of the
+     * store into its archive.
+     *
+     * @return the number of tasks archived, or -1 if the archive could not be written
+     */
+    public int archiveCompletedTasks(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Invalid number of days: " + days);
+        }
+        return getStorage().archiveCompleted(Duration.ofDays(days));
+    }
+
+    public boolean exportTasks(String path) {
+        return getStorage().exportJson(path);
+    }
+
+    public int importTasks(String path) {
+        return getStorage().importJson(path);
+    }
+
     public boolean addTagToTask(String taskId, String tag) {
-        Task task = getStorage().getTask(taskId);
-        if (task != null) {
+        return getStorage().modifyTask(taskId, task -> {
             task.addTag(tag);
-            getStorage().save();
             return true;
-        }
-        return false;
+        });
     }
 
     public boolean removeTagFromTask(String taskId, String tag) {
-        Task task = getStorage().getTask(taskId);
-        if (task != null && task.removeTag(tag)) {
-            getStorage().save();
-            return true;
-        }
-        return false;
+        return getStorage().modifyTask(taskId, task -> task.removeTag(tag));
     }
 
+    /**
+     * Counts by status and priority, the overdue count and the number
+     * completed in the last week. Cached like {@link #listTasks}, and
+     * recomputed at least once per time bucket as both counts depend on
+     * the time. The map must not be modified.
+     */
     public Map<String, Object> getStatistics() {
-        List<Task> tasks = getStorage().getAllTasks();
-        int total = tasks.size();
+        return cache.get(List.of("stats"), getStorage().getModificationCount(), true, this::countTasks);
+    }
+
+    /**
+     * How long a cached result that depends on the time, such as the
+     * overdue list or the statistics, may be handed out again; one second
+     * by default.
+     */
+    public void setCacheTimeBucket(Duration bucket) {
+        cache.setTimeBucket(bucket);
+    }
+
+    /**
+     * Calls to {@link #listTasks} and {@link #getStatistics()} answered from the cache.
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Calls to {@link #listTasks} and {@link #getStatistics()} that had to ask the store.
+     */
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    private Map<String, Object> countTasks() {
+        TaskStatistics statistics = getStorage().getStatistics();
 
-        // Count by status
         Map<String, Integer> statusCounts = new HashMap<>();
         for (TaskStatus status : TaskStatus.values()) {
-            statusCounts.put(status.getValue(), 0);
+            statusCounts.put(status.getValue(), statistics.getStatusCount(status));
         }
 
-        for (Task task : tasks) {
-            String statusValue = task.getStatus().getValue();
-            statusCounts.put(statusValue, statusCounts.get(statusValue) + 1);
-        }
-
-        // Count by priority
         Map<Integer, Integer> priorityCounts = new HashMap<>();
         for (TaskPriority priority : TaskPriority.values()) {
-            priorityCounts.put(priority.getValue(), 0);
-        }
-
-        for (Task task : tasks) {
-            int priorityValue = task.getPriority().getValue();
-            priorityCounts.put(priorityValue, priorityCounts.get(priorityValue) + 1);
+            priorityCounts.put(priority.getValue(), statistics.getPriorityCount(priority));
         }
 
-        // Count overdue
-        int overdueCount = (int) tasks.stream().filter(Task::isOverdue).count();
-
-        // Count completed in last 7 days
-        LocalDateTime sevenDaysAgo = LocalDateTime.now().minusDays(7);
-        int completedRecently = (int) tasks.stream()
-                .filter(task -> task.getCompletedAt() != null && task.getCompletedAt().isAfter(sevenDaysAgo))
-                .count();
-
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total", total);
-        stats.put("byStatus", statusCounts);
-        stats.put("byPriority", priorityCounts);
-        stats.put("overdue", overdueCount);
-        stats.put("completedLastWeek", completedRecently);
+        stats.put("total", statistics.getTotal());
+        stats.put("byStatus", Collections.unmodifiableMap(statusCounts));
+        stats.put("byPriority", Collections.unmodifiableMap(priorityCounts));
+        stats.put("overdue", statistics.getOverdue());
+        stats.put("completedLastWeek", statistics.getCompleted());
 
-        return stats;
+        return Collections.unmodifiableMap(stats);
     }
 }
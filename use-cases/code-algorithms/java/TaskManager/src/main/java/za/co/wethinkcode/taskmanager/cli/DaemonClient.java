@@ -0,0 +1,85 @@
+package za.co.wethinkcode.taskmanager.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Sends a CLI command to a running {@link TaskManagerDaemon} and prints
+ * what it printed. It touches neither the store nor Gson, so forwarding
+ * costs the JVM start and one round trip.
+ */
+final class DaemonClient {
+    /** Returned by {@link #forward} when no daemon is listening. */
+    static final int NO_DAEMON = -1;
+
+    private DaemonClient() {
+    }
+
+    static boolean isRunning(Path socketPath) {
+        try (SocketChannel channel = connect(socketPath)) {
+            return channel != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the command, given as its name followed by its arguments, in the
+     * daemon listening on the socket. The daemon refuses it unless it opened
+     * the store with the same options.
+     *
+     * @return the command's exit status, or {@link #NO_DAEMON} if none is
+     *         listening and the command was not sent
+     */
+    static int forward(Path socketPath, String storeOptions, String[] request, PrintStream out, PrintStream err) {
+        SocketChannel channel = connect(socketPath);
+        if (channel == null) {
+            return NO_DAEMON;
+        }
+        try (channel) {
+            DataOutputStream requestOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            String[] message = new String[request.length + 1];
+            message[0] = storeOptions;
+            System.arraycopy(request, 0, message, 1, request.length);
+            TaskManagerDaemon.writeStrings(requestOut, message);
+            requestOut.flush();
+
+            DataInputStream reply = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int status = reply.readInt();
+            String[] output = TaskManagerDaemon.readStrings(reply, Integer.MAX_VALUE);
+            if (output.length != 2) {
+                throw new IOException("Expected output and errors, got " + output.length + " strings");
+            }
+            out.print(output[0]);
+            out.flush();
+            err.print(output[1]);
+            err.flush();
+            return status;
+        } catch (IOException e) {
+            // The command may or may not have run, so it is not retried locally
+            err.println("Error talking to task daemon: " + e.getMessage());
+            return TaskManagerDaemon.FAILED;
+        }
+    }
+
+    // Null when there is no socket, or nothing accepts on it any more
+    private static SocketChannel connect(Path socketPath) {
+        if (!Files.exists(socketPath)) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
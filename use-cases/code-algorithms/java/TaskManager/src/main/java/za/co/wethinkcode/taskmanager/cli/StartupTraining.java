@@ -0,0 +1,64 @@
+package za.co.wethinkcode.taskmanager.cli;
+
+import za.co.wethinkcode.taskmanager.app.TaskManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The training run behind {@code ./gradlew cdsArchive}: runs every CLI
+ * command once against a throwaway store, so that the class data sharing
+ * archive recorded when it exits holds whatever any command loads.
+ */
+final class StartupTraining {
+    private StartupTraining() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("task-training");
+        String store = directory.resolve("tasks.json").toString();
+        String exported = directory.resolve("export.json").toString();
+        String taskId = new TaskManager(store).createTask("Write the quarterly report", "Numbers for the board",
+                3, "2030-01-31", List.of("work", "report"));
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            run("help");
+            // First, while nothing is loaded, so that show takes its single-task read
+            run("-f", store, "show", taskId);
+            run("-f", store, "create", "Book flights", "Conference trip", "2", "2030-02-14", "travel");
+            run("-f", store, "list", "--status", "todo", "--tag", "work", "--sort", "due");
+            run("-f", store, "list", "--overdue", "--limit", "10");
+            run("-f", store, "search", "quarterly", "report");
+            run("-f", store, "status", taskId, "in_progress");
+            run("-f", store, "priority", taskId, "4");
+            run("-f", store, "due", taskId, "2030-03-01");
+            run("-f", store, "tag", taskId, "urgent");
+            run("-f", store, "untag", taskId, "urgent");
+            run("-f", store, "stats");
+            run("-f", store, "export", exported);
+            run("-f", store, "import", exported);
+            run("-f", store, "delete", taskId);
+        } finally {
+            System.setOut(stdout);
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                System.err.println("Error removing training store: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void run(String... args) {
+        TaskManagerCli.main(args);
+    }
+}
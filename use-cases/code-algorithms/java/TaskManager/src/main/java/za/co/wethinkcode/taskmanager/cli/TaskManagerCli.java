@@ -4,43 +4,139 @@ package za.co.wethinkcode.taskmanager.cli;
 import org.apache.commons.cli.*;
 import za.co.wethinkcode.taskmanager.app.TaskManager;
 import za.co.wethinkcode.taskmanager.model.Task;
-
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.JdbcTaskStore;
+import za.co.wethinkcode.taskmanager.storage.ShardedTaskStorage;
+import za.co.wethinkcode.taskmanager.storage.TaskPage;
+import za.co.wethinkcode.taskmanager.storage.TaskQuery;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public class TaskManagerCli {
-    private static final TaskManager taskManager = new TaskManager("tasks.json");
+    private static final String DEFAULT_STORAGE_PATH = "tasks.json";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    private static String storagePath = DEFAULT_STORAGE_PATH;
+    private static int shardCount;
+    private static boolean journaled;
+    private static TaskManager taskManager;
+
+    // Loading the store is deferred so commands that only need one task can skip it
+    private static TaskManager taskManager() {
+        if (taskManager == null) {
+            taskManager = shardCount > 0
+                    ? new TaskManager(new ShardedTaskStorage(storagePath, shardCount))
+                    : new TaskManager(storagePath, journaled);
+        }
+        return taskManager;
+    }
 
     public static void main(String[] args) {
+        // Answered before commons-cli is loaded, let alone the store
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("-h") || args[0].equals("--help")) {
+            showHelp();
+            return;
+        }
+
         Options options = new Options();
         CommandLineParser parser = new DefaultParser();
-        HelpFormatter formatter = new HelpFormatter();
 
         // Global options
         options.addOption(Option.builder("h").longOpt("help").desc("Show help").build());
+        options.addOption(Option.builder("f").longOpt("file").hasArg()
+                .desc("Task store file; a .bin extension selects the binary format").build());
+        options.addOption(Option.builder().longOpt("shards").hasArg()
+                .desc("Treat the store as a directory of this many hash-partitioned files").build());
+        options.addOption(Option.builder().longOpt("journal")
+                .desc("Append each change to the store's log instead of rewriting the store").build());
 
         try {
             CommandLine cmd = parser.parse(options, args, true);
+            String[] remaining = cmd.getArgs();
 
-            if (cmd.hasOption("help") || args.length == 0) {
-                showHelp(formatter, options);
+            if (cmd.hasOption("help") || remaining.length == 0 || remaining[0].equals("help")) {
+                showHelp();
                 return;
             }
 
-            String command = args[0];
-            String[] commandArgs = Arrays.copyOfRange(args, 1, args.length);
+            shardCount = cmd.hasOption("shards") ? Integer.parseInt(cmd.getOptionValue("shards")) : 0;
+            storagePath = cmd.getOptionValue("file", shardCount > 0 ? "tasks" : DEFAULT_STORAGE_PATH);
+            journaled = cmd.hasOption("journal");
+            if (journaled && (shardCount > 0 || storagePath.endsWith(JdbcTaskStore.DB_EXTENSION))) {
+                System.err.println("--journal applies to a single store file, not to --shards or a .db store");
+                return;
+            }
+            String command = remaining[0];
+            String[] commandArgs = Arrays.copyOfRange(remaining, 1, remaining.length);
 
-            executeCommand(command, commandArgs);
+            if (command.equals("daemon")) {
+                runDaemon();
+                return;
+            }
+            int status = DaemonClient.forward(TaskManagerDaemon.socketFor(storagePath), storeOptions(),
+                    daemonRequest(command, commandArgs), System.out, System.err);
+            if (status == DaemonClient.NO_DAEMON) {
+                executeCommand(command, commandArgs);
+            } else if (status != TaskManagerDaemon.OK) {
+                System.exit(status);
+            }
 
         } catch (ParseException e) {
             System.err.println("Error parsing command: " + e.getMessage());
-            showHelp(formatter, options);
+            showHelp();
         }
     }
 
+    /**
+     * Loads the store and serves commands forwarded by other invocations
+     * until the process is stopped.
+     */
+    private static void runDaemon() {
+        TaskManager manager = taskManager();
+        Path socket = TaskManagerDaemon.socketFor(storagePath);
+        TaskManagerDaemon daemon;
+        try {
+            daemon = new TaskManagerDaemon(socket, storeOptions(), (command, args) -> {
+                // Picks up anything written to the store without going through the daemon
+                manager.refresh();
+                executeCommand(command, args);
+            });
+        } catch (IOException e) {
+            System.err.println("Error starting task daemon: " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        System.out.println("Serving " + storagePath + " on " + socket);
+        daemon.serve();
+    }
+
+    // The global options that change how the store is written; the file is already in the socket's name
+    private static String storeOptions() {
+        return journaled ? "--journal" : shardCount > 0 ? "--shards " + shardCount : "";
+    }
+
+    // The daemon may run in another directory, so file arguments travel as absolute paths
+    private static String[] daemonRequest(String command, String[] args) {
+        String[] request = new String[args.length + 1];
+        request[0] = command;
+        System.arraycopy(args, 0, request, 1, args.length);
+        if ((command.equals("export") || command.equals("import")) && args.length > 0) {
+            request[1] = Paths.get(args[0]).toAbsolutePath().toString();
+        }
+        return request;
+    }
+
     private static void executeCommand(String command, String[] args) {
         switch (command) {
             case "create":
@@ -49,6 +145,9 @@ public class TaskManagerCli {
             case "list":
                 handleListCommand(args);
                 break;
+            case "search":
+                handleSearchCommand(args);
+                break;
             case "status":
                 handleStatusCommand(args);
                 break;
@@ -73,9 +172,18 @@ public class TaskManagerCli {
             case "stats":
                 handleStatsCommand();
                 break;
+            case "export":
+                handleExportCommand(args);
+                break;
+            case "import":
+                handleImportCommand(args);
+                break;
+            case "archive":
+                handleArchiveCommand(args);
+                break;
             default:
                 System.err.println("Unknown command: " + command);
-                System.err.println("Available commands: create, list, status, priority, due, tag, untag, show, delete, stats");
+                System.err.println("Available commands: create, list, search, status, priority, due, tag, untag, show, delete, stats, export, import, archive, daemon");
         }
     }
 
@@ -93,7 +201,7 @@ public class TaskManagerCli {
                 Arrays.asList(args[4].split(",")).stream().map(String::trim).collect(Collectors.toList()) :
                 null;
 
-        String taskId = taskManager.createTask(title, description, priority, dueDate, tags);
+        String taskId = taskManager().createTask(title, description, priority, dueDate, tags);
         if (taskId != null) {
             System.out.println("Created task with ID: " + taskId);
         }
@@ -104,15 +212,78 @@ public class TaskManagerCli {
         options.addOption(Option.builder("s").longOpt("status").hasArg().desc("Filter by status").build());
         options.addOption(Option.builder("p").longOpt("priority").hasArg().desc("Filter by priority").build());
         options.addOption(Option.builder("o").longOpt("overdue").desc("Show only overdue tasks").build());
+        options.addOption(Option.builder("t").longOpt("tag").hasArg().desc("Only tasks with all of these comma-separated tags").build());
+        options.addOption(Option.builder().longOpt("any-tag").hasArg().desc("Only tasks with at least one of these comma-separated tags").build());
+        options.addOption(Option.builder().longOpt("text").hasArg().desc("Only tasks whose title or description contains this text").build());
+        options.addOption(Option.builder().longOpt("due-from").hasArg().desc("Only tasks due on or after this date (YYYY-MM-DD)").build());
+        options.addOption(Option.builder().longOpt("due-to").hasArg().desc("Only tasks due on or before this date (YYYY-MM-DD)").build());
+        options.addOption(Option.builder().longOpt("sort").hasArg().desc("Sort by created, updated, due, priority or title").build());
+        options.addOption(Option.builder().longOpt("desc").desc("Sort in descending order").build());
+        options.addOption(Option.builder().longOpt("limit").hasArg().desc("Show at most this many tasks").build());
+        options.addOption(Option.builder().longOpt("after").hasArg().desc("Continue from the cursor printed by a previous page").build());
+        options.addOption(Option.builder().longOpt("archived").desc("Also list archived tasks").build());
 
         try {
             CommandLine cmd = new DefaultParser().parse(options, args);
 
-            String status = cmd.getOptionValue("status");
-            Integer priority = cmd.hasOption("priority") ? Integer.valueOf(cmd.getOptionValue("priority")) : null;
-            boolean showOverdue = cmd.hasOption("overdue");
+            TaskQuery query = new TaskQuery();
+            if (cmd.hasOption("status")) {
+                query.status(TaskStatus.fromValue(cmd.getOptionValue("status")));
+            }
+            if (cmd.hasOption("priority")) {
+                query.priority(TaskPriority.fromValue(Integer.parseInt(cmd.getOptionValue("priority"))));
+            }
+            if (cmd.hasOption("overdue")) {
+                query.overdue();
+            }
+            List<String> allTags = splitTags(cmd.getOptionValues("tag"));
+            if (allTags != null) {
+                query.allTags(allTags);
+            }
+            List<String> anyTags = splitTags(cmd.getOptionValues("any-tag"));
+            if (anyTags != null) {
+                query.anyTags(anyTags);
+            }
+            query.text(cmd.getOptionValue("text"));
+            if (cmd.hasOption("due-from")) {
+                query.dueFrom(LocalDate.parse(cmd.getOptionValue("due-from")).atStartOfDay());
+            }
+            if (cmd.hasOption("due-to")) {
+                query.dueBefore(LocalDate.parse(cmd.getOptionValue("due-to")).plusDays(1).atStartOfDay());
+            }
+            if (cmd.hasOption("sort")) {
+                query.sortBy(TaskQuery.SortKey.fromValue(cmd.getOptionValue("sort")), cmd.hasOption("desc"));
+            }
 
-            List<Task> tasks = taskManager.listTasks(status, priority, showOverdue);
+            Integer limit = cmd.hasOption("limit") ? Integer.valueOf(cmd.getOptionValue("limit")) : null;
+            String after = cmd.getOptionValue("after");
+            List<Task> tasks;
+            String nextCursor = null;
+            if (cmd.hasOption("archived")) {
+                if (after != null) {
+                    System.err.println("--after pages the store only and cannot be combined with --archived");
+                    return;
+                }
+                if (limit != null) {
+                    query.limit(limit);
+                }
+                tasks = taskManager().findTasks(query, true);
+            } else if (cmd.hasOption("sort")) {
+                if (after != null) {
+                    System.err.println("--after pages in creation order and cannot be combined with --sort");
+                    return;
+                }
+                if (limit != null) {
+                    query.limit(limit);
+                }
+                tasks = taskManager().findTasks(query);
+            } else if (limit != null || after != null) {
+                TaskPage page = taskManager().findTasksPage(query, after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+                tasks = page.getTasks();
+                nextCursor = page.getNextCursor();
+            } else {
+                tasks = taskManager().findTasks(query);
+            }
 
             if (tasks.isEmpty()) {
                 System.out.println("No tasks found matching the criteria.");
@@ -123,9 +294,63 @@ public class TaskManagerCli {
                 System.out.println(formatTask(task));
                 System.out.println("-".repeat(50));
             }
+            if (nextCursor != null) {
+                System.out.println("More tasks follow; continue with --after " + nextCursor);
+            }
 
         } catch (ParseException e) {
             System.err.println("Error parsing list options: " + e.getMessage());
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid date format. Use YYYY-MM-DD");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static List<String> splitTags(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        return Arrays.stream(values)
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(tag -> !tag.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static void handleSearchCommand(String[] args) {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("limit").hasArg().desc("Show at most this many tasks").build());
+        options.addOption(Option.builder().longOpt("substring").desc("Also match words inside longer words").build());
+        options.addOption(Option.builder().longOpt("archived").desc("Also search archived tasks").build());
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            if (cmd.getArgs().length == 0) {
+                System.err.println("Usage: search <words> [--limit <n>] [--substring] [--archived]");
+                return;
+            }
+
+            String query = String.join(" ", cmd.getArgs());
+            int limit = cmd.hasOption("limit") ? Integer.parseInt(cmd.getOptionValue("limit")) : DEFAULT_SEARCH_LIMIT;
+            if (cmd.hasOption("substring")) {
+                taskManager().setSubstringSearch(true);
+            }
+            List<Task> tasks = taskManager().search(query, limit, cmd.hasOption("archived"));
+
+            if (tasks.isEmpty()) {
+                System.out.println("No tasks found matching the search.");
+                return;
+            }
+
+            for (Task task : tasks) {
+                System.out.println(formatTask(task));
+                System.out.println("-".repeat(50));
+            }
+        } catch (ParseException e) {
+            System.err.println("Error parsing search options: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid limit: " + e.getMessage());
         }
     }
 
@@ -138,7 +363,7 @@ public class TaskManagerCli {
         String taskId = args[0];
         String newStatus = args[1];
 
-        if (taskManager.updateTaskStatus(taskId, newStatus)) {
+        if (taskManager().updateTaskStatus(taskId, newStatus)) {
             System.out.println("Updated task status to " + newStatus);
         } else {
             System.out.println("Failed to update task status. Task not found.");
@@ -154,7 +379,7 @@ public class TaskManagerCli {
         String taskId = args[0];
         int newPriority = Integer.parseInt(args[1]);
 
-        if (taskManager.updateTaskPriority(taskId, newPriority)) {
+        if (taskManager().updateTaskPriority(taskId, newPriority)) {
             System.out.println("Updated task priority to " + newPriority);
         } else {
             System.out.println("Failed to update task priority. Task not found.");
@@ -170,7 +395,7 @@ public class TaskManagerCli {
         String taskId = args[0];
         String newDueDate = args[1];
 
-        if (taskManager.updateTaskDueDate(taskId, newDueDate)) {
+        if (taskManager().updateTaskDueDate(taskId, newDueDate)) {
             System.out.println("Updated task due date to " + newDueDate);
         } else {
             System.out.println("Failed to update task due date. Task not found or invalid date.");
@@ -186,7 +411,7 @@ public class TaskManagerCli {
         String taskId = args[0];
         String tag = args[1];
 
-        if (taskManager.addTagToTask(taskId, tag)) {
+        if (taskManager().addTagToTask(taskId, tag)) {
             System.out.println("Added tag '" + tag + "' to task");
         } else {
             System.out.println("Failed to add tag. Task not found.");
@@ -202,7 +427,7 @@ public class TaskManagerCli {
         String taskId = args[0];
         String tag = args[1];
 
-        if (taskManager.removeTagFromTask(taskId, tag)) {
+        if (taskManager().removeTagFromTask(taskId, tag)) {
             System.out.println("Removed tag '" + tag + "' from task");
         } else {
             System.out.println("Failed to remove tag. Task or tag not found.");
@@ -210,13 +435,22 @@ public class TaskManagerCli {
     }
 
     private static void handleShowCommand(String[] args) {
-        if (args.length < 1) {
-            System.err.println("Usage: show <task_id>");
+        List<String> showArgs = Arrays.asList(args);
+        boolean archived = showArgs.contains("--archived");
+        List<String> taskIds = showArgs.stream().filter(arg -> !arg.equals("--archived")).collect(Collectors.toList());
+        if (taskIds.isEmpty()) {
+            System.err.println("Usage: show <task_id> [--archived]");
             return;
         }
 
-        String taskId = args[0];
-        Task task = taskManager.getTaskDetails(taskId);
+        String taskId = taskIds.get(0);
+        // A resident store answers directly; otherwise read just this task where the format allows
+        Task task = shardCount > 0 || taskManager != null
+                ? taskManager().getTaskDetails(taskId, archived)
+                : TaskManager.readTask(storagePath, taskId);
+        if (task == null && archived && taskManager == null) {
+            task = TaskManager.readArchivedTask(storagePath, taskId);
+        }
 
         if (task != null) {
             System.out.println(formatTask(task));
@@ -233,7 +467,7 @@ public class TaskManagerCli {
 
         String taskId = args[0];
 
-        if (taskManager.deleteTask(taskId)) {
+        if (taskManager().deleteTask(taskId)) {
             System.out.println("Deleted task " + taskId);
         } else {
             System.out.println("Failed to delete task. Task not found.");
@@ -241,7 +475,7 @@ public class TaskManagerCli {
     }
 
     private static void handleStatsCommand() {
-        Map<String, Object> stats = taskManager.getStatistics();
+        Map<String, Object> stats = taskManager().getStatistics();
 
         System.out.println("Total tasks: " + stats.get("total"));
 
@@ -261,19 +495,70 @@ public class TaskManagerCli {
         System.out.println("Completed in last 7 days: " + stats.get("completedLastWeek"));
     }
 
-    private static void showHelp(HelpFormatter formatter, Options options) {
+    private static void handleExportCommand(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: export <json_file>");
+            return;
+        }
+
+        if (taskManager().exportTasks(args[0])) {
+            System.out.println("Exported tasks to " + args[0]);
+        }
+    }
+
+    private static void handleImportCommand(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: import <json_file>");
+            return;
+        }
+
+        int imported = taskManager().importTasks(args[0]);
+        if (imported >= 0) {
+            System.out.println("Imported " + imported + " tasks from " + args[0]);
+        }
+    }
+
+    private static void handleArchiveCommand(String[] args) {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("days").hasArg().desc("Archive tasks done for more than this many days").build());
+
+        try {
+            CommandLine cmd = new DefaultParser().parse(options, args);
+            int days = cmd.hasOption("days") ? Integer.parseInt(cmd.getOptionValue("days")) : TaskManager.DEFAULT_ARCHIVE_DAYS;
+            int archived = taskManager().archiveCompletedTasks(days);
+            if (archived >= 0) {
+                System.out.println("Archived " + archived + " tasks done for more than " + days + " days");
+            }
+        } catch (ParseException e) {
+            System.err.println("Error parsing archive options: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static void showHelp() {
         System.out.println("Task Manager CLI");
+        System.out.println("Usage: [-f <store_file>] [--shards <n>] [--journal] <command> [args]");
         System.out.println("Available commands:");
         System.out.println("  create <title> [description] [priority] [due_date] [tags] - Create a new task");
-        System.out.println("  list [-s <status>] [-p <priority>] [-o] - List tasks");
+        System.out.println("  list [-s <status>] [-p <priority>] [-o] [-t <tags>] [--any-tag <tags>] [--text <text>]");
+        System.out.println("       [--due-from <date>] [--due-to <date>] [--sort <key>] [--desc]");
+        System.out.println("       [--limit <n>] [--after <cursor>] [--archived] - List tasks matching every filter");
+        System.out.println("  search <words> [--limit <n>] [--substring] [--archived] - Tasks containing every word, best match first");
         System.out.println("  status <task_id> <new_status> - Update task status");
         System.out.println("  priority <task_id> <new_priority> - Update task priority");
         System.out.println("  due <task_id> <new_due_date> - Update task due date");
         System.out.println("  tag <task_id> <tag> - Add tag to task");
         System.out.println("  untag <task_id> <tag> - Remove tag from task");
-        System.out.println("  show <task_id> - Show task details");
+        System.out.println("  show <task_id> [--archived] - Show task details, looking in the archive too if asked");
         System.out.println("  delete <task_id> - Delete a task");
         System.out.println("  stats - Show task statistics");
+        System.out.println("  export <json_file> - Write all tasks to a JSON file");
+        System.out.println("  import <json_file> - Add tasks from a JSON file");
+        System.out.println("  archive [--days <n>] - Move tasks done for more than n days (default "
+                + TaskManager.DEFAULT_ARCHIVE_DAYS + ") to the archive");
+        System.out.println("  daemon - Keep the store loaded and run the other commands for later invocations");
+        System.out.println("  help - Show this help");
     }
 
     private static String formatTask(Task task) {
@@ -317,8 +602,8 @@ public class TaskManagerCli {
                 "Due: " + task.getDueDate().format(DateTimeFormatter.ISO_DATE) :
                 "No due date";
 
-        String tagsStr = !task.getTags().isEmpty() ?
-                "Tags: " + String.join(", ", task.getTags()) :
+        String tagsStr = !task.getTagView().isEmpty() ?
+                "Tags: " + String.join(", ", task.getTagView()) :
                 "No tags";
 
         return statusSymbol + " " + task.getId().substring(0, 8) + " - " + prioritySymbol + " " + task.getTitle() + "\n" +
@@ -0,0 +1,211 @@
+package za.co.wethinkcode.taskmanager.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Keeps one store loaded and runs CLI commands sent to it over a Unix
+ * domain socket next to the store ({@code tasks.json.sock}). A forwarded
+ * command costs a round trip instead of a JVM start, Gson set-up and a
+ * full load of the store.
+ *
+ * Each connection is read on its own thread, so a client that connects
+ * and stalls holds up nobody else. Commands still run one at a time in
+ * the order their requests complete. Each takes milliseconds against the
+ * resident store, and the CLI's handlers run unchanged with whatever they
+ * print captured and sent back for the client to print.
+ *
+ * A request is the client's store options, then the command and its
+ * arguments, as a count followed by length-prefixed UTF-8 strings, at
+ * most {@link #MAX_REQUEST_BYTES} in all; a larger or malformed one is
+ * dropped with its connection. Options such as {@code --journal} change
+ * how every write is persisted, so a request whose options differ from
+ * the daemon's is refused rather than run the daemon's way. The reply is
+ * an exit status followed by the standard output and standard error in
+ * the same form.
+ */
+final class TaskManagerDaemon implements Closeable {
+    static final String SOCKET_SUFFIX = ".sock";
+    static final int OK = 0;
+    static final int FAILED = 1;
+    static final int MAX_REQUEST_BYTES = 1 << 20;
+
+    private final Path socketPath;
+    private final String storeOptions;
+    private final CommandRunner runner;
+    private final ServerSocketChannel server;
+    // Where connection errors go; System.err belongs to the running command while it is swapped
+    private final PrintStream log = System.err;
+
+    /**
+     * @param storeOptions the global options the store was opened with,
+     *                     which every request has to match
+     */
+    TaskManagerDaemon(Path socketPath, String storeOptions, CommandRunner runner) throws IOException {
+        if (DaemonClient.isRunning(socketPath)) {
+            throw new IOException("A daemon is already listening on " + socketPath);
+        }
+        this.socketPath = socketPath;
+        this.storeOptions = storeOptions;
+        this.runner = runner;
+        // Left behind by a daemon that did not shut down cleanly
+        Files.deleteIfExists(socketPath);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+    }
+
+    /**
+     * The socket a daemon for the store listens on, the same whichever
+     * directory the store was named from.
+     */
+    static Path socketFor(String storagePath) {
+        return Paths.get(storagePath + SOCKET_SUFFIX).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Serves requests until the daemon is closed.
+     */
+    void serve() {
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (AsynchronousCloseException e) {
+                return;
+            } catch (IOException e) {
+                log.println("Error accepting task client: " + e.getMessage());
+                continue;
+            }
+            Thread handler = new Thread(() -> serveClient(client), "task-daemon-client");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void serveClient(SocketChannel client) {
+        try (client) {
+            handle(client);
+        } catch (IOException | RuntimeException e) {
+            log.println("Error serving task client: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            System.err.println("Error stopping task daemon: " + e.getMessage());
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        String[] request;
+        try {
+            request = readStrings(in, MAX_REQUEST_BYTES);
+        } catch (EOFException e) {
+            // A client that only checked whether the daemon is up
+            return;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = run(request, out, err);
+
+        DataOutputStream reply = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+        reply.writeInt(status);
+        writeStrings(reply, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+        reply.flush();
+    }
+
+    // Commands print straight to System.out and System.err, so both are swapped while one runs
+    private synchronized int run(String[] request, ByteArrayOutputStream out, ByteArrayOutputStream err) {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            if (request.length == 0 || !request[0].equals(storeOptions)) {
+                System.err.println("The task daemon serves this store with " + describe(storeOptions)
+                        + ", not " + describe(request.length == 0 ? "" : request[0])
+                        + "; repeat the command with the same options, or stop the daemon");
+                return FAILED;
+            }
+            if (request.length == 1) {
+                System.err.println("No command given");
+                return FAILED;
+            }
+            runner.run(request[1], Arrays.copyOfRange(request, 2, request.length));
+            return OK;
+        } catch (RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            return FAILED;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    private static String describe(String storeOptions) {
+        return storeOptions.isEmpty() ? "no store options" : "\"" + storeOptions + "\"";
+    }
+
+    static void writeStrings(DataOutputStream out, String... values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads strings written by {@link #writeStrings}, refusing counts and
+     * lengths that would take more than {@code maxBytes} on the wire before
+     * allocating anything for them.
+     */
+    static String[] readStrings(DataInputStream in, int maxBytes) throws IOException {
+        int count = in.readInt();
+        // Every string takes at least its four-byte length
+        if (count < 0 || count > maxBytes / Integer.BYTES) {
+            throw new IOException("Invalid string count: " + count);
+        }
+        String[] values = new String[count];
+        long remaining = maxBytes - (long) count * Integer.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > remaining) {
+                throw new IOException("Invalid string length: " + length);
+            }
+            remaining -= length;
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    interface CommandRunner {
+        void run(String command, String[] args);
+    }
+}
@@ -0,0 +1,34 @@
+package za.co.wethinkcode.taskmanager.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The compact timestamp encoding {@link Task} stores its times in: UTC
+ * epoch seconds plus nanoseconds, with {@link #NO_TIME} for none. UTC is
+ * only a fixed reference for the seconds; no time zone conversion
+ * happens, so decoding gives back an equal {@link LocalDateTime}. Code
+ * that keeps timestamps per task, such as indexes and columns, uses the
+ * same encoding so it can copy the numbers instead of building dates.
+ */
+public final class EpochTime {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private EpochTime() {
+    }
+
+    public static long secondOf(LocalDateTime time) {
+        return time == null ? NO_TIME : time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static int nanoOf(LocalDateTime time) {
+        return time == null ? 0 : time.getNano();
+    }
+
+    /**
+     * @return the time, or null for {@link #NO_TIME}
+     */
+    public static LocalDateTime timeOf(long second, int nano) {
+        return second == NO_TIME ? null : LocalDateTime.ofEpochSecond(second, nano, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,66 @@
+package za.co.wethinkcode.taskmanager.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numbers every tag name the process has seen, so a task can hold its tags
+ * as small int ids and every task that carries a tag shares one copy of
+ * its name. Ids are handed out in order from zero and never reused; the
+ * dictionary only grows, which suits the few hundred distinct tags a task
+ * list has in practice.
+ *
+ * Lookups are lock-free; registering a new name takes a lock.
+ */
+public final class TagDictionary {
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int count;
+
+    private TagDictionary() {
+    }
+
+    /**
+     * The id of the tag, registering it if it is new.
+     */
+    public static int idOf(String tag) {
+        if (tag == null) {
+            throw new IllegalArgumentException("Tag must not be null");
+        }
+        Integer id = ids.get(tag);
+        return id != null ? id : register(tag);
+    }
+
+    /**
+     * The id of the tag, or -1 if no task has ever carried it.
+     */
+    public static int lookup(String tag) {
+        Integer id = tag == null ? null : ids.get(tag);
+        return id == null ? -1 : id;
+    }
+
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    public static synchronized int size() {
+        return count;
+    }
+
+    private static synchronized int register(String tag) {
+        Integer existing = ids.get(tag);
+        if (existing != null) {
+            return existing;
+        }
+        String[] table = names;
+        if (count == table.length) {
+            table = Arrays.copyOf(table, count * 2);
+        }
+        table[count] = tag;
+        // Published before the id, so whoever can see the id can read the name
+        names = table;
+        ids.put(tag, count);
+        return count++;
+    }
+}
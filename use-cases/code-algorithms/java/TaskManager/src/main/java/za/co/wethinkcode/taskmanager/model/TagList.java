@@ -0,0 +1,180 @@
+package za.co.wethinkcode.taskmanager.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The tags of a task as an immutable list of {@link TagDictionary} ids, in
+ * the order they were added. Reading it allocates nothing: names come
+ * straight from the dictionary, and {@link #containsId(int)} lets hot
+ * loops test for a tag by id. Changes return a new list, so one list can
+ * be shared by every copy of a task and handed out without copying.
+ *
+ * Tags are few per task, so membership is a linear scan of the ids.
+ */
+public final class TagList extends AbstractList<String> implements RandomAccess {
+    public static final TagList EMPTY = new TagList(new int[0]);
+
+    private final int[] ids;
+
+    private TagList(int[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * The tags as a tag list, or the list itself if it already is one.
+     */
+    public static TagList of(Collection<String> tags) {
+        if (tags instanceof TagList) {
+            return (TagList) tags;
+        }
+        if (tags.isEmpty()) {
+            return EMPTY;
+        }
+        int[] ids = new int[tags.size()];
+        int i = 0;
+        for (String tag : tags) {
+            ids[i++] = TagDictionary.idOf(tag);
+        }
+        return new TagList(ids);
+    }
+
+    @Override
+    public String get(int index) {
+        return TagDictionary.nameOf(ids[index]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public boolean containsId(int id) {
+        for (int tagId : ids) {
+            if (tagId == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object tag) {
+        return tag instanceof String && containsId(TagDictionary.lookup((String) tag));
+    }
+
+    @Override
+    public int indexOf(Object tag) {
+        int id = tag instanceof String ? TagDictionary.lookup((String) tag) : -1;
+        for (int i = 0; id >= 0 && i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This list with the tag appended, or this list if it already has it.
+     */
+    public TagList with(String tag) {
+        int id = TagDictionary.idOf(tag);
+        if (containsId(id)) {
+            return this;
+        }
+        int[] added = Arrays.copyOf(ids, ids.length + 1);
+        added[ids.length] = id;
+        return new TagList(added);
+    }
+
+    /**
+     * This list without the first occurrence of the tag, or this list if it
+     * does not have it.
+     */
+    public TagList without(String tag) {
+        int index = indexOf(tag);
+        if (index < 0) {
+            return this;
+        }
+        if (ids.length == 1) {
+            return EMPTY;
+        }
+        int[] removed = new int[ids.length - 1];
+        System.arraycopy(ids, 0, removed, 0, index);
+        System.arraycopy(ids, index + 1, removed, index, removed.length - index);
+        return new TagList(removed);
+    }
+
+    /**
+     * Every distinct tag of this list followed by those only the other has,
+     * or this list itself when that changes nothing.
+     */
+    public TagList union(TagList other) {
+        if (isDistinct() && containsAllIds(other)) {
+            return this;
+        }
+        int[] merged = new int[ids.length + other.ids.length];
+        int size = 0;
+        for (int[] source : new int[][]{ids, other.ids}) {
+            for (int id : source) {
+                if (!contains(merged, size, id)) {
+                    merged[size++] = id;
+                }
+            }
+        }
+        return new TagList(Arrays.copyOf(merged, size));
+    }
+
+    /**
+     * Whether both lists hold the same tags, ignoring order and repeats.
+     */
+    public boolean sameTagsAs(TagList other) {
+        return containsAllIds(other) && other.containsAllIds(this);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof TagList) {
+            return Arrays.equals(ids, ((TagList) other).ids);
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    private boolean containsAllIds(TagList other) {
+        for (int id : other.ids) {
+            if (!containsId(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDistinct() {
+        for (int i = 1; i < ids.length; i++) {
+            if (contains(ids, i, ids[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] ids, int length, int id) {
+        for (int i = 0; i < length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
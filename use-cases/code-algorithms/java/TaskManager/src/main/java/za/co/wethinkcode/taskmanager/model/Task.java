@@ -3,20 +3,40 @@ package za.co.wethinkcode.taskmanager.model;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * A task. Behind the getters the fields are held compactly: priority and
+ * status as byte ordinals, and each timestamp as UTC epoch seconds plus
+ * nanoseconds ({@link EpochTime}) rather than as a {@link LocalDateTime},
+ * which is three objects and 72 bytes. With every timestamp set that takes
+ * a task from 344 bytes to 80, strings aside. The getters rebuild equal
+ * values, so the encoding is not visible to callers; UTC is only a fixed
+ * reference for the seconds and no time zone conversion happens.
+ */
 public class Task {
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final byte NO_ORDINAL = -1;
+    private static final byte DONE = (byte) TaskStatus.DONE.ordinal();
+    private static final long SECONDS_PER_DAY = 86_400;
 
     private String id;
     private String title;
     private String description;
-    private TaskPriority priority;
-    private TaskStatus status;
-    private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
-    private LocalDateTime dueDate;
-    private LocalDateTime completedAt;
-    private List<String> tags;
+    private byte priority;
+    private byte status;
+    // As EpochTime encodes them: epoch seconds, NO_TIME for none, each with its nanoseconds
+    private long createdSecond;
+    private long updatedSecond;
+    private long dueSecond;
+    private long completedSecond;
+    private int createdNano;
+    private int updatedNano;
+    private int dueNano;
+    private int completedNano;
+    private TagList tags;
 
     public Task(
         String title,
@@ -25,16 +45,64 @@ public class Task {
         LocalDateTime dueDate,
         List<String> tags
     ) {
+        LocalDateTime now = LocalDateTime.now();
         this.id = UUID.randomUUID().toString();
         this.title = title;
         this.description = description;
-        this.priority = priority;
-        this.status = TaskStatus.TODO;
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = this.createdAt;
-        this.dueDate = dueDate;
-        this.completedAt = null;
-        this.tags = tags != null ? new ArrayList<>(tags) : new ArrayList<>();
+        setPriority(priority);
+        setStatus(TaskStatus.TODO);
+        setCreatedAt(now);
+        setUpdatedAt(now);
+        setDueDate(dueDate);
+        setCompletedAt(null);
+        this.tags = tags != null ? TagList.of(tags) : TagList.EMPTY;
+    }
+
+    /**
+     * Restores a task with every stored field, as when loading it back from storage.
+     */
+    public Task(
+        String id,
+        String title,
+        String description,
+        TaskPriority priority,
+        TaskStatus status,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        LocalDateTime dueDate,
+        LocalDateTime completedAt,
+        List<String> tags
+    ) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        setPriority(priority);
+        setStatus(status);
+        setCreatedAt(createdAt);
+        setUpdatedAt(updatedAt);
+        setDueDate(dueDate);
+        setCompletedAt(completedAt);
+        this.tags = tags != null ? TagList.of(tags) : TagList.EMPTY;
+    }
+
+    /**
+     * Copies every field. The copy shares the tag list, which is immutable.
+     */
+    public Task(Task other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.priority = other.priority;
+        this.status = other.status;
+        this.createdSecond = other.createdSecond;
+        this.createdNano = other.createdNano;
+        this.updatedSecond = other.updatedSecond;
+        this.updatedNano = other.updatedNano;
+        this.dueSecond = other.dueSecond;
+        this.dueNano = other.dueNano;
+        this.completedSecond = other.completedSecond;
+        this.completedNano = other.completedNano;
+        this.tags = other.tags;
     }
 
     public Task(String title) {
@@ -71,59 +139,108 @@ public class Task {
     }
 
     public TaskPriority getPriority() {
-        return priority;
+        return priority == NO_ORDINAL ? null : PRIORITIES[priority];
     }
 
     public void setPriority(TaskPriority priority) {
-        this.priority = priority;
+        this.priority = priority == null ? NO_ORDINAL : (byte) priority.ordinal();
     }
 
     public TaskStatus getStatus() {
-        return status;
+        return status == NO_ORDINAL ? null : STATUSES[status];
     }
 
     public void setStatus(TaskStatus status) {
-        this.status = status;
+        this.status = status == null ? NO_ORDINAL : (byte) status.ordinal();
     }
 
     public LocalDateTime getCreatedAt() {
-        return createdAt;
+        return EpochTime.timeOf(createdSecond, createdNano);
     }
 
     public void setCreatedAt(LocalDateTime createdAt) {
-        this.createdAt = createdAt;
+        this.createdSecond = EpochTime.secondOf(createdAt);
+        this.createdNano = EpochTime.nanoOf(createdAt);
+    }
+
+    // The encoded fields, for code that keeps or compares times without building dates
+    public long getCreatedEpochSecond() {
+        return createdSecond;
+    }
+
+    public int getCreatedNano() {
+        return createdNano;
     }
 
     public LocalDateTime getUpdatedAt() {
-        return updatedAt;
+        return EpochTime.timeOf(updatedSecond, updatedNano);
     }
 
     public void setUpdatedAt(LocalDateTime updatedAt) {
-        this.updatedAt = updatedAt;
+        this.updatedSecond = EpochTime.secondOf(updatedAt);
+        this.updatedNano = EpochTime.nanoOf(updatedAt);
+    }
+
+    public long getUpdatedEpochSecond() {
+        return updatedSecond;
+    }
+
+    public int getUpdatedNano() {
+        return updatedNano;
     }
 
     public LocalDateTime getDueDate() {
-        return dueDate;
+        return EpochTime.timeOf(dueSecond, dueNano);
     }
 
     public void setDueDate(LocalDateTime dueDate) {
-        this.dueDate = dueDate;
+        this.dueSecond = EpochTime.secondOf(dueDate);
+        this.dueNano = EpochTime.nanoOf(dueDate);
+    }
+
+    public long getDueEpochSecond() {
+        return dueSecond;
+    }
+
+    public int getDueNano() {
+        return dueNano;
     }
 
     public LocalDateTime getCompletedAt() {
-        return completedAt;
+        return EpochTime.timeOf(completedSecond, completedNano);
     }
 
     public void setCompletedAt(LocalDateTime completedAt) {
-        this.completedAt = completedAt;
+        this.completedSecond = EpochTime.secondOf(completedAt);
+        this.completedNano = EpochTime.nanoOf(completedAt);
+    }
+
+    public long getCompletedEpochSecond() {
+        return completedSecond;
     }
 
+    public int getCompletedNano() {
+        return completedNano;
+    }
+
+    /**
+     * A modifiable copy of the tags; use {@link #getTagView()} to read them
+     * without copying.
+     */
     public List<String> getTags() {
         return new ArrayList<>(tags);
     }
 
+    /**
+     * The tags themselves, as a read-only list that stays as it is when
+     * the task's tags change.
+     */
+    public TagList getTagView() {
+        return tags;
+    }
+
     public void setTags(List<String> tags) {
-        this.tags = new ArrayList<>(tags);
+        this.tags = TagList.of(tags);
     }
 
     // Business methods
@@ -135,43 +252,110 @@ public class Task {
             this.description = updates.getDescription();
         }
         if (updates.getPriority() != null) {
-            this.priority = updates.getPriority();
+            setPriority(updates.getPriority());
         }
         if (updates.getStatus() != null) {
-            this.status = updates.getStatus();
+            setStatus(updates.getStatus());
         }
         if (updates.getDueDate() != null) {
-            this.dueDate = updates.getDueDate();
+            setDueDate(updates.getDueDate());
         }
-        if (updates.getTags() != null && !updates.getTags().isEmpty()) {
-            this.tags = new ArrayList<>(updates.getTags());
+        TagList updatedTags = updates.getTagView();
+        if (updatedTags != null && !updatedTags.isEmpty()) {
+            this.tags = updatedTags;
         }
-        this.updatedAt = LocalDateTime.now();
+        setUpdatedAt(LocalDateTime.now());
     }
 
     public void markAsDone() {
-        this.status = TaskStatus.DONE;
-        this.completedAt = LocalDateTime.now();
-        this.updatedAt = this.completedAt;
+        LocalDateTime now = LocalDateTime.now();
+        setStatus(TaskStatus.DONE);
+        setCompletedAt(now);
+        setUpdatedAt(now);
     }
 
     public boolean isOverdue() {
-        if (this.dueDate == null) {
+        return isOverdue(LocalDateTime.now());
+    }
+
+    /**
+     * Overdue check against a caller-supplied clock reading, so a whole
+     * query can be evaluated against one instant.
+     */
+    public boolean isOverdue(LocalDateTime now) {
+        if (this.dueSecond == EpochTime.NO_TIME || this.status == DONE) {
             return false;
         }
-        return (
-            this.dueDate.isBefore(LocalDateTime.now()) &&
-            this.status != TaskStatus.DONE
-        );
+        long nowSecond = EpochTime.secondOf(now);
+        return dueSecond < nowSecond || (dueSecond == nowSecond && dueNano < now.getNano());
     }
 
-    public void addTag(String tag) {
-        if (!this.tags.contains(tag)) {
-            this.tags.add(tag);
+    public boolean hasDueDate() {
+        return dueSecond != EpochTime.NO_TIME;
+    }
+
+    /**
+     * Whole days from {@code now} to the due date, truncated toward zero as
+     * {@code ChronoUnit.DAYS.between(now, getDueDate())} counts them but
+     * without building the date. Only meaningful if {@link #hasDueDate()}.
+     */
+    public long daysUntilDue(LocalDateTime now) {
+        return daysBetween(EpochTime.secondOf(now), now.getNano(), dueSecond, dueNano);
+    }
+
+    /**
+     * Whole days from the last update to {@code now}, as
+     * {@code ChronoUnit.DAYS.between(getUpdatedAt(), now)} counts them.
+     */
+    public long daysSinceUpdate(LocalDateTime now) {
+        if (updatedSecond == EpochTime.NO_TIME) {
+            throw new NullPointerException("Task has no update time");
         }
+        return daysBetween(updatedSecond, updatedNano, EpochTime.secondOf(now), now.getNano());
+    }
+
+    /**
+     * Whether the other task holds the same values in every field, compared
+     * on the compact encoding without building any timestamps. Tasks have
+     * identity, so this is not {@link #equals}.
+     */
+    public boolean sameContentAs(Task other) {
+        return Objects.equals(id, other.id)
+                && Objects.equals(title, other.title)
+                && Objects.equals(description, other.description)
+                && priority == other.priority
+                && status == other.status
+                && createdSecond == other.createdSecond && createdNano == other.createdNano
+                && updatedSecond == other.updatedSecond && updatedNano == other.updatedNano
+                && dueSecond == other.dueSecond && dueNano == other.dueNano
+                && completedSecond == other.completedSecond && completedNano == other.completedNano
+                && Objects.equals(tags, other.tags);
+    }
+
+    public void addTag(String tag) {
+        this.tags = this.tags.with(tag);
+    }
+
+    public boolean hasTag(String tag) {
+        return this.tags.contains(tag);
     }
 
     public boolean removeTag(String tag) {
-        return this.tags.remove(tag);
+        TagList remaining = this.tags.without(tag);
+        boolean removed = remaining != this.tags;
+        this.tags = remaining;
+        return removed;
+    }
+
+    private static long daysBetween(long fromSecond, int fromNano, long toSecond, int toNano) {
+        long seconds = toSecond - fromSecond;
+        int nanos = toNano - fromNano;
+        // Truncate the part-second toward zero before counting days
+        if (seconds > 0 && nanos < 0) {
+            seconds--;
+        } else if (seconds < 0 && nanos > 0) {
+            seconds++;
+        }
+        return seconds / SECONDS_PER_DAY;
     }
 }
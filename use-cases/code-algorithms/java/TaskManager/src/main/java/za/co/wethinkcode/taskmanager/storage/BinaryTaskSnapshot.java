@@ -0,0 +1,246 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.EpochTime;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary snapshot of a task store.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int   magic "TMS1"
+ *   int   tag count, then each tag as a length-prefixed UTF-8 string
+ *   int   record count
+ *   index record count x (int id hash, long record offset), sorted by hash
+ *   records, each an int length followed by:
+ *     id, title, description   length-prefixed UTF-8 (-1 for null)
+ *     priority, status         byte enum ordinal (-1 for null)
+ *     created, updated, due,
+ *     completed                long epoch second (Long.MIN_VALUE for null) + int nano
+ *     tags                     int count, then int ids into the tag table
+ * </pre>
+ * The id index lets {@link #readTask(Path, String)} binary-search a single
+ * record out of a memory-mapped file without decoding any other.
+ */
+final class BinaryTaskSnapshot {
+    private static final int MAGIC = 0x544D5331;
+    private static final int INDEX_ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private BinaryTaskSnapshot() {
+    }
+
+    static void write(Collection<Task> tasks, OutputStream target) throws IOException {
+        Map<String, Integer> tagIds = new HashMap<>();
+        List<String> tagTable = new ArrayList<>();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(buffer);
+        long[] hashAndPosition = new long[tasks.size()];
+        int[] recordStarts = new int[tasks.size()];
+
+        int index = 0;
+        for (Task task : tasks) {
+            buffer.reset();
+            writeString(record, task.getId());
+            writeString(record, task.getTitle());
+            writeString(record, task.getDescription());
+            record.writeByte(task.getPriority() == null ? -1 : task.getPriority().ordinal());
+            record.writeByte(task.getStatus() == null ? -1 : task.getStatus().ordinal());
+            writeTime(record, task.getCreatedEpochSecond(), task.getCreatedNano());
+            writeTime(record, task.getUpdatedEpochSecond(), task.getUpdatedNano());
+            writeTime(record, task.getDueEpochSecond(), task.getDueNano());
+            writeTime(record, task.getCompletedEpochSecond(), task.getCompletedNano());
+            List<String> tags = task.getTagView();
+            record.writeInt(tags.size());
+            for (String tag : tags) {
+                Integer tagId = tagIds.get(tag);
+                if (tagId == null) {
+                    tagId = tagTable.size();
+                    tagIds.put(tag, tagId);
+                    tagTable.add(tag);
+                }
+                record.writeInt(tagId);
+            }
+
+            recordStarts[index] = records.size();
+            hashAndPosition[index] = ((long) task.getId().hashCode() << 32) | index;
+            records.writeInt(buffer.size());
+            buffer.writeTo(records);
+            index++;
+        }
+        records.flush();
+
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(MAGIC);
+        out.writeInt(tagTable.size());
+        int headerBytes = 2 * Integer.BYTES;
+        for (String tag : tagTable) {
+            byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            headerBytes += Integer.BYTES + bytes.length;
+        }
+        out.writeInt(index);
+        headerBytes += Integer.BYTES;
+
+        // Sorting the packed longs orders entries by signed hash
+        Arrays.sort(hashAndPosition, 0, index);
+        long recordsStart = headerBytes + (long) index * INDEX_ENTRY_BYTES;
+        for (int i = 0; i < index; i++) {
+            out.writeInt((int) (hashAndPosition[i] >> 32));
+            out.writeLong(recordsStart + recordStarts[(int) hashAndPosition[i]]);
+        }
+        recordBytes.writeTo(out);
+        out.flush();
+    }
+
+    static void read(Path path, Consumer<Task> sink) throws IOException {
+        ByteBuffer buffer = map(path);
+        String[] tags = readHeader(buffer);
+        int count = buffer.getInt();
+        buffer.position(buffer.position() + count * INDEX_ENTRY_BYTES);
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            sink.accept(readRecord(buffer, tags, scratch));
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * Decodes the one record with the given id, or returns null.
+     */
+    static Task readTask(Path path, String taskId) throws IOException {
+        ByteBuffer buffer = map(path);
+        String[] tags = readHeader(buffer);
+        int count = buffer.getInt();
+        int indexStart = buffer.position();
+        int hash = taskId.hashCode();
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleHash = buffer.getInt(indexStart + middle * INDEX_ENTRY_BYTES);
+            if (middleHash < hash) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        byte[] scratch = new byte[256];
+        for (int entry = low; entry < count; entry++) {
+            int entryStart = indexStart + entry * INDEX_ENTRY_BYTES;
+            if (buffer.getInt(entryStart) != hash) {
+                break;
+            }
+            buffer.position((int) buffer.getLong(entryStart + Integer.BYTES) + Integer.BYTES);
+            Task task = readRecord(buffer, tags, scratch);
+            if (taskId.equals(task.getId())) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot larger than 2 GB: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary task snapshot: " + path);
+            }
+            return buffer;
+        }
+    }
+
+    private static String[] readHeader(ByteBuffer buffer) {
+        String[] tags = new String[buffer.getInt()];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = readString(buffer, scratch);
+        }
+        return tags;
+    }
+
+    private static Task readRecord(ByteBuffer buffer, String[] tagTable, byte[] scratch) {
+        String id = readString(buffer, scratch);
+        String title = readString(buffer, scratch);
+        String description = readString(buffer, scratch);
+        byte priority = buffer.get();
+        byte status = buffer.get();
+        LocalDateTime createdAt = readTime(buffer);
+        LocalDateTime updatedAt = readTime(buffer);
+        LocalDateTime dueDate = readTime(buffer);
+        LocalDateTime completedAt = readTime(buffer);
+        int tagCount = buffer.getInt();
+        List<String> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(tagTable[buffer.getInt()]);
+        }
+        return new Task(id, title, description,
+                priority < 0 ? null : PRIORITIES[priority],
+                status < 0 ? null : STATUSES[status],
+                createdAt, updatedAt, dueDate, completedAt, tags);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Task's own EpochTime encoding; the nano keeps values such as LocalTime.MAX exact
+    private static void writeTime(DataOutputStream out, long second, int nano) throws IOException {
+        out.writeLong(second);
+        out.writeInt(nano);
+    }
+
+    private static LocalDateTime readTime(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nano = buffer.getInt();
+        return EpochTime.timeOf(seconds, nano);
+    }
+}
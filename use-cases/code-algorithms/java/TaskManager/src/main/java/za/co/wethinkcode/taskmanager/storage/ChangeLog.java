@@ -0,0 +1,140 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The recent mutations of a storage, newest first, carried by each
+ * {@link TaskSnapshot}. Like the snapshot it never changes: recording a
+ * mutation returns a new log sharing every older entry, so the log always
+ * matches the snapshot it belongs to and needs no lock of its own.
+ *
+ * The log keeps at least {@code capacity} entries. Once it holds twice
+ * that, the older half is dropped in one copy, and the floor moves up to
+ * the newest sequence number dropped: changes after the floor are all
+ * still known, earlier ones are not. The floor starts at the origin, the
+ * version of the storage's first, empty snapshot.
+ */
+final class ChangeLog {
+    static final int DEFAULT_CAPACITY = 10_000;
+
+    private final Entry newest;
+    private final int size;
+    private final long origin;
+    private final long floor;
+    private final int capacity;
+
+    private ChangeLog(Entry newest, int size, long origin, long floor, int capacity) {
+        this.newest = newest;
+        this.size = size;
+        this.origin = origin;
+        this.floor = floor;
+        this.capacity = capacity;
+    }
+
+    static ChangeLog startingAt(long origin) {
+        return new ChangeLog(null, 0, origin, origin, DEFAULT_CAPACITY);
+    }
+
+    ChangeLog withCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Change log capacity must be positive: " + capacity);
+        }
+        return new ChangeLog(newest, size, origin, floor, capacity).trimmed();
+    }
+
+    ChangeLog record(long sequence, String taskId, TaskChanges.Kind kind) {
+        return new ChangeLog(new Entry(sequence, taskId, kind, newest), size + 1, origin, floor, capacity).trimmed();
+    }
+
+    /**
+     * Forgets everything up to and including the sequence number, as when
+     * a reload changed more tasks than the log could hold.
+     */
+    ChangeLog forgetThrough(long sequence) {
+        return new ChangeLog(null, 0, origin, sequence, capacity);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The net change to each task after the sequence number, up to the
+     * snapshot version the log belongs to. Zero stands for the origin. A
+     * number outside the log's range, including any issued by another
+     * storage, gives an incomplete result.
+     */
+    TaskChanges since(long sequence, long version) {
+        if (sequence == 0) {
+            sequence = origin;
+        }
+        if (sequence < floor || sequence > version) {
+            return new TaskChanges(version, false, Set.of(), Set.of(), Set.of());
+        }
+        // Walking back from the newest, the first entry seen for a task is its last change and the final one its first
+        Map<String, TaskChanges.Kind> last = new HashMap<>();
+        Map<String, TaskChanges.Kind> first = new HashMap<>();
+        LinkedHashSet<String> order = new LinkedHashSet<>();
+        for (Entry entry = newest; entry != null && entry.sequence > sequence; entry = entry.previous) {
+            last.putIfAbsent(entry.taskId, entry.kind);
+            first.put(entry.taskId, entry.kind);
+            order.add(entry.taskId);
+        }
+
+        Set<String> created = new LinkedHashSet<>();
+        Set<String> updated = new LinkedHashSet<>();
+        Set<String> deleted = new LinkedHashSet<>();
+        for (String taskId : order) {
+            boolean existedBefore = first.get(taskId) != TaskChanges.Kind.CREATED;
+            boolean existsNow = last.get(taskId) != TaskChanges.Kind.DELETED;
+            if (existedBefore && existsNow) {
+                updated.add(taskId);
+            } else if (existsNow) {
+                created.add(taskId);
+            } else if (existedBefore) {
+                deleted.add(taskId);
+            }
+        }
+        return new TaskChanges(version, true, created, updated, deleted);
+    }
+
+    private ChangeLog trimmed() {
+        if (size <= 2 * capacity) {
+            return this;
+        }
+        Entry[] kept = new Entry[capacity];
+        Entry entry = newest;
+        for (int i = 0; i < capacity; i++) {
+            kept[i] = entry;
+            entry = entry.previous;
+        }
+        // Entries sharing a sequence number came from one reload and go together
+        long dropped = entry.sequence;
+        int keep = capacity;
+        while (keep > 0 && kept[keep - 1].sequence == dropped) {
+            keep--;
+        }
+        Entry copy = null;
+        for (int i = keep - 1; i >= 0; i--) {
+            copy = new Entry(kept[i].sequence, kept[i].taskId, kept[i].kind, copy);
+        }
+        return new ChangeLog(copy, keep, origin, dropped, capacity);
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final String taskId;
+        private final TaskChanges.Kind kind;
+        private final Entry previous;
+
+        Entry(long sequence, String taskId, TaskChanges.Kind kind, Entry previous) {
+            this.sequence = sequence;
+            this.taskId = taskId;
+            this.kind = kind;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.EpochTime;
+import za.co.wethinkcode.taskmanager.model.TagDictionary;
+import za.co.wethinkcode.taskmanager.model.TagList;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fields of many tasks that analytical scans read, held as primitive
+ * columns instead of one object graph per task: status and priority as
+ * byte ordinals, timestamps as long epoch seconds and tags as sorted
+ * arrays of {@link TagDictionary} ids. A scan over a million tasks then
+ * touches a few contiguous arrays rather than millions of objects.
+ *
+ * Only the id is kept of each task's text, so this is a projection for
+ * counting and scoring, not a store: look rows up again by
+ * {@link #id(int)}. Timestamps are the seconds of Task's
+ * {@link EpochTime} encoding, copied without building dates.
+ *
+ * Rows are dense: removing a task moves the last row into its place. Not
+ * thread-safe.
+ */
+public class ColumnarTasks {
+    /** Stands for a missing status or priority. */
+    public static final byte NO_ORDINAL = -1;
+    /** Stands for a missing timestamp. */
+    public static final long NO_TIME = EpochTime.NO_TIME;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] NO_TAGS = new int[0];
+    private static final int DONE = TaskStatus.DONE.ordinal();
+
+    private final Map<String, Integer> rowOf = new HashMap<>();
+    private int size;
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private byte[] priorities = new byte[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] updatedAt = new long[INITIAL_CAPACITY];
+    private long[] dueDates = new long[INITIAL_CAPACITY];
+    private long[] completedAt = new long[INITIAL_CAPACITY];
+    private int[][] tags = new int[INITIAL_CAPACITY][];
+
+    public static ColumnarTasks of(Iterable<Task> tasks) {
+        ColumnarTasks columns = new ColumnarTasks();
+        for (Task task : tasks) {
+            columns.put(task);
+        }
+        return columns;
+    }
+
+    /**
+     * Adds a task, or overwrites its row if the id is already present.
+     */
+    public void put(Task task) {
+        Integer existing = rowOf.get(task.getId());
+        int row;
+        if (existing != null) {
+            row = existing;
+        } else {
+            if (size == ids.length) {
+                grow();
+            }
+            row = size++;
+            ids[row] = task.getId();
+            rowOf.put(task.getId(), row);
+        }
+        statuses[row] = task.getStatus() == null ? NO_ORDINAL : (byte) task.getStatus().ordinal();
+        priorities[row] = task.getPriority() == null ? NO_ORDINAL : (byte) task.getPriority().ordinal();
+        createdAt[row] = task.getCreatedEpochSecond();
+        updatedAt[row] = task.getUpdatedEpochSecond();
+        dueDates[row] = task.getDueEpochSecond();
+        completedAt[row] = task.getCompletedEpochSecond();
+        tags[row] = tagIdsOf(task.getTagView());
+    }
+
+    public boolean remove(String taskId) {
+        Integer row = rowOf.remove(taskId);
+        if (row == null) {
+            return false;
+        }
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            statuses[row] = statuses[last];
+            priorities[row] = priorities[last];
+            createdAt[row] = createdAt[last];
+            updatedAt[row] = updatedAt[last];
+            dueDates[row] = dueDates[last];
+            completedAt[row] = completedAt[last];
+            tags[row] = tags[last];
+            rowOf.put(ids[row], row);
+        }
+        ids[last] = null;
+        tags[last] = null;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * The row holding the task, or -1.
+     */
+    public int rowOf(String taskId) {
+        Integer row = rowOf.get(taskId);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * The {@link TaskStatus} ordinal, or {@link #NO_ORDINAL}.
+     */
+    public byte status(int row) {
+        return statuses[row];
+    }
+
+    /**
+     * The {@link TaskPriority} ordinal, or {@link #NO_ORDINAL}.
+     */
+    public byte priority(int row) {
+        return priorities[row];
+    }
+
+    public long createdAt(int row) {
+        return createdAt[row];
+    }
+
+    public long updatedAt(int row) {
+        return updatedAt[row];
+    }
+
+    /**
+     * The due date in epoch seconds, or {@link #NO_TIME}.
+     */
+    public long dueDate(int row) {
+        return dueDates[row];
+    }
+
+    public long completedAt(int row) {
+        return completedAt[row];
+    }
+
+    /**
+     * Whether the row carries any of the tags, given as ids from {@link #tagId(String)}.
+     */
+    public boolean hasAnyTag(int row, int[] wanted) {
+        int[] rowTags = tags[row];
+        for (int tag : wanted) {
+            if (tag >= 0 && Arrays.binarySearch(rowTags, tag) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The id a tag is stored under, or -1 if no task has ever carried it.
+     */
+    public int tagId(String tag) {
+        return TagDictionary.lookup(tag);
+    }
+
+    /**
+     * The status and priority histograms, the overdue count and the
+     * number completed after {@code completedAfter}, in one pass.
+     */
+    public TaskStatistics summarize(LocalDateTime now, LocalDateTime completedAfter) {
+        long nowSecond = EpochTime.secondOf(now);
+        long since = EpochTime.secondOf(completedAfter);
+        int[] byStatus = new int[TaskStatus.values().length];
+        int[] byPriority = new int[TaskPriority.values().length];
+        int overdue = 0;
+        int completed = 0;
+        for (int row = 0; row < size; row++) {
+            byte status = statuses[row];
+            if (status >= 0) {
+                byStatus[status]++;
+            }
+            byte priority = priorities[row];
+            if (priority >= 0) {
+                byPriority[priority]++;
+            }
+            long due = dueDates[row];
+            if (due != NO_TIME && due < nowSecond && status != DONE) {
+                overdue++;
+            }
+            if (completedAt[row] > since) {
+                completed++;
+            }
+        }
+        return new TaskStatistics(size, byStatus, byPriority, overdue, completed);
+    }
+
+    private static int[] tagIdsOf(TagList tagList) {
+        if (tagList.isEmpty()) {
+            return NO_TAGS;
+        }
+        int[] result = new int[tagList.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = tagList.idAt(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+        dueDates = Arrays.copyOf(dueDates, capacity);
+        completedAt = Arrays.copyOf(completedAt, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+    }
+}
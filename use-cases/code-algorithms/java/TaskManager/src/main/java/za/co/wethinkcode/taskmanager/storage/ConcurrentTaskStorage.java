@@ -0,0 +1,250 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Task storage that can be shared between threads without outside locking.
+ *
+ * Reads never lock: tasks live in published snapshots and concurrent
+ * indexes, and every stored task is a private copy that is replaced, never
+ * edited, once published. Writes lock one of a fixed set of stripes chosen by task
+ * id, so writers to different tasks rarely wait on each other, and
+ * {@link #modifyTask(String, Predicate)} is atomic per task.
+ *
+ * Persistence is serialized separately. Readers never wait for it, and
+ * writers that queue up behind a running full save share the next one
+ * instead of each rewriting the file.
+ *
+ * {@link #getTask(String)} returns a copy the caller may edit and pass to
+ * {@link #saveTask(Task)}. The lists returned by the queries hold the
+ * published tasks and must be treated as read-only.
+ */
+public class ConcurrentTaskStorage extends TaskStorage {
+    private static final int STRIPE_COUNT = 64;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    private final Object persistLock = new Object();
+    private final AtomicLong saveRequests = new AtomicLong();
+    private long savedThrough;
+
+    public ConcurrentTaskStorage(String storagePath) {
+        this(storagePath, false);
+    }
+
+    public ConcurrentTaskStorage(String storagePath, boolean journaled) {
+        super(storagePath, journaled, false, true);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+
+        load();
+    }
+
+    @Override
+    public void load() {
+        lockAll();
+        try {
+            synchronized (persistLock) {
+                super.load();
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Takes every stripe, as other processes' changes can touch any task.
+     */
+    @Override
+    public boolean refresh() {
+        lockAll();
+        try {
+            synchronized (persistLock) {
+                return super.refresh();
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Writes a full snapshot, unless one that started after this call was
+     * made has already finished.
+     */
+    @Override
+    boolean saveSnapshot() {
+        long request = saveRequests.incrementAndGet();
+        synchronized (persistLock) {
+            if (savedThrough >= request) {
+                return true;
+            }
+            // Every change made before this point is in the map and will be in the snapshot
+            long covered = saveRequests.get();
+            if (!super.saveSnapshot()) {
+                return false;
+            }
+            savedThrough = covered;
+            return true;
+        }
+    }
+
+    @Override
+    public int importJson(String path) {
+        lockAll();
+        try {
+            return super.importJson(path);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public int archiveCompleted(Duration age) {
+        lockAll();
+        try {
+            return super.archiveCompleted(age);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Batches are rare and span many stripes, so they take them all
+    @Override
+    public boolean applyBatch(TaskBatch batch) {
+        lockAll();
+        try {
+            return super.applyBatch(batch);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public String addTask(Task task) {
+        ReentrantLock lock = stripeOf(task.getId());
+        lock.lock();
+        try {
+            return super.addTask(new Task(task));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task getTask(String taskId) {
+        Task task = super.getTask(taskId);
+        return task == null ? null : new Task(task);
+    }
+
+    @Override
+    public boolean updateTask(String taskId, Task updates) {
+        ReentrantLock lock = stripeOf(taskId);
+        lock.lock();
+        try {
+            return super.updateTask(taskId, updates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveTask(Task task) {
+        ReentrantLock lock = stripeOf(task.getId());
+        lock.lock();
+        try {
+            super.saveTask(new Task(task));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean modifyTask(String taskId, Predicate<Task> change) {
+        ReentrantLock lock = stripeOf(taskId);
+        lock.lock();
+        try {
+            return super.modifyTask(taskId, change);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteTask(String taskId) {
+        ReentrantLock lock = stripeOf(taskId);
+        lock.lock();
+        try {
+            return super.deleteTask(taskId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean flush() {
+        synchronized (persistLock) {
+            return super.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (persistLock) {
+            super.close();
+        }
+    }
+
+    @Override
+    Task copyForStorage(Task task) {
+        return new Task(task);
+    }
+
+    // getTask already hands out a private copy
+    @Override
+    Task copyForChange(Task published) {
+        return published;
+    }
+
+    // The stripes already keep writers to one task apart
+    @Override
+    <T> T locked(Supplier<T> body) {
+        return body.get();
+    }
+
+    // Called with the task's stripe held, so records for one task reach the journal in order
+    @Override
+    boolean appendToJournal(Collection<String> taskIds) {
+        synchronized (persistLock) {
+            return super.appendToJournal(taskIds);
+        }
+    }
+
+    // Writers to other stripes may be publishing, so other processes' changes wait for refresh
+    @Override
+    boolean catchesUpWhileWriting() {
+        return false;
+    }
+
+    private ReentrantLock stripeOf(String taskId) {
+        return stripes[Math.floorMod(taskId.hashCode(), STRIPE_COUNT)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPE_COUNT - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+/**
+ * When a mutation reaches disk.
+ */
+public enum Durability {
+    /** Every mutation is persisted before the call returns. */
+    SYNC("sync"),
+    /** Mutations within the group commit window of the first unsaved one share one write. */
+    GROUP("group"),
+    /** A background thread writes mutations as soon as the previous write finishes. */
+    ASYNC("async");
+
+    private final String value;
+
+    Durability(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static Durability fromValue(String value) {
+        for (Durability durability : Durability.values()) {
+            if (durability.getValue().equals(value)) {
+                return durability;
+            }
+        }
+        throw new IllegalArgumentException("Invalid durability value: " + value);
+    }
+}
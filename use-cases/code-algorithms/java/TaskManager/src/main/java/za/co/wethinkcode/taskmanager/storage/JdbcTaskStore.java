@@ -0,0 +1,842 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import com.google.gson.stream.JsonWriter;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Task store kept in an embedded SQL database over JDBC, by default an H2
+ * database file.
+ *
+ * Nothing is loaded up front. Each call runs a few statements, with
+ * filters, sorting and limits pushed down into SQL, so stores larger than
+ * the heap can be queried. Status, priority, due date and creation time
+ * are indexed columns of the tasks table; tags and search tokens live in
+ * tables of their own, indexed by tag and by token.
+ *
+ * Every call is one transaction, committed before it returns, so the only
+ * durability on offer is {@link Durability#SYNC}. Calls are serialized on
+ * the store's single connection. Tasks returned are detached copies: edits
+ * only reach the database through {@link #saveTask(Task)}.
+ */
+public class JdbcTaskStore implements TaskStore {
+    /** Storage paths with this extension select this store in TaskManager. */
+    public static final String DB_EXTENSION = ".db";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS tasks ("
+                    + "id VARCHAR(64) PRIMARY KEY, title VARCHAR, description VARCHAR, priority INT, "
+                    + "status VARCHAR(16), created_at TIMESTAMP(9), updated_at TIMESTAMP(9), "
+                    + "due_date TIMESTAMP(9), completed_at TIMESTAMP(9))",
+            "CREATE INDEX IF NOT EXISTS tasks_status ON tasks (status)",
+            "CREATE INDEX IF NOT EXISTS tasks_priority ON tasks (priority)",
+            "CREATE INDEX IF NOT EXISTS tasks_due_date ON tasks (due_date)",
+            "CREATE INDEX IF NOT EXISTS tasks_created ON tasks (created_at, id)",
+            "CREATE INDEX IF NOT EXISTS tasks_completed ON tasks (completed_at)",
+            "CREATE TABLE IF NOT EXISTS task_tags ("
+                    + "task_id VARCHAR(64) NOT NULL REFERENCES tasks (id) ON DELETE CASCADE, "
+                    + "tag_index INT NOT NULL, tag VARCHAR NOT NULL, PRIMARY KEY (task_id, tag_index))",
+            "CREATE INDEX IF NOT EXISTS task_tags_tag ON task_tags (tag, task_id)",
+            "CREATE TABLE IF NOT EXISTS task_terms ("
+                    + "task_id VARCHAR(64) NOT NULL REFERENCES tasks (id) ON DELETE CASCADE, "
+                    + "term VARCHAR NOT NULL, weight INT NOT NULL, PRIMARY KEY (task_id, term))",
+            "CREATE INDEX IF NOT EXISTS task_terms_term ON task_terms (term, task_id)"
+    };
+
+    private final Connection connection;
+    private final TaskArchive archive;
+    private final TaskTypeAdapter adapter = new TaskTypeAdapter();
+    private Clock clock = Clock.systemDefaultZone();
+    private boolean substringSearch;
+    // Moved on by every write statement; a read made after it waits in run for the write to commit
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Opens the database at the JDBC URL, creating the tables it needs.
+     *
+     * @throws IllegalStateException if the database cannot be opened
+     */
+    public JdbcTaskStore(String jdbcUrl) {
+        this(jdbcUrl, null);
+    }
+
+    /**
+     * Opens the database as {@link #JdbcTaskStore(String)} does, moving
+     * tasks to the archive given when they are archived.
+     */
+    public JdbcTaskStore(String jdbcUrl, TaskArchive archive) {
+        this.archive = archive;
+        try {
+            connection = DriverManager.getConnection(jdbcUrl);
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open task database " + jdbcUrl + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens an H2 database file for a storage path such as {@code tasks.db};
+     * H2 names the file on disk {@code tasks.mv.db}.
+     */
+    public static JdbcTaskStore openFile(String storagePath) {
+        String base = storagePath.endsWith(DB_EXTENSION)
+                ? storagePath.substring(0, storagePath.length() - DB_EXTENSION.length())
+                : storagePath;
+        return new JdbcTaskStore("jdbc:h2:file:" + Paths.get(base).toAbsolutePath(), TaskArchive.forStore(storagePath));
+    }
+
+    /**
+     * The clock that time-relative queries such as overdue and due today
+     * are evaluated against.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Clock getClock() {
+        return clock;
+    }
+
+    @Override
+    public String addTask(Task task) {
+        return run("adding task", null, () -> {
+            write(task, null);
+            return task.getId();
+        });
+    }
+
+    @Override
+    public Task getTask(String taskId) {
+        return run("reading task", null, () -> load(taskId));
+    }
+
+    @Override
+    public boolean updateTask(String taskId, Task updates) {
+        return run("updating task", false, () -> {
+            Task task = load(taskId);
+            if (task == null) {
+                return false;
+            }
+            Task before = new Task(task);
+            task.update(updates);
+            write(task, before);
+            return true;
+        });
+    }
+
+    @Override
+    public void saveTask(Task task) {
+        run("saving task", null, () -> {
+            write(task, null);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean modifyTask(String taskId, Predicate<Task> change) {
+        return run("updating task", false, () -> {
+            Task task = load(taskId);
+            if (task == null) {
+                return false;
+            }
+            Task before = new Task(task);
+            if (!change.test(task)) {
+                return false;
+            }
+            write(task, before);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean deleteTask(String taskId) {
+        return run("deleting task", false, () -> delete(taskId));
+    }
+
+    @Override
+    public List<String> addTasks(Collection<Task> tasks) {
+        TaskBatch batch = new TaskBatch();
+        List<String> taskIds = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            batch.add(task);
+            taskIds.add(task.getId());
+        }
+        applyBatch(batch);
+        return taskIds;
+    }
+
+    @Override
+    public boolean updateTasks(Map<String, Task> updates) {
+        TaskBatch batch = new TaskBatch();
+        updates.forEach(batch::update);
+        return applyBatch(batch);
+    }
+
+    @Override
+    public boolean deleteTasks(Collection<String> taskIds) {
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : new LinkedHashSet<>(taskIds)) {
+            batch.delete(taskId);
+        }
+        return applyBatch(batch);
+    }
+
+    @Override
+    public boolean applyBatch(TaskBatch batch) {
+        return run("applying task batch", false, () -> {
+            Map<String, Boolean> existsAfter = new HashMap<>();
+            for (TaskBatch.Operation operation : batch.operations()) {
+                Boolean known = existsAfter.get(operation.taskId);
+                boolean exists = known != null ? known : load(operation.taskId) != null;
+                if (operation.kind == TaskBatch.Kind.ADD) {
+                    existsAfter.put(operation.taskId, true);
+                } else if (!exists) {
+                    return false;
+                } else if (operation.kind == TaskBatch.Kind.DELETE) {
+                    existsAfter.put(operation.taskId, false);
+                }
+            }
+
+            for (TaskBatch.Operation operation : batch.operations()) {
+                switch (operation.kind) {
+                    case ADD:
+                        write(operation.task, null);
+                        break;
+                    case UPDATE:
+                    case MODIFY:
+                        Task task = load(operation.taskId);
+                        Task before = new Task(task);
+                        if (operation.kind == TaskBatch.Kind.UPDATE) {
+                            task.update(operation.task);
+                        } else {
+                            operation.change.accept(task);
+                        }
+                        write(task, before);
+                        break;
+                    case DELETE:
+                        delete(operation.taskId);
+                        break;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return query(new TaskQuery()).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TaskStatus status) {
+        return query(new TaskQuery().status(status)).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> getTasksByPriority(TaskPriority priority) {
+        return query(new TaskQuery().priority(priority)).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> getOverdueTasks() {
+        return query(new TaskQuery().overdue()).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> getTasksDueToday() {
+        LocalDate today = LocalDate.now(clock);
+        return getTasksDueBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+    }
+
+    @Override
+    public List<Task> getTasksDueBetween(LocalDateTime from, LocalDateTime to) {
+        return query(new TaskQuery().dueFrom(from).dueBefore(to).sortBy(TaskQuery.SortKey.DUE_DATE, false))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> getTasksByTags(Collection<String> allTags, Collection<String> anyTags) {
+        TaskQuery query = new TaskQuery();
+        if (allTags != null) {
+            query.allTags(allTags);
+        }
+        if (anyTags != null) {
+            query.anyTags(anyTags);
+        }
+        return query(query).collect(Collectors.toList());
+    }
+
+    /**
+     * Grouped counts over the status and priority indexes and range counts
+     * over the due date and completion time indexes, so the work grows with
+     * the index, not with the rows that have to be read.
+     */
+    @Override
+    public TaskStatistics getStatistics() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return run("counting tasks", new TaskStatistics(0, new int[TaskStatus.values().length],
+                new int[TaskPriority.values().length], 0, 0), () -> {
+            int[] byStatus = new int[TaskStatus.values().length];
+            try (PreparedStatement statement = prepare(
+                    "SELECT status, COUNT(*) FROM tasks WHERE status IS NOT NULL GROUP BY status", List.of());
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    byStatus[TaskStatus.fromValue(rows.getString(1)).ordinal()] = rows.getInt(2);
+                }
+            }
+            int[] byPriority = new int[TaskPriority.values().length];
+            try (PreparedStatement statement = prepare(
+                    "SELECT priority, COUNT(*) FROM tasks WHERE priority IS NOT NULL GROUP BY priority", List.of());
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    byPriority[TaskPriority.fromValue(rows.getInt(1)).ordinal()] = rows.getInt(2);
+                }
+            }
+            return new TaskStatistics((int) count("SELECT COUNT(*) FROM tasks"), byStatus, byPriority,
+                    (int) count("SELECT COUNT(*) FROM tasks WHERE due_date < ? AND (status IS NULL OR status <> ?)",
+                            now, TaskStatus.DONE.getValue()),
+                    (int) count("SELECT COUNT(*) FROM tasks WHERE completed_at > ?",
+                            now.minus(TaskStatistics.RECENT_WINDOW)));
+        });
+    }
+
+    /**
+     * Runs the whole query, filters, order and limit, as one SELECT. The
+     * result is read before this returns.
+     */
+    @Override
+    public Stream<Task> query(TaskQuery query) {
+        Filter filter = filter(query, LocalDateTime.now(clock));
+        List<Task> tasks = run("querying tasks", Collections.emptyList(),
+                () -> select(filter, orderBy(query), query.limit()));
+        return tasks.stream();
+    }
+
+    @Override
+    public TaskPage page(TaskQuery query, String after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        if (query.sortKey() != null) {
+            throw new IllegalArgumentException("Pages are always in creation order; remove the sort key");
+        }
+        TaskIndexes.CreatedKey start = after == null ? null : TaskPage.decodeCursor(after);
+        Filter filter = filter(query, LocalDateTime.now(clock));
+        if (start != null && start.createdAt() == null) {
+            filter.and("(t.created_at IS NOT NULL OR t.id > ?)", start.taskId);
+        } else if (start != null) {
+            filter.and("(t.created_at > ? OR (t.created_at = ? AND t.id > ?))",
+                    start.createdAt(), start.createdAt(), start.taskId);
+        }
+
+        // One extra row tells whether another page follows
+        List<Task> page = run("paging tasks", Collections.emptyList(),
+                () -> select(filter, "t.created_at ASC NULLS FIRST, t.id", pageSize + 1));
+        if (page.size() <= pageSize) {
+            return new TaskPage(page, null);
+        }
+        page = new ArrayList<>(page.subList(0, pageSize));
+        return new TaskPage(page, TaskPage.cursorAfter(page.get(pageSize - 1)));
+    }
+
+    /**
+     * Ranks tasks as {@link TaskStorage#search(String, int)} does, from the
+     * indexed token table. Substring search matches tokens with LIKE, which
+     * the token index cannot serve, so it scans the token table.
+     */
+    @Override
+    public List<Task> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextIndex.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return run("searching tasks", Collections.emptyList(), () -> {
+            double documentCount = Math.max(count("SELECT COUNT(*) FROM tasks"), 1);
+            String match = substringSearch ? "term LIKE ? ESCAPE '\\'" : "term = ?";
+            StringBuilder score = new StringBuilder();
+            StringBuilder from = new StringBuilder();
+            List<Object> parameters = new ArrayList<>();
+            List<Object> fromParameters = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                Object pattern = substringSearch ? "%" + escapeLike(term) + "%" : term;
+                long documents = count("SELECT COUNT(DISTINCT task_id) FROM task_terms WHERE " + match, pattern);
+                if (documents == 0) {
+                    return Collections.<Task>emptyList();
+                }
+                score.append(i == 0 ? "" : " + ").append("m").append(i).append(".w * CAST(? AS DOUBLE PRECISION)");
+                parameters.add(Math.log(1 + documentCount / documents));
+
+                // A match inside a longer word scores as a single description occurrence
+                from.append(i == 0 ? "" : " JOIN ")
+                        .append("(SELECT task_id, MAX(CASE WHEN term = ? THEN weight ELSE 1 END) AS w FROM task_terms WHERE ")
+                        .append(match).append(" GROUP BY task_id) m").append(i);
+                fromParameters.add(term);
+                fromParameters.add(pattern);
+                if (i > 0) {
+                    from.append(" ON m").append(i).append(".task_id = m0.task_id");
+                }
+            }
+            parameters.addAll(fromParameters);
+            parameters.add(limit);
+
+            List<String> ranked = new ArrayList<>();
+            String sql = "SELECT m0.task_id, " + score + " AS score FROM " + from
+                    + " ORDER BY score DESC, m0.task_id LIMIT ?";
+            try (PreparedStatement statement = prepare(sql, parameters);
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    ranked.add(rows.getString(1));
+                }
+            }
+            if (ranked.isEmpty()) {
+                return Collections.<Task>emptyList();
+            }
+            Map<String, Task> byId = new HashMap<>();
+            Filter ids = new Filter();
+            ids.and("t.id IN (" + placeholders(ranked.size()) + ")", ranked.toArray());
+            for (Task task : select(ids, "t.id", -1)) {
+                byId.put(task.getId(), task);
+            }
+            return ranked.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public void setSubstringSearch(boolean enabled) {
+        this.substringSearch = enabled;
+    }
+
+    /**
+     * Streams every task out as a JSON array without holding them all in memory.
+     */
+    @Override
+    public boolean exportJson(String path) {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            JsonWriter out = new JsonWriter(writer);
+            out.beginArray();
+            boolean exported = run("exporting tasks", false, () -> {
+                forEach(new Filter(), "t.id", -1, task -> {
+                    try {
+                        adapter.write(out, task);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                });
+                return true;
+            });
+            out.endArray();
+            out.flush();
+            return exported;
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Error exporting tasks: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public int importJson(String path) {
+        List<Task> imported = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            adapter.readArray(reader, imported::add);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error importing tasks: " + e.getMessage());
+            return -1;
+        }
+        return run("importing tasks", -1, () -> {
+            for (Task task : imported) {
+                write(task, null);
+            }
+            return imported.size();
+        });
+    }
+
+    /**
+     * Selects the tasks to archive through the completion index, and
+     * deletes them in the same transaction once the archive has them.
+     *
+     * @throws IllegalStateException if the store was opened without an archive
+     */
+    @Override
+    public int archiveCompleted(Duration age) {
+        if (archive == null) {
+            throw new IllegalStateException("This task database has no archive");
+        }
+        LocalDateTime completedBefore = LocalDateTime.now(clock).minus(age);
+        return run("archiving tasks", -1, () -> {
+            Filter filter = new Filter();
+            filter.and("t.status = ?", TaskStatus.DONE.getValue());
+            filter.and("t.completed_at < ?", completedBefore);
+            List<Task> completed = select(filter, "t.completed_at, t.id", -1);
+            if (completed.isEmpty()) {
+                return 0;
+            }
+            try {
+                archive.append(completed);
+            } catch (IOException e) {
+                System.err.println("Error archiving tasks: " + e.getMessage());
+                return -1;
+            }
+            for (Task task : completed) {
+                delete(task.getId());
+            }
+            return completed.size();
+        });
+    }
+
+    @Override
+    public TaskArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Only {@link Durability#SYNC} is accepted: every call commits before it returns.
+     */
+    @Override
+    public void setDurability(Durability durability) {
+        if (durability != Durability.SYNC) {
+            throw new IllegalArgumentException("The database store commits every change; only "
+                    + Durability.SYNC.getValue() + " durability is supported");
+        }
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modifications.get();
+    }
+
+    @Override
+    public int getPendingMutationCount() {
+        return 0;
+    }
+
+    @Override
+    public boolean flush() {
+        // Every call has already committed
+        return true;
+    }
+
+    @Override
+    public boolean refresh() {
+        // Every call reads the database, so there is nothing to catch up on
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing task database: " + e.getMessage());
+        }
+    }
+
+    private interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs the work as one transaction. A database error is reported and
+     * answered with {@code failure}; any other exception rolls back and
+     * propagates.
+     */
+    private synchronized <T> T run(String action, T failure, SqlWork<T> work) {
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException e) {
+            rollback();
+            System.err.println("Error " + action + ": " + e.getMessage());
+            return failure;
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back task database: " + e.getMessage());
+        }
+    }
+
+    private Task load(String taskId) throws SQLException {
+        Filter filter = new Filter();
+        filter.and("t.id = ?", taskId);
+        List<Task> found = select(filter, "t.id", 1);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Inserts or replaces a task. Given the task as it was before the
+     * change, tag and token rows are only rewritten when they changed.
+     */
+    private void write(Task task, Task before) throws SQLException {
+        List<Object> columns = new ArrayList<>();
+        columns.add(task.getTitle());
+        columns.add(task.getDescription());
+        columns.add(task.getPriority() == null ? null : task.getPriority().getValue());
+        columns.add(task.getStatus() == null ? null : task.getStatus().getValue());
+        columns.add(task.getCreatedAt());
+        columns.add(task.getUpdatedAt());
+        columns.add(task.getDueDate());
+        columns.add(task.getCompletedAt());
+        columns.add(task.getId());
+        int updated = update("UPDATE tasks SET title = ?, description = ?, priority = ?, status = ?, created_at = ?, "
+                + "updated_at = ?, due_date = ?, completed_at = ? WHERE id = ?", columns);
+        if (updated == 0) {
+            update("INSERT INTO tasks (title, description, priority, status, created_at, updated_at, due_date, "
+                    + "completed_at, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", columns);
+        }
+
+        if (updated == 0 || before == null || !before.getTagView().equals(task.getTagView())) {
+            update("DELETE FROM task_tags WHERE task_id = ?", List.of(task.getId()));
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO task_tags (task_id, tag_index, tag) VALUES (?, ?, ?)")) {
+                List<String> tags = task.getTagView();
+                for (int i = 0; i < tags.size(); i++) {
+                    insert.setString(1, task.getId());
+                    insert.setInt(2, i);
+                    insert.setString(3, tags.get(i));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        if (updated == 0 || before == null || !Objects.equals(before.getTitle(), task.getTitle())
+                || !Objects.equals(before.getDescription(), task.getDescription())) {
+            update("DELETE FROM task_terms WHERE task_id = ?", List.of(task.getId()));
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO task_terms (task_id, term, weight) VALUES (?, ?, ?)")) {
+                for (Map.Entry<String, Integer> entry : TextIndex.weigh(task.getTitle(), task.getDescription()).entrySet()) {
+                    insert.setString(1, task.getId());
+                    insert.setString(2, entry.getKey());
+                    insert.setInt(3, entry.getValue());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    // Tag and token rows go with the task through ON DELETE CASCADE
+    private boolean delete(String taskId) throws SQLException {
+        return update("DELETE FROM tasks WHERE id = ?", List.of(taskId)) > 0;
+    }
+
+    private List<Task> select(Filter filter, String orderBy, int limit) throws SQLException {
+        List<Task> tasks = new ArrayList<>();
+        forEach(filter, orderBy, limit, tasks::add);
+        return tasks;
+    }
+
+    /**
+     * Reads the matching tasks in order with their tags. The limit applies
+     * to tasks, so it is taken in a subquery before the tags are joined.
+     */
+    private void forEach(Filter filter, String orderBy, int limit, Consumer<Task> sink) throws SQLException {
+        List<Object> parameters = new ArrayList<>(filter.parameters);
+        String limited = "";
+        if (limit >= 0) {
+            limited = " LIMIT ?";
+            parameters.add(limit);
+        }
+        String sql = "SELECT t.id, t.title, t.description, t.priority, t.status, t.created_at, t.updated_at, "
+                + "t.due_date, t.completed_at, g.tag "
+                + "FROM (SELECT * FROM tasks t WHERE " + filter.where() + " ORDER BY " + orderBy + limited + ") t "
+                + "LEFT JOIN task_tags g ON g.task_id = t.id ORDER BY " + orderBy + ", g.tag_index";
+        try (PreparedStatement statement = prepare(sql, parameters);
+             ResultSet rows = statement.executeQuery()) {
+            Task current = null;
+            List<String> tags = new ArrayList<>();
+            while (rows.next()) {
+                String taskId = rows.getString(1);
+                if (current == null || !current.getId().equals(taskId)) {
+                    if (current != null) {
+                        current.setTags(tags);
+                        sink.accept(current);
+                        tags.clear();
+                    }
+                    current = readTask(rows);
+                }
+                String tag = rows.getString(10);
+                if (tag != null) {
+                    tags.add(tag);
+                }
+            }
+            if (current != null) {
+                current.setTags(tags);
+                sink.accept(current);
+            }
+        }
+    }
+
+    private static Task readTask(ResultSet rows) throws SQLException {
+        int priorityValue = rows.getInt(4);
+        TaskPriority priority = rows.wasNull() ? null : TaskPriority.fromValue(priorityValue);
+        String status = rows.getString(5);
+        return new Task(
+                rows.getString(1),
+                rows.getString(2),
+                rows.getString(3),
+                priority,
+                status == null ? null : TaskStatus.fromValue(status),
+                rows.getObject(6, LocalDateTime.class),
+                rows.getObject(7, LocalDateTime.class),
+                rows.getObject(8, LocalDateTime.class),
+                rows.getObject(9, LocalDateTime.class),
+                null);
+    }
+
+    private Filter filter(TaskQuery query, LocalDateTime now) {
+        Filter filter = new Filter();
+        if (query.statuses() != null) {
+            filter.and("t.status IN (" + placeholders(query.statuses().size()) + ")",
+                    query.statuses().stream().map(TaskStatus::getValue).toArray());
+        }
+        if (query.priorities() != null) {
+            filter.and("t.priority IN (" + placeholders(query.priorities().size()) + ")",
+                    query.priorities().stream().map(TaskPriority::getValue).toArray());
+        }
+        for (String tag : query.allTags()) {
+            filter.and("EXISTS (SELECT 1 FROM task_tags g WHERE g.task_id = t.id AND g.tag = ?)", tag);
+        }
+        if (!query.anyTags().isEmpty()) {
+            filter.and("EXISTS (SELECT 1 FROM task_tags g WHERE g.task_id = t.id AND g.tag IN ("
+                    + placeholders(query.anyTags().size()) + "))", query.anyTags().toArray());
+        }
+        if (query.dueFrom() != null) {
+            filter.and("t.due_date >= ?", query.dueFrom());
+        }
+        if (query.dueBefore() != null) {
+            filter.and("t.due_date < ?", query.dueBefore());
+        }
+        if (query.isOverdue()) {
+            filter.and("t.due_date < ? AND (t.status IS NULL OR t.status <> ?)", now, TaskStatus.DONE.getValue());
+        }
+        if (query.text() != null) {
+            String pattern = "%" + escapeLike(query.text()) + "%";
+            filter.and("(LOWER(t.title) LIKE ? ESCAPE '\\' OR LOWER(t.description) LIKE ? ESCAPE '\\')",
+                    pattern, pattern);
+        }
+        return filter;
+    }
+
+    // Matches TaskQuery.comparator(): nulls last, reversed as a whole when descending, id ascending last
+    private static String orderBy(TaskQuery query) {
+        if (query.sortKey() == null) {
+            return "t.id";
+        }
+        String column;
+        switch (query.sortKey()) {
+            case CREATED:
+                column = "t.created_at";
+                break;
+            case UPDATED:
+                column = "t.updated_at";
+                break;
+            case DUE_DATE:
+                column = "t.due_date";
+                break;
+            case PRIORITY:
+                column = "t.priority";
+                break;
+            default:
+                column = "LOWER(t.title)";
+        }
+        return column + (query.isDescending() ? " DESC NULLS FIRST" : " ASC NULLS LAST") + ", t.id";
+    }
+
+    private long count(String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = prepare(sql, Arrays.asList(parameters));
+             ResultSet rows = statement.executeQuery()) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    private int update(String sql, List<Object> parameters) throws SQLException {
+        modifications.incrementAndGet();
+        try (PreparedStatement statement = prepare(sql, parameters)) {
+            return statement.executeUpdate();
+        }
+    }
+
+    private PreparedStatement prepare(String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            return statement;
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // A WHERE clause over the tasks table, aliased t, with its parameters in order
+    private static class Filter {
+        private final List<String> clauses = new ArrayList<>();
+        private final List<Object> parameters = new ArrayList<>();
+
+        void and(String clause, Object... values) {
+            clauses.add(clause);
+            parameters.addAll(Arrays.asList(values));
+        }
+
+        String where() {
+            return clauses.isEmpty() ? "1 = 1" : String.join(" AND ", clauses);
+        }
+    }
+}
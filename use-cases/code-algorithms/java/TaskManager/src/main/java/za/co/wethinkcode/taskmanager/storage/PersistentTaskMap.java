@@ -0,0 +1,304 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map from task id to task, held as a hash array mapped trie.
+ * {@link #with(Task)} and {@link #without(String)} return a new map that
+ * shares everything but the path to the changed entry with this one, so a
+ * change costs a handful of small array copies and every older map stays
+ * valid for whoever still holds it.
+ *
+ * Each level files entries by five bits of the id's hash. The entries are
+ * the tasks themselves; ids whose hashes are equal share a collision node.
+ */
+final class PersistentTaskMap implements Iterable<Task> {
+    static final PersistentTaskMap EMPTY = new PersistentTaskMap(Branch.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Seven levels of branches use up a 32-bit hash, and a collision node sits below them
+    private static final int MAX_DEPTH = 8;
+
+    private final Branch root;
+    private final int size;
+
+    private PersistentTaskMap(Branch root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Task get(String taskId) {
+        int hash = hash(taskId);
+        Object node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof Branch) {
+                Branch branch = (Branch) node;
+                int bit = bit(hash, shift);
+                if ((branch.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = branch.slots[branch.index(bit)];
+            } else if (node instanceof Task) {
+                Task task = (Task) node;
+                return task.getId().equals(taskId) ? task : null;
+            } else {
+                return ((Collision) node).get(taskId);
+            }
+        }
+    }
+
+    /**
+     * This map with the task filed under its id, replacing any task with
+     * the same id.
+     */
+    PersistentTaskMap with(Task task) {
+        boolean[] added = new boolean[1];
+        Branch changed = put(root, 0, hash(task.getId()), task, added);
+        return changed == root ? this : new PersistentTaskMap(changed, added[0] ? size + 1 : size);
+    }
+
+    PersistentTaskMap without(String taskId) {
+        Branch changed = remove(root, 0, hash(taskId), taskId);
+        if (changed == root) {
+            return this;
+        }
+        return new PersistentTaskMap(changed == null ? Branch.EMPTY : changed, size - 1);
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new Cursor(root);
+    }
+
+    private static Branch put(Branch branch, int shift, int hash, Task task, boolean[] added) {
+        int bit = bit(hash, shift);
+        int index = branch.index(bit);
+        if ((branch.bitmap & bit) == 0) {
+            added[0] = true;
+            return branch.inserted(bit, index, task);
+        }
+        Object slot = branch.slots[index];
+        Object replacement;
+        if (slot instanceof Branch) {
+            replacement = put((Branch) slot, shift + BITS, hash, task, added);
+        } else if (slot instanceof Task && ((Task) slot).getId().equals(task.getId())) {
+            replacement = task;
+        } else if (slot instanceof Collision && ((Collision) slot).hash == hash) {
+            replacement = ((Collision) slot).with(task, added);
+        } else {
+            added[0] = true;
+            replacement = split(slot, hashOf(slot), task, hash, shift + BITS);
+        }
+        return replacement == slot ? branch : branch.replaced(index, replacement);
+    }
+
+    // Two entries that shared a slot, pushed down until their hashes part
+    private static Object split(Object existing, int existingHash, Task task, int hash, int shift) {
+        if (existingHash == hash) {
+            return new Collision(hash, new Task[]{(Task) existing, task});
+        }
+        int existingBit = bit(existingHash, shift);
+        int bit = bit(hash, shift);
+        if (existingBit == bit) {
+            return new Branch(bit, new Object[]{split(existing, existingHash, task, hash, shift + BITS)});
+        }
+        // Unsigned, as the bit for slot 31 is the sign bit
+        Object[] slots = Integer.compareUnsigned(existingBit, bit) < 0
+                ? new Object[]{existing, task} : new Object[]{task, existing};
+        return new Branch(existingBit | bit, slots);
+    }
+
+    // The same branch if the id is absent, null once it would be empty
+    private static Branch remove(Branch branch, int shift, int hash, String taskId) {
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+            return branch;
+        }
+        int index = branch.index(bit);
+        Object slot = branch.slots[index];
+        Object replacement;
+        if (slot instanceof Branch) {
+            Branch child = remove((Branch) slot, shift + BITS, hash, taskId);
+            if (child == slot) {
+                return branch;
+            }
+            // A branch left with a single entry is replaced by the entry
+            replacement = child != null && child.slots.length == 1 && !(child.slots[0] instanceof Branch)
+                    ? child.slots[0] : child;
+        } else if (slot instanceof Task) {
+            if (!((Task) slot).getId().equals(taskId)) {
+                return branch;
+            }
+            replacement = null;
+        } else {
+            replacement = ((Collision) slot).without(taskId);
+        }
+        if (replacement == slot) {
+            return branch;
+        }
+        return replacement == null ? branch.removed(bit, index) : branch.replaced(index, replacement);
+    }
+
+    private static int hash(String taskId) {
+        int hash = taskId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hashOf(Object entry) {
+        return entry instanceof Task ? hash(((Task) entry).getId()) : ((Collision) entry).hash;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static final class Branch {
+        static final Branch EMPTY = new Branch(0, new Object[0]);
+
+        // One bit per occupied slot; slots hold a Task, a Collision or another Branch
+        final int bitmap;
+        final Object[] slots;
+
+        Branch(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Branch inserted(int bit, int index, Object entry) {
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = entry;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Branch(bitmap | bit, copy);
+        }
+
+        Branch replaced(int index, Object entry) {
+            Object[] copy = slots.clone();
+            copy[index] = entry;
+            return new Branch(bitmap, copy);
+        }
+
+        Branch removed(int bit, int index) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+            return new Branch(bitmap & ~bit, copy);
+        }
+    }
+
+    private static final class Collision {
+        final int hash;
+        final Task[] tasks;
+
+        Collision(int hash, Task[] tasks) {
+            this.hash = hash;
+            this.tasks = tasks;
+        }
+
+        Task get(String taskId) {
+            int index = indexOf(taskId);
+            return index < 0 ? null : tasks[index];
+        }
+
+        Collision with(Task task, boolean[] added) {
+            int index = indexOf(task.getId());
+            Task[] copy;
+            if (index < 0) {
+                added[0] = true;
+                copy = Arrays.copyOf(tasks, tasks.length + 1);
+                index = tasks.length;
+            } else {
+                copy = tasks.clone();
+            }
+            copy[index] = task;
+            return new Collision(hash, copy);
+        }
+
+        // This node if the id is absent, the last task once only one is left
+        Object without(String taskId) {
+            int index = indexOf(taskId);
+            if (index < 0) {
+                return this;
+            }
+            if (tasks.length == 2) {
+                return tasks[1 - index];
+            }
+            Task[] copy = new Task[tasks.length - 1];
+            System.arraycopy(tasks, 0, copy, 0, index);
+            System.arraycopy(tasks, index + 1, copy, index, copy.length - index);
+            return new Collision(hash, copy);
+        }
+
+        private int indexOf(String taskId) {
+            for (int i = 0; i < tasks.length; i++) {
+                if (tasks[i].getId().equals(taskId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Depth-first walk holding one position per level
+    private static final class Cursor implements Iterator<Task> {
+        private final Object[][] levels = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Task next;
+
+        Cursor(Branch root) {
+            levels[0] = root.slots;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            advance();
+            return task;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] level = levels[depth];
+                if (positions[depth] == level.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = level[positions[depth]++];
+                if (slot instanceof Task) {
+                    next = (Task) slot;
+                    return;
+                }
+                depth++;
+                levels[depth] = slot instanceof Branch ? ((Branch) slot).slots : ((Collision) slot).tasks;
+                positions[depth] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Task storage split by id hash across N JSON files in a directory.
+ *
+ * Each shard remembers whether it changed since it was last written, so a
+ * save rewrites only the dirty shards; a single mutation costs roughly
+ * 1/N of a full rewrite. Shards are parsed in parallel on load. Opening a
+ * directory written with a different shard count repartitions it.
+ * Shards are only ever written whole, so the storage is never journaled.
+ *
+ * Saves go through the same file lock and catch-up as a single snapshot
+ * file, with each shard stamped on its own, so processes sharing the
+ * directory keep each other's changes.
+ */
+public class ShardedTaskStorage extends TaskStorage {
+    public static final int DEFAULT_SHARD_COUNT = 16;
+    private static final Pattern SHARD_FILE = Pattern.compile("shard-(\\d+)\\.json");
+
+    private final Path directory;
+    private final int shardCount;
+    private final boolean[] dirty;
+
+    public ShardedTaskStorage(String directory) {
+        this(directory, DEFAULT_SHARD_COUNT);
+    }
+
+    public ShardedTaskStorage(String directory, int shardCount) {
+        super(directory, false, false);
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        this.directory = Paths.get(directory);
+        this.shardCount = shardCount;
+        this.dirty = new boolean[shardCount];
+
+        load();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getDirtyShardCount() {
+        int count = 0;
+        for (boolean shardDirty : dirty) {
+            if (shardDirty) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads every shard and, if the files were partitioned for another
+     * shard count, writes the tasks out again under this one.
+     */
+    @Override
+    public void load() {
+        ShardLayout layout = new ShardLayout();
+        load(sink -> readShards(sink, layout));
+        if (!layout.misplaced && layout.staleFiles.isEmpty()) {
+            return;
+        }
+        Arrays.fill(dirty, true);
+        save();
+        // Only once every task is in its new shard, since the old files may hold the only copy
+        if (getDirtyShardCount() > 0) {
+            return;
+        }
+        for (Path stale : layout.staleFiles) {
+            try {
+                Files.deleteIfExists(stale);
+            } catch (IOException e) {
+                System.err.println("Error removing old shard: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrites only the shards touched since the last save, in parallel.
+     */
+    @Override
+    Map<Path, Long> writeSnapshotFiles(Collection<Task> tasks) throws IOException {
+        Files.createDirectories(directory);
+        List<List<Task>> shards = tasksByShard(tasks);
+        Map<Path, Long> written = new ConcurrentHashMap<>();
+        IntStream.range(0, shardCount)
+                .filter(shard -> dirty[shard])
+                .parallel()
+                .forEach(shard -> writeShard(shard, shards.get(shard), written));
+
+        int failed = getDirtyShardCount();
+        if (failed > 0) {
+            throw new IOException(failed + " of " + shardCount + " shards were not written");
+        }
+        return written;
+    }
+
+    @Override
+    void readSnapshot(Consumer<Task> sink) throws IOException {
+        readShards(sink, new ShardLayout());
+    }
+
+    // Feeds the sink and notes how the files are partitioned in the layout, touching nothing else
+    private void readShards(Consumer<Task> sink, ShardLayout layout) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> SHARD_FILE.matcher(path.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+        }
+
+        List<List<Task>> parsed;
+        try {
+            parsed = files.parallelStream()
+                    .map(file -> {
+                        List<Task> shardTasks = new ArrayList<>();
+                        try {
+                            readJson(file, shardTasks::add);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return shardTasks;
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Matcher matcher = SHARD_FILE.matcher(files.get(i).getFileName().toString());
+            matcher.matches();
+            int fileShard = Integer.parseInt(matcher.group(1));
+            if (fileShard >= shardCount) {
+                layout.staleFiles.add(files.get(i));
+            }
+            for (Task task : parsed.get(i)) {
+                sink.accept(task);
+                if (shardOf(task.getId()) != fileShard) {
+                    layout.misplaced = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    void onTaskWritten(Task task) {
+        dirty[shardOf(task.getId())] = true;
+    }
+
+    @Override
+    void onTaskRemoved(String taskId) {
+        dirty[shardOf(taskId)] = true;
+    }
+
+    // The tasks of every dirty shard, in one pass
+    private List<List<Task>> tasksByShard(Collection<Task> tasks) {
+        List<List<Task>> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(new ArrayList<>());
+        }
+        for (Task task : tasks) {
+            int shard = shardOf(task.getId());
+            if (dirty[shard]) {
+                shards.get(shard).add(task);
+            }
+        }
+        return shards;
+    }
+
+    private void writeShard(int shard, List<Task> shardTasks, Map<Path, Long> written) {
+        try {
+            Path file = shardPath(shard);
+            written.put(file, writeAtomically(file, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                TaskTypeAdapter.SHARED.writeArray(writer, shardTasks);
+                writer.flush();
+            }));
+            dirty[shard] = false;
+        } catch (IOException e) {
+            System.err.println("Error saving shard " + shard + ": " + e.getMessage());
+        }
+    }
+
+    private Path shardPath(int shard) {
+        return directory.resolve(String.format("shard-%03d.json", shard));
+    }
+
+    private int shardOf(String taskId) {
+        return Math.floorMod(taskId.hashCode(), shardCount);
+    }
+
+    /**
+     * What reading the files found about their partitioning.
+     */
+    private static final class ShardLayout {
+        // Files numbered past this storage's shard count
+        private final List<Path> staleFiles = new ArrayList<>();
+        // Whether any task sits in a file other than its shard's
+        private boolean misplaced;
+    }
+}
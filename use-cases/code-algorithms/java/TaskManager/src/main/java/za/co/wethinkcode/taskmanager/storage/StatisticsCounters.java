@@ -0,0 +1,122 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The figures behind {@link TaskStatistics}, kept up to date as
+ * {@link TaskIndexes} adds and removes tasks so that taking a snapshot
+ * does not depend on how many tasks there are.
+ *
+ * The two time-based counts are held against a watermark. Open tasks are
+ * bucketed by due date and those in buckets before the due watermark make
+ * up the overdue count; completions are bucketed by completion time and
+ * those after the completion watermark make up the recent count. A
+ * snapshot rolls each watermark forward to its new instant, moving only
+ * the buckets it passes, so every bucket is crossed once as time goes by.
+ * Rolling backwards, for a clock set into the past, works the same way.
+ */
+class StatisticsCounters {
+    private final int[] byStatus = new int[TaskStatus.values().length];
+    private final int[] byPriority = new int[TaskPriority.values().length];
+    private int total;
+
+    // Number of open tasks per due date; those before dueWatermark are counted in overdue
+    private final NavigableMap<LocalDateTime, Integer> openByDueDate = new TreeMap<>();
+    private LocalDateTime dueWatermark = LocalDateTime.MIN;
+    private int overdue;
+
+    // Number of tasks per completion time; those after completedWatermark are counted in completed
+    private final NavigableMap<LocalDateTime, Integer> byCompletedAt = new TreeMap<>();
+    private LocalDateTime completedWatermark = LocalDateTime.MIN;
+    private int completed;
+
+    synchronized void add(TaskStatus status, TaskPriority priority, LocalDateTime dueDate, LocalDateTime completedAt) {
+        count(status, priority, dueDate, completedAt, 1);
+    }
+
+    synchronized void remove(TaskStatus status, TaskPriority priority, LocalDateTime dueDate, LocalDateTime completedAt) {
+        count(status, priority, dueDate, completedAt, -1);
+    }
+
+    synchronized void clear() {
+        Arrays.fill(byStatus, 0);
+        Arrays.fill(byPriority, 0);
+        total = 0;
+        openByDueDate.clear();
+        overdue = 0;
+        byCompletedAt.clear();
+        completed = 0;
+    }
+
+    /**
+     * The counts as of {@code now}, with completions counted over the
+     * {@link TaskStatistics#RECENT_WINDOW} before it.
+     */
+    synchronized TaskStatistics snapshot(LocalDateTime now) {
+        rollDue(now);
+        rollCompleted(now.minus(TaskStatistics.RECENT_WINDOW));
+        return new TaskStatistics(total, byStatus.clone(), byPriority.clone(), overdue, completed);
+    }
+
+    private void count(TaskStatus status, TaskPriority priority, LocalDateTime dueDate, LocalDateTime completedAt,
+                       int delta) {
+        total += delta;
+        if (status != null) {
+            byStatus[status.ordinal()] += delta;
+        }
+        if (priority != null) {
+            byPriority[priority.ordinal()] += delta;
+        }
+        if (dueDate != null && status != TaskStatus.DONE) {
+            addTo(openByDueDate, dueDate, delta);
+            if (dueDate.isBefore(dueWatermark)) {
+                overdue += delta;
+            }
+        }
+        if (completedAt != null) {
+            addTo(byCompletedAt, completedAt, delta);
+            if (completedAt.isAfter(completedWatermark)) {
+                completed += delta;
+            }
+        }
+    }
+
+    // Overdue means due strictly before now: the buckets in [watermark, now) become overdue
+    private void rollDue(LocalDateTime now) {
+        if (now.isAfter(dueWatermark)) {
+            overdue += sum(openByDueDate.subMap(dueWatermark, true, now, false));
+        } else if (now.isBefore(dueWatermark)) {
+            overdue -= sum(openByDueDate.subMap(now, true, dueWatermark, false));
+        }
+        dueWatermark = now;
+    }
+
+    // Recent means completed strictly after since: the buckets in (watermark, since] drop out
+    private void rollCompleted(LocalDateTime since) {
+        if (since.isAfter(completedWatermark)) {
+            completed -= sum(byCompletedAt.subMap(completedWatermark, false, since, true));
+        } else if (since.isBefore(completedWatermark)) {
+            completed += sum(byCompletedAt.subMap(since, false, completedWatermark, true));
+        }
+        completedWatermark = since;
+    }
+
+    private static void addTo(Map<LocalDateTime, Integer> buckets, LocalDateTime key, int delta) {
+        buckets.merge(key, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+
+    private static int sum(Map<LocalDateTime, Integer> buckets) {
+        int sum = 0;
+        for (int count : buckets.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,301 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the files of one {@link TaskStorage} consistent between the
+ * processes that share them.
+ *
+ * Every read or write of the files runs under an exclusive
+ * {@link FileChannel#lock()} on {@code storagePath + ".lock"}. The snapshot
+ * and logs are replaced by renaming, so they cannot hold the lock
+ * themselves. The operating system grants file locks to a process, not a
+ * thread, so storages in one JVM share one lock per path and pass it
+ * between them with a {@link ReentrantLock}.
+ *
+ * After each read or write the guard stamps the files with their file key,
+ * size and modification time, plus a CRC32C of the snapshot's content.
+ * {@link #check()} compares the files with the stamps using a few
+ * attribute reads. It hashes the snapshot only when the attributes cannot
+ * tell: the modification time or file changed but the size did not, or
+ * the snapshot was stamped so soon after being written that a same-sized
+ * rewrite could share its modification time.
+ *
+ * The snapshot may also be a directory of files, as
+ * {@link ShardedTaskStorage} writes it. Each file in the directory is then
+ * stamped on its own, and adding or removing one counts as a rewrite.
+ */
+final class StoreFileGuard {
+    static final String LOCK_SUFFIX = ".lock";
+    // Coarsest modification time resolution in common use (FAT); writes closer together than this may share one
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final Map<Path, SharedLock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * How the files differ from their stamps.
+     */
+    enum Change {
+        NONE,
+        /** Only new records were appended to the active log. */
+        APPENDED,
+        /** Anything else; the files have to be read in full. */
+        REWRITTEN
+    }
+
+    private final SharedLock lock;
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Path rotatedPath;
+    // Guarded by the lock; one stamp per existing snapshot file
+    private final Map<Path, FileStamp> snapshot = new HashMap<>();
+    private FileStamp log = FileStamp.MISSING;
+    private FileStamp rotated = FileStamp.MISSING;
+
+    StoreFileGuard(String storagePath) {
+        Path lockPath = Paths.get(storagePath + LOCK_SUFFIX).toAbsolutePath().normalize();
+        this.lock = LOCKS.computeIfAbsent(lockPath, SharedLock::new);
+        this.snapshotPath = Paths.get(storagePath);
+        this.logPath = Paths.get(storagePath + TaskJournal.LOG_SUFFIX);
+        this.rotatedPath = Paths.get(storagePath + TaskJournal.ROTATED_SUFFIX);
+    }
+
+    /**
+     * Runs the body holding the lock on the files, for this thread and
+     * against other processes. Calls may nest.
+     */
+    <T> T locked(IOSupplier<T> body) throws IOException {
+        lock.process.lock();
+        try {
+            FileLock fileLock = lock.process.getHoldCount() == 1 ? lock.acquire() : null;
+            try {
+                return body.get();
+            } finally {
+                if (fileLock != null) {
+                    fileLock.release();
+                }
+            }
+        } finally {
+            lock.process.unlock();
+        }
+    }
+
+    /**
+     * Compares the files with their stamps. Call with the lock held.
+     */
+    Change check() throws IOException {
+        if (snapshotChanged() || !attributes(rotatedPath).sameAttributes(rotated)) {
+            return Change.REWRITTEN;
+        }
+        FileStamp now = attributes(logPath);
+        if (now.sameAttributes(log)) {
+            return Change.NONE;
+        }
+        boolean appended = now.exists() && now.size > logOffset()
+                && (!log.exists() || Objects.equals(now.key, log.key));
+        return appended ? Change.APPENDED : Change.REWRITTEN;
+    }
+
+    /**
+     * Whether the snapshot and the rotated log are as last stamped, whatever
+     * happened to the active log. Call with the lock held.
+     */
+    boolean snapshotUnchanged() throws IOException {
+        return !snapshotChanged() && attributes(rotatedPath).sameAttributes(rotated);
+    }
+
+    /**
+     * Where records appended since the active log was stamped begin.
+     */
+    long logOffset() {
+        return Math.max(0, log.size);
+    }
+
+    /**
+     * Stamps every file as it is now, hashing the snapshot. Call with the
+     * lock held, after reading the files.
+     */
+    void stamp() throws IOException {
+        snapshot.clear();
+        for (Path path : snapshotFiles()) {
+            snapshot.put(path, attributes(path).withHash(hashOf(path)));
+        }
+        stampJournal();
+    }
+
+    /**
+     * Stamps every file after writing the given snapshot files, with their
+     * hashes. Snapshot files not written keep their stamps.
+     */
+    void stamp(Map<Path, Long> writtenHashes) throws IOException {
+        for (Map.Entry<Path, Long> written : writtenHashes.entrySet()) {
+            snapshot.put(written.getKey(), attributes(written.getKey()).withHash(written.getValue()));
+        }
+        stampJournal();
+    }
+
+    void stampSnapshot(long snapshotHash) throws IOException {
+        snapshot.put(snapshotPath, attributes(snapshotPath).withHash(snapshotHash));
+        rotated = attributes(rotatedPath);
+    }
+
+    void stampJournal() throws IOException {
+        log = attributes(logPath);
+        rotated = attributes(rotatedPath);
+    }
+
+    private boolean snapshotChanged() throws IOException {
+        List<Path> paths = snapshotFiles();
+        if (paths.size() != snapshot.size()) {
+            return true;
+        }
+        for (Path path : paths) {
+            FileStamp stamped = snapshot.get(path);
+            if (stamped == null || fileChanged(path, stamped)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fileChanged(Path path, FileStamp stamped) throws IOException {
+        FileStamp now = attributes(path);
+        if (now.size != stamped.size) {
+            return true;
+        }
+        if (now.sameAttributes(stamped) && !stamped.isRacy()) {
+            return false;
+        }
+        long hash = hashOf(path);
+        if (hash != stamped.hash) {
+            return true;
+        }
+        // Same content under new attributes; restamp so it is not hashed again
+        snapshot.put(path, now.withHash(hash));
+        return false;
+    }
+
+    // The snapshot file, or every file in the snapshot directory; none if it does not exist
+    private List<Path> snapshotFiles() throws IOException {
+        if (!Files.isDirectory(snapshotPath)) {
+            return Files.exists(snapshotPath) ? List.of(snapshotPath) : List.of();
+        }
+        try (Stream<Path> listing = Files.list(snapshotPath)) {
+            return listing.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static FileStamp attributes(Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return FileStamp.MISSING;
+        }
+        return new FileStamp(attributes.fileKey(), attributes.size(),
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), wallClockNanos(), 0);
+    }
+
+    private static long hashOf(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static long wallClockNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private static final class FileStamp {
+        static final FileStamp MISSING = new FileStamp(null, -1, 0, 0, 0);
+
+        private final Object key;
+        private final long size;
+        private final long modified;
+        private final long stampedAt;
+        private final long hash;
+
+        FileStamp(Object key, long size, long modified, long stampedAt, long hash) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+            this.stampedAt = stampedAt;
+            this.hash = hash;
+        }
+
+        boolean exists() {
+            return size >= 0;
+        }
+
+        boolean sameAttributes(FileStamp other) {
+            return size == other.size && modified == other.modified && Objects.equals(key, other.key);
+        }
+
+        // A rewrite of the same size in the same clock tick would leave the attributes as they are
+        boolean isRacy() {
+            return modified > stampedAt - RACY_WINDOW_NANOS;
+        }
+
+        FileStamp withHash(long hash) {
+            return new FileStamp(key, size, modified, stampedAt, hash);
+        }
+    }
+
+    /**
+     * The lock for one path, shared by every storage in the JVM. Its channel
+     * stays open: closing any channel to a file can drop every lock the
+     * process holds on it.
+     */
+    private static final class SharedLock {
+        private final ReentrantLock process = new ReentrantLock();
+        private final Path path;
+        private FileChannel channel;
+
+        SharedLock(Path path) {
+            this.path = path;
+        }
+
+        // Null when the directory does not exist yet: there are no files to guard, and writing any would fail
+        FileLock acquire() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                if (!Files.isDirectory(path.getParent())) {
+                    return null;
+                }
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            return channel.lock();
+        }
+    }
+}
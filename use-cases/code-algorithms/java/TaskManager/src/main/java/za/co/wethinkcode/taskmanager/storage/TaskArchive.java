@@ -0,0 +1,289 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The cold tier of a store: completed tasks moved out of it by
+ * {@link TaskStore#archiveCompleted(java.time.Duration)}, kept in a
+ * compressed file next to it that is only ever appended to.
+ *
+ * Each archiving run appends one gzip member holding a compact JSON task
+ * per line; gzip readers take concatenated members as one stream. Nothing
+ * is read until one of the lookups is called, and each lookup reads the
+ * file afresh. A task archived twice, as when a run was interrupted after
+ * writing here but before the store dropped it, counts once, as its later
+ * copy.
+ *
+ * A run interrupted mid-append leaves part of a member at the end, which
+ * readers skip. Gzip readers give up at the first bad member, so the next
+ * run cuts the file back to its last complete member before appending;
+ * the store still holds the tasks that were in the torn one.
+ */
+public final class TaskArchive {
+    /** Appended to a store's path to name its archive. */
+    public static final String ARCHIVE_SUFFIX = ".archive.gz";
+    // Magic, deflate and no flags; GZIPOutputStream writes no optional header fields
+    private static final byte[] GZIP_MAGIC_METHOD_FLAGS = {0x1f, (byte) 0x8b, 8, 0};
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    private final Path path;
+    private boolean substringSearch;
+
+    public TaskArchive(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * The archive belonging to the store at the path, whatever its format.
+     */
+    public static TaskArchive forStore(String storagePath) {
+        return new TaskArchive(Paths.get(storagePath + ARCHIVE_SUFFIX));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Lets search terms also match inside longer words, as
+     * {@link TaskStore#setSubstringSearch(boolean)} does for the store.
+     */
+    public void setSubstringSearch(boolean enabled) {
+        this.substringSearch = enabled;
+    }
+
+    /**
+     * Appends the tasks as one member and forces it to disk, so a store
+     * may drop them once this returns.
+     */
+    void append(Collection<Task> tasks) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile(), true)) {
+            FileChannel channel = file.getChannel();
+            long complete = completeLength();
+            if (complete < channel.size()) {
+                channel.truncate(complete);
+            }
+            GZIPOutputStream member = new GZIPOutputStream(file);
+            Writer writer = new OutputStreamWriter(member, StandardCharsets.UTF_8);
+            for (Task task : tasks) {
+                TaskTypeAdapter.SHARED.write(new JsonWriter(writer), task);
+                writer.write('\n');
+            }
+            writer.flush();
+            member.finish();
+            file.getChannel().force(true);
+        }
+    }
+
+    /**
+     * @return the archived task, or null if there is none with that id
+     */
+    public Task getTask(String taskId) {
+        Task[] found = new Task[1];
+        read(task -> {
+            if (task.getId().equals(taskId)) {
+                found[0] = task;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Every archived task, in the order they were archived.
+     */
+    public List<Task> getAllTasks() {
+        return new ArrayList<>(readAll().values());
+    }
+
+    /**
+     * Archived tasks matching every filter of the query, in its order and
+     * up to its limit.
+     */
+    public List<Task> query(TaskQuery query) {
+        return ordered(matching(readAll().values().stream(), query), query);
+    }
+
+    /**
+     * Runs the query over the store and this archive together. Without a
+     * sort key the store's matches come first; an archived task the store
+     * still holds is left out.
+     */
+    public List<Task> query(TaskStore store, TaskQuery query) {
+        List<Task> live = store.query(query).collect(Collectors.toList());
+        if (query.limit() >= 0 && query.sortKey() == null && live.size() >= query.limit()) {
+            return live;
+        }
+        Stream<Task> archived = matching(readAll().values().stream(), query)
+                .filter(task -> store.getTask(task.getId()) == null);
+        return ordered(Stream.concat(live.stream(), archived), query);
+    }
+
+    /**
+     * Archived tasks whose title or description contains every word of the
+     * query, best match first, ranked among the archived tasks alone.
+     */
+    public List<Task> search(String query, int limit) {
+        Map<String, Task> tasks = readAll();
+        TextIndex index = new TextIndex(false);
+        index.setTrigrams(substringSearch);
+        tasks.values().forEach(index::update);
+        return index.search(query, limit).stream().map(tasks::get).collect(Collectors.toList());
+    }
+
+    /**
+     * The store's search results followed by archived ones, up to the limit
+     * in all; an archived task the store still holds is left out.
+     */
+    public List<Task> search(TaskStore store, String query, int limit) {
+        List<Task> results = new ArrayList<>(store.search(query, limit));
+        if (results.size() < limit) {
+            for (Task task : search(query, limit)) {
+                if (results.size() < limit && store.getTask(task.getId()) == null) {
+                    results.add(task);
+                }
+            }
+        }
+        return results;
+    }
+
+    // Archived tasks are all done, so none is overdue whatever the time
+    private static Stream<Task> matching(Stream<Task> archived, TaskQuery query) {
+        return archived.filter(query.matcher(LocalDateTime.now()));
+    }
+
+    private static List<Task> ordered(Stream<Task> results, TaskQuery query) {
+        if (query.sortKey() != null) {
+            results = results.sorted(query.comparator());
+        }
+        if (query.limit() >= 0) {
+            results = results.limit(query.limit());
+        }
+        return results.collect(Collectors.toList());
+    }
+
+    /**
+     * The length of the complete members at the start of the file, walking
+     * them the way {@link GZIPOutputStream} writes them: a ten-byte header
+     * with no optional fields, the deflated data and a trailer whose CRC-32 and length have
+     * to match it.
+     */
+    private long completeLength() throws IOException {
+        byte[] input = new byte[64 * 1024];
+        byte[] output = new byte[64 * 1024];
+        Inflater inflater = new Inflater(true);
+        long complete = 0;
+        try (PushbackInputStream in = new PushbackInputStream(Files.newInputStream(path), input.length)) {
+            while (true) {
+                byte[] header = in.readNBytes(GZIP_HEADER_LENGTH);
+                if (header.length < GZIP_HEADER_LENGTH || !Arrays.equals(header, 0, GZIP_MAGIC_METHOD_FLAGS.length,
+                        GZIP_MAGIC_METHOD_FLAGS, 0, GZIP_MAGIC_METHOD_FLAGS.length)) {
+                    return complete;
+                }
+                inflater.reset();
+                CRC32 crc = new CRC32();
+                long read = header.length;
+                int last = 0;
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        last = in.read(input);
+                        if (last < 0) {
+                            return complete;
+                        }
+                        inflater.setInput(input, 0, last);
+                        read += last;
+                    }
+                    try {
+                        crc.update(output, 0, inflater.inflate(output));
+                    } catch (DataFormatException e) {
+                        return complete;
+                    }
+                }
+                int remaining = inflater.getRemaining();
+                in.unread(input, last - remaining, remaining);
+                ByteBuffer trailer = ByteBuffer.wrap(in.readNBytes(GZIP_TRAILER_LENGTH)).order(ByteOrder.LITTLE_ENDIAN);
+                if (trailer.limit() < GZIP_TRAILER_LENGTH
+                        || (trailer.getInt(0) & 0xFFFFFFFFL) != crc.getValue()
+                        || trailer.getInt(4) != (int) inflater.getBytesWritten()) {
+                    return complete;
+                }
+                complete += read - remaining + GZIP_TRAILER_LENGTH;
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Map<String, Task> readAll() {
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        read(task -> {
+            tasks.remove(task.getId());
+            tasks.put(task.getId(), task);
+        });
+        return tasks;
+    }
+
+    private void read(Consumer<Task> sink) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Task task;
+                try (JsonReader in = new JsonReader(new StringReader(line))) {
+                    task = TaskTypeAdapter.SHARED.read(in);
+                } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                    // Members are CRC-checked, so this is content such as an unknown value, not a torn write
+                    System.err.println("Ignoring unreadable archive record in " + path);
+                    continue;
+                }
+                sink.accept(task);
+            }
+        } catch (EOFException | ZipException e) {
+            // A member torn by a crash mid-append; the store still holds its tasks
+            System.err.println("Ignoring unreadable archive tail in " + path);
+        } catch (IOException e) {
+            System.err.println("Error reading task archive: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An ordered list of task mutations for {@link TaskStorage#applyBatch(TaskBatch)},
+ * which checks them all, applies them in memory and persists them once.
+ */
+public class TaskBatch {
+    enum Kind { ADD, UPDATE, MODIFY, DELETE }
+
+    static final class Operation {
+        final Kind kind;
+        final String taskId;
+        final Task task;
+        final Consumer<Task> change;
+
+        Operation(Kind kind, String taskId, Task task, Consumer<Task> change) {
+            this.kind = kind;
+            this.taskId = taskId;
+            this.task = task;
+            this.change = change;
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public TaskBatch add(Task task) {
+        if (task == null || task.getId() == null) {
+            throw new IllegalArgumentException("Batch add needs a task with an id");
+        }
+        operations.add(new Operation(Kind.ADD, task.getId(), task, null));
+        return this;
+    }
+
+    /**
+     * Applies the non-null fields of {@code updates}, as {@link TaskStorage#updateTask(String, Task)} does.
+     */
+    public TaskBatch update(String taskId, Task updates) {
+        if (taskId == null || updates == null) {
+            throw new IllegalArgumentException("Batch update needs a task id and updates");
+        }
+        operations.add(new Operation(Kind.UPDATE, taskId, updates, null));
+        return this;
+    }
+
+    /**
+     * Applies the change to a copy of the stored task, which replaces it
+     * when the batch commits.
+     */
+    public TaskBatch modify(String taskId, Consumer<Task> change) {
+        if (taskId == null || change == null) {
+            throw new IllegalArgumentException("Batch modify needs a task id and a change");
+        }
+        operations.add(new Operation(Kind.MODIFY, taskId, null, change));
+        return this;
+    }
+
+    public TaskBatch delete(String taskId) {
+        if (taskId == null) {
+            throw new IllegalArgumentException("Batch delete needs a task id");
+        }
+        operations.add(new Operation(Kind.DELETE, taskId, null, null));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+}
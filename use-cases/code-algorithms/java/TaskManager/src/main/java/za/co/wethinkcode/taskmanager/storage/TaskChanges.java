@@ -0,0 +1,70 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * What changed in a {@link TaskStorage} after one sequence number, as
+ * returned by {@link TaskStorage#changesSince(long)}.
+ *
+ * Each id appears at most once, under its net effect: a task created and
+ * then edited is created, one edited and then deleted is deleted, and one
+ * created and deleted again is not listed at all.
+ */
+public final class TaskChanges {
+    /**
+     * What one mutation did to one task.
+     */
+    enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final long sequence;
+    private final boolean complete;
+    private final Set<String> created;
+    private final Set<String> updated;
+    private final Set<String> deleted;
+
+    TaskChanges(long sequence, boolean complete, Set<String> created, Set<String> updated, Set<String> deleted) {
+        this.sequence = sequence;
+        this.complete = complete;
+        this.created = Collections.unmodifiableSet(created);
+        this.updated = Collections.unmodifiableSet(updated);
+        this.deleted = Collections.unmodifiableSet(deleted);
+    }
+
+    /**
+     * The high-water mark: the sequence number of the last mutation
+     * included, to pass to the next call.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * False when the change log no longer reaches back to the requested
+     * sequence number, or it was not issued by this storage. The id sets
+     * are then empty and the consumer has to read the tasks in full.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public Set<String> getCreated() {
+        return created;
+    }
+
+    public Set<String> getUpdated() {
+        return updated;
+    }
+
+    public Set<String> getDeleted() {
+        return deleted;
+    }
+
+    public boolean isEmpty() {
+        return created.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+}
@@ -0,0 +1,374 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.EpochTime;
+import za.co.wethinkcode.taskmanager.model.TagList;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Secondary indexes over the tasks held by {@link TaskStorage}.
+ *
+ * The values a task was indexed under are remembered per id, so
+ * {@link #update(Task)} can find and remove the stale entries without the
+ * previous version of the task. Storage normally publishes a changed copy,
+ * but a caller may still edit a fetched task and hand the same instance
+ * to {@link TaskStorage#saveTask(Task)}.
+ *
+ * A concurrent instance may be read while it is being updated, provided
+ * updates for any one id are not run in parallel with each other.
+ */
+class TaskIndexes {
+    private final boolean concurrent;
+    private final Map<TaskStatus, Set<String>> byStatus = new EnumMap<>(TaskStatus.class);
+    private final Map<TaskPriority, Set<String>> byPriority = new EnumMap<>(TaskPriority.class);
+    private final NavigableMap<LocalDateTime, Set<String>> byDueDate;
+    // Due dates of tasks that are not DONE, the only ones that can be overdue
+    private final NavigableMap<LocalDateTime, Set<String>> openByDueDate;
+    private final Map<String, Set<String>> byTag;
+    // Every task in creation order, the stable order pages are served in
+    private final NavigableSet<CreatedKey> byCreated;
+    private final Map<String, IndexedValues> indexed;
+    private final TextIndex text;
+    private final StatisticsCounters statistics = new StatisticsCounters();
+
+    TaskIndexes() {
+        this(false);
+    }
+
+    TaskIndexes(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.byDueDate = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+        this.openByDueDate = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+        this.byTag = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.byCreated = concurrent ? new ConcurrentSkipListSet<>() : new TreeSet<>();
+        this.indexed = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.text = new TextIndex(concurrent);
+        for (TaskStatus status : TaskStatus.values()) {
+            byStatus.put(status, newIdSet());
+        }
+        for (TaskPriority priority : TaskPriority.values()) {
+            byPriority.put(priority, newIdSet());
+        }
+    }
+
+    void rebuild(Collection<Task> tasks) {
+        byStatus.values().forEach(Set::clear);
+        byPriority.values().forEach(Set::clear);
+        byDueDate.clear();
+        openByDueDate.clear();
+        byTag.clear();
+        byCreated.clear();
+        indexed.clear();
+        text.clear();
+        statistics.clear();
+        for (Task task : tasks) {
+            update(task);
+        }
+    }
+
+    /**
+     * Indexes a new task or moves an existing one to the buckets matching
+     * its current field values.
+     */
+    void update(Task task) {
+        text.update(task);
+        IndexedValues previous = indexed.get(task.getId());
+        IndexedValues current = new IndexedValues(task);
+        if (current.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(task.getId(), previous);
+        }
+        if (current.status != null) {
+            byStatus.get(current.status).add(task.getId());
+        }
+        if (current.priority != null) {
+            byPriority.get(current.priority).add(task.getId());
+        }
+        // One instance for every bucket keyed by this due date
+        LocalDateTime dueDate = current.dueDate();
+        if (dueDate != null) {
+            addTo(byDueDate, dueDate, task.getId());
+            if (current.status != TaskStatus.DONE) {
+                addTo(openByDueDate, dueDate, task.getId());
+            }
+        }
+        for (String tag : current.tags) {
+            addTo(byTag, tag, task.getId());
+        }
+        byCreated.add(new CreatedKey(current.createdSecond, current.createdNano, task.getId()));
+        statistics.add(current.status, current.priority, dueDate, current.completedAt());
+        indexed.put(task.getId(), current);
+    }
+
+    void remove(String taskId) {
+        text.remove(taskId);
+        IndexedValues previous = indexed.remove(taskId);
+        if (previous != null) {
+            unindex(taskId, previous);
+        }
+    }
+
+    Set<String> idsWithStatus(TaskStatus status) {
+        return Collections.unmodifiableSet(byStatus.get(status));
+    }
+
+    Set<String> idsWithPriority(TaskPriority priority) {
+        return Collections.unmodifiableSet(byPriority.get(priority));
+    }
+
+    /**
+     * Ids of tasks due in [from, to).
+     */
+    List<String> idsDueBetween(LocalDateTime from, LocalDateTime to) {
+        return flatten(byDueDate.subMap(from, true, to, false));
+    }
+
+    /**
+     * Ids of tasks that are not DONE and were due strictly before the given instant.
+     */
+    List<String> openIdsDueBefore(LocalDateTime instant) {
+        return flatten(openByDueDate.headMap(instant, false));
+    }
+
+    /**
+     * Ids due in [from, before), lazily and in due-date order; either bound
+     * may be null. With {@code openOnly} only tasks that are not DONE. Ids
+     * sharing a due date come in id order, whichever way the dates run, as
+     * {@link TaskQuery#comparator()} breaks ties.
+     */
+    Stream<String> streamDue(LocalDateTime from, LocalDateTime before, boolean openOnly, boolean descending) {
+        NavigableMap<LocalDateTime, Set<String>> range = dueRange(from, before, openOnly);
+        if (descending) {
+            range = range.descendingMap();
+        }
+        // Buckets are hash sets; each is sorted only when the stream reaches it
+        return range.values().stream().flatMap(bucket -> bucket.size() > 1 ? bucket.stream().sorted() : bucket.stream());
+    }
+
+    /**
+     * How many ids {@link #streamDue} would produce, counting no further than
+     * just past {@code cap} so that a wide range costs no more than the
+     * cheapest alternative.
+     */
+    int countDue(LocalDateTime from, LocalDateTime before, boolean openOnly, int cap) {
+        int count = 0;
+        for (Set<String> bucket : dueRange(from, before, openOnly).values()) {
+            count += bucket.size();
+            if (count > cap) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private NavigableMap<LocalDateTime, Set<String>> dueRange(LocalDateTime from, LocalDateTime before, boolean openOnly) {
+        NavigableMap<LocalDateTime, Set<String>> index = openOnly ? openByDueDate : byDueDate;
+        if (from != null && before != null) {
+            return from.isBefore(before) ? index.subMap(from, true, before, false) : Collections.emptyNavigableMap();
+        }
+        if (from != null) {
+            return index.tailMap(from, true);
+        }
+        if (before != null) {
+            return index.headMap(before, false);
+        }
+        return index;
+    }
+
+    /**
+     * Ids in creation order, lazily, starting just after {@code after} (or
+     * from the first task when it is null).
+     */
+    Stream<String> streamCreatedAfter(CreatedKey after) {
+        NavigableSet<CreatedKey> keys = after == null ? byCreated : byCreated.tailSet(after, false);
+        return keys.stream().map(key -> key.taskId);
+    }
+
+    /**
+     * Counts over the indexed tasks as of {@code now}.
+     */
+    TaskStatistics statistics(LocalDateTime now) {
+        return statistics.snapshot(now);
+    }
+
+    /**
+     * The full-text index over titles and descriptions.
+     */
+    TextIndex text() {
+        return text;
+    }
+
+    /**
+     * Posting list of the ids carrying the given tag.
+     */
+    Set<String> idsWithTag(String tag) {
+        Set<String> ids = byTag.get(tag);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    private static List<String> flatten(Map<LocalDateTime, Set<String>> range) {
+        List<String> ids = new ArrayList<>();
+        for (Set<String> bucket : range.values()) {
+            ids.addAll(bucket);
+        }
+        return ids;
+    }
+
+    private Set<String> newIdSet() {
+        return concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+    }
+
+    // compute runs atomically on the concurrent maps, so a bucket is never dropped while another id joins it
+    private <K> void addTo(Map<K, Set<String>> index, K key, String taskId) {
+        index.compute(key, (k, bucket) -> {
+            Set<String> ids = bucket != null ? bucket : newIdSet();
+            ids.add(taskId);
+            return ids;
+        });
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String taskId) {
+        index.computeIfPresent(key, (k, bucket) -> bucket.remove(taskId) && bucket.isEmpty() ? null : bucket);
+    }
+
+    private void unindex(String taskId, IndexedValues values) {
+        if (values.status != null) {
+            byStatus.get(values.status).remove(taskId);
+        }
+        if (values.priority != null) {
+            byPriority.get(values.priority).remove(taskId);
+        }
+        LocalDateTime dueDate = values.dueDate();
+        if (dueDate != null) {
+            removeFrom(byDueDate, dueDate, taskId);
+            removeFrom(openByDueDate, dueDate, taskId);
+        }
+        for (String tag : values.tags) {
+            removeFrom(byTag, tag, taskId);
+        }
+        byCreated.remove(new CreatedKey(values.createdSecond, values.createdNano, taskId));
+        statistics.remove(values.status, values.priority, dueDate, values.completedAt());
+    }
+
+    // The field values a task was last indexed under, with the timestamps
+    // copied in Task's encoding so that no date objects are built or kept
+    private static class IndexedValues {
+        private final TaskStatus status;
+        private final TaskPriority priority;
+        private final TagList tags;
+        private final long dueSecond;
+        private final long createdSecond;
+        private final long completedSecond;
+        private final int dueNano;
+        private final int createdNano;
+        private final int completedNano;
+
+        IndexedValues(Task task) {
+            this.status = task.getStatus();
+            this.priority = task.getPriority();
+            this.tags = task.getTagView();
+            this.dueSecond = task.getDueEpochSecond();
+            this.dueNano = task.getDueNano();
+            this.createdSecond = task.getCreatedEpochSecond();
+            this.createdNano = task.getCreatedNano();
+            this.completedSecond = task.getCompletedEpochSecond();
+            this.completedNano = task.getCompletedNano();
+        }
+
+        LocalDateTime dueDate() {
+            return EpochTime.timeOf(dueSecond, dueNano);
+        }
+
+        LocalDateTime completedAt() {
+            return EpochTime.timeOf(completedSecond, completedNano);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof IndexedValues)) {
+                return false;
+            }
+            IndexedValues that = (IndexedValues) other;
+            return status == that.status && priority == that.priority && tags.equals(that.tags)
+                    && dueSecond == that.dueSecond && dueNano == that.dueNano
+                    && createdSecond == that.createdSecond && createdNano == that.createdNano
+                    && completedSecond == that.completedSecond && completedNano == that.completedNano;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(status, priority, tags, dueSecond, dueNano, createdSecond, completedSecond);
+        }
+    }
+
+    /**
+     * Position of a task in creation order; the id breaks ties between
+     * tasks created in the same instant. Tasks without a creation time
+     * come first.
+     */
+    static final class CreatedKey implements Comparable<CreatedKey> {
+        // Epoch second and nanosecond, with NO_TIME sorting first
+        private final long createdSecond;
+        private final int createdNano;
+        final String taskId;
+
+        CreatedKey(LocalDateTime createdAt, String taskId) {
+            this(EpochTime.secondOf(createdAt), EpochTime.nanoOf(createdAt), taskId);
+        }
+
+        private CreatedKey(long createdSecond, int createdNano, String taskId) {
+            this.createdSecond = createdSecond;
+            this.createdNano = createdNano;
+            this.taskId = taskId;
+        }
+
+        static CreatedKey of(Task task) {
+            return new CreatedKey(task.getCreatedEpochSecond(), task.getCreatedNano(), task.getId());
+        }
+
+        LocalDateTime createdAt() {
+            return EpochTime.timeOf(createdSecond, createdNano);
+        }
+
+        @Override
+        public int compareTo(CreatedKey other) {
+            int byTime = createdSecond != other.createdSecond
+                    ? Long.compare(createdSecond, other.createdSecond)
+                    : Integer.compare(createdNano, other.createdNano);
+            return byTime != 0 ? byTime : taskId.compareTo(other.taskId);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CreatedKey && compareTo((CreatedKey) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(createdSecond, createdNano, taskId);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of task mutations kept next to the snapshot file.
+ *
+ * Each line is one compact JSON record: {"op":"put","task":{...}} or
+ * {"op":"delete","id":"..."}. Records carry the full task state, so
+ * replaying a record twice gives the same result as replaying it once.
+ * A record cut short by a crash is never acknowledged, so replay skips it;
+ * the next append starts a new line after it rather than continuing it.
+ */
+class TaskJournal {
+    static final String LOG_SUFFIX = ".log";
+    static final String ROTATED_SUFFIX = ".log.1";
+
+    private final Path logPath;
+    private final Path rotatedPath;
+    private FileChannel channel;
+    // Where this journal's last append ended; a log of any other size may end in a torn record
+    private long appendedTo = -1;
+
+    TaskJournal(String storagePath) {
+        this.logPath = Paths.get(storagePath + LOG_SUFFIX);
+        this.rotatedPath = Paths.get(storagePath + ROTATED_SUFFIX);
+    }
+
+    void appendPut(Task task) throws IOException {
+        append(putRecord(task));
+    }
+
+    void appendDelete(String taskId) throws IOException {
+        append(deleteRecord(taskId));
+    }
+
+    /**
+     * Appends one record per entry with a single write: a put for each
+     * task, a delete for each id mapped to null.
+     */
+    void appendChanges(Map<String, Task> changes) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<String, Task> change : changes.entrySet()) {
+            records.append(change.getValue() != null ? putRecord(change.getValue()) : deleteRecord(change.getKey()));
+            records.append('\n');
+        }
+        records.setLength(Math.max(0, records.length() - 1));
+        append(records.toString());
+    }
+
+    private String putRecord(Task task) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter out = new JsonWriter(line);
+        out.beginObject();
+        out.name("op").value("put");
+        out.name("task");
+        TaskTypeAdapter.SHARED.write(out, task);
+        out.endObject();
+        return line.toString();
+    }
+
+    private String deleteRecord(String taskId) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter out = new JsonWriter(line);
+        out.beginObject();
+        out.name("op").value("delete");
+        out.name("id").value(taskId);
+        out.endObject();
+        return line.toString();
+    }
+
+    private void append(String records) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        String lines = records + '\n';
+        if (channel.size() != appendedTo && !endsWithNewline()) {
+            // Left by a crash mid-append here or in another process; keep it off the new records' line
+            lines = '\n' + lines;
+        }
+        appendedTo = -1;
+        ByteBuffer bytes = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        appendedTo = channel.size();
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            long size = log.size();
+            if (size == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            log.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    long size() {
+        try {
+            return Files.exists(logPath) ? Files.size(logPath) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Moves the active log aside so new records start a fresh file while
+     * the rotated one is folded into a snapshot.
+     */
+    void rotate() throws IOException {
+        close();
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        if (Files.exists(rotatedPath)) {
+            // A previous compaction failed; keep its records ahead of the new ones
+            Files.write(rotatedPath, Files.readAllBytes(logPath), StandardOpenOption.APPEND);
+            Files.delete(logPath);
+        } else {
+            Files.move(logPath, rotatedPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    void deleteRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    /**
+     * Drops every record, used after a full snapshot has been written.
+     */
+    void reset() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    /**
+     * Replays the rotated log (left behind by an interrupted compaction)
+     * followed by the active log.
+     */
+    void replay(Consumer<Task> onPut, Consumer<String> onDelete) throws IOException {
+        replay(rotatedPath, 0, onPut, onDelete);
+        replay(logPath, 0, onPut, onDelete);
+    }
+
+    /**
+     * Replays only the records of the active log that start at or after
+     * the byte offset, such as those another process appended since the
+     * log was last read.
+     */
+    void replayFrom(long offset, Consumer<Task> onPut, Consumer<String> onDelete) throws IOException {
+        replay(logPath, offset, onPut, onDelete);
+    }
+
+    private void replay(Path path, long offset, Consumer<Task> onPut, Consumer<String> onDelete) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        InputStream log = Files.newInputStream(path);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(log, StandardCharsets.UTF_8))) {
+            log.skipNBytes(offset);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String op = null;
+                String taskId = null;
+                Task task = null;
+                try (JsonReader in = new JsonReader(new StringReader(line))) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "op":
+                                op = in.nextString();
+                                break;
+                            case "id":
+                                taskId = in.nextString();
+                                break;
+                            case "task":
+                                task = TaskTypeAdapter.SHARED.read(in);
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                    // A record torn by a crash mid-append; the records after it were appended later
+                    System.err.println("Ignoring unreadable journal record in " + path);
+                    continue;
+                }
+                if ("delete".equals(op)) {
+                    onDelete.accept(taskId);
+                } else if (task != null) {
+                    onPut.accept(task);
+                }
+            }
+        }
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            appendedTo = -1;
+        }
+    }
+}
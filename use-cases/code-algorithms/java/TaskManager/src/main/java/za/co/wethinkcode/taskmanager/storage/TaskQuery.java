@@ -0,0 +1,241 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A combination of task filters plus an optional sort order and limit,
+ * run by {@link TaskStorage#query(TaskQuery)}. Every filter that is set
+ * must match; filters left unset match everything.
+ */
+public class TaskQuery {
+
+    public enum SortKey {
+        CREATED("created"),
+        UPDATED("updated"),
+        DUE_DATE("due"),
+        PRIORITY("priority"),
+        TITLE("title");
+
+        private final String value;
+
+        SortKey(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public static SortKey fromValue(String value) {
+            for (SortKey key : SortKey.values()) {
+                if (key.getValue().equals(value)) {
+                    return key;
+                }
+            }
+            throw new IllegalArgumentException("Invalid sort key: " + value);
+        }
+    }
+
+    private Set<TaskStatus> statuses;
+    private Set<TaskPriority> priorities;
+    private List<String> allTags = new ArrayList<>();
+    private List<String> anyTags = new ArrayList<>();
+    private LocalDateTime dueFrom;
+    private LocalDateTime dueBefore;
+    private boolean overdue;
+    private String text;
+    private SortKey sortKey;
+    private boolean descending;
+    private int limit = -1;
+
+    public TaskQuery status(TaskStatus... statuses) {
+        this.statuses = EnumSet.copyOf(Arrays.asList(statuses));
+        return this;
+    }
+
+    public TaskQuery priority(TaskPriority... priorities) {
+        this.priorities = EnumSet.copyOf(Arrays.asList(priorities));
+        return this;
+    }
+
+    /**
+     * Only tasks carrying every one of these tags.
+     */
+    public TaskQuery allTags(Collection<String> tags) {
+        this.allTags = new ArrayList<>(tags);
+        return this;
+    }
+
+    /**
+     * Only tasks carrying at least one of these tags.
+     */
+    public TaskQuery anyTags(Collection<String> tags) {
+        this.anyTags = new ArrayList<>(tags);
+        return this;
+    }
+
+    /**
+     * Only tasks due at or after this instant.
+     */
+    public TaskQuery dueFrom(LocalDateTime from) {
+        this.dueFrom = from;
+        return this;
+    }
+
+    /**
+     * Only tasks due strictly before this instant.
+     */
+    public TaskQuery dueBefore(LocalDateTime before) {
+        this.dueBefore = before;
+        return this;
+    }
+
+    /**
+     * Only tasks that are overdue when the query runs.
+     */
+    public TaskQuery overdue() {
+        this.overdue = true;
+        return this;
+    }
+
+    /**
+     * Only tasks whose title or description contains the text, ignoring case.
+     */
+    public TaskQuery text(String text) {
+        this.text = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public TaskQuery sortBy(SortKey key, boolean descending) {
+        this.sortKey = key;
+        this.descending = descending;
+        return this;
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    Set<TaskStatus> statuses() {
+        return statuses;
+    }
+
+    Set<TaskPriority> priorities() {
+        return priorities;
+    }
+
+    List<String> allTags() {
+        return allTags;
+    }
+
+    List<String> anyTags() {
+        return anyTags;
+    }
+
+    LocalDateTime dueFrom() {
+        return dueFrom;
+    }
+
+    LocalDateTime dueBefore() {
+        return dueBefore;
+    }
+
+    boolean isOverdue() {
+        return overdue;
+    }
+
+    boolean hasDueFilter() {
+        return overdue || dueFrom != null || dueBefore != null;
+    }
+
+    String text() {
+        return text;
+    }
+
+    SortKey sortKey() {
+        return sortKey;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * The limit, or -1 for none.
+     */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * The full filter, checked against every candidate whichever index
+     * produced it. {@code now} is the one clock reading used for overdue.
+     */
+    Predicate<Task> matcher(LocalDateTime now) {
+        return task -> (statuses == null || statuses.contains(task.getStatus()))
+                && (priorities == null || priorities.contains(task.getPriority()))
+                && allTags.stream().allMatch(task::hasTag)
+                && (anyTags.isEmpty() || anyTags.stream().anyMatch(task::hasTag))
+                && matchesDue(task.getDueDate())
+                && (!overdue || task.isOverdue(now))
+                && (text == null || contains(task.getTitle()) || contains(task.getDescription()));
+    }
+
+    /**
+     * The requested order, with the id as a final tie-break so that equal
+     * keys always come out in the same order.
+     */
+    Comparator<Task> comparator() {
+        Comparator<Task> order;
+        switch (sortKey) {
+            case CREATED:
+                order = Comparator.comparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case UPDATED:
+                order = Comparator.comparing(Task::getUpdatedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case DUE_DATE:
+                order = Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            case PRIORITY:
+                order = Comparator.comparing(Task::getPriority, Comparator.nullsLast(Comparator.naturalOrder()));
+                break;
+            default:
+                order = Comparator.comparing(Task::getTitle, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+        }
+        if (descending) {
+            order = order.reversed();
+        }
+        return order.thenComparing(Task::getId);
+    }
+
+    private boolean matchesDue(LocalDateTime dueDate) {
+        if (dueFrom == null && dueBefore == null) {
+            return true;
+        }
+        return dueDate != null
+                && (dueFrom == null || !dueDate.isBefore(dueFrom))
+                && (dueBefore == null || dueDate.isBefore(dueBefore));
+    }
+
+    private boolean contains(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(text);
+    }
+}
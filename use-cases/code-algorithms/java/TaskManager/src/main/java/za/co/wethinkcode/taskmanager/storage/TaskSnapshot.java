@@ -0,0 +1,157 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The tasks of a {@link TaskStorage} as of one version. A snapshot never
+ * changes: every write publishes a new one that shares all unchanged
+ * tasks with it. Taking one is a single read, so a long export or report
+ * over a snapshot sees one consistent state without holding up writers.
+ *
+ * The tasks are the stored instances. The storage changes copies rather
+ * than these, so a snapshot stays consistent as long as callers do the
+ * same: treat its tasks as read-only.
+ */
+public final class TaskSnapshot implements Iterable<Task> {
+    // Each storage numbers its versions from a random multiple of this, so the ranges of two never overlap
+    private static final long EPOCH_SPAN = 1L << 40;
+
+    private final PersistentTaskMap tasks;
+    private final long version;
+    private final ChangeLog changes;
+
+    private TaskSnapshot(PersistentTaskMap tasks, long version, ChangeLog changes) {
+        this.tasks = tasks;
+        this.version = version;
+        this.changes = changes;
+    }
+
+    /**
+     * The empty snapshot a new storage starts from, at a fresh epoch.
+     */
+    static TaskSnapshot empty() {
+        long origin = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / EPOCH_SPAN) * EPOCH_SPAN;
+        return new TaskSnapshot(PersistentTaskMap.EMPTY, origin, ChangeLog.startingAt(origin));
+    }
+
+    /**
+     * Goes up by one with every write published; a later snapshot of the
+     * same storage has a higher version. Each storage starts from its own
+     * random epoch, so versions of different storages are not comparable.
+     * It doubles as the sequence number of the last mutation for
+     * {@link #changesSince(long)}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The tasks created, updated and deleted after the sequence number, up
+     * to this snapshot's version.
+     */
+    public TaskChanges changesSince(long sequence) {
+        return changes.since(sequence, version);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * @return the task, or null if there was none with that id at this version
+     */
+    public Task getTask(String taskId) {
+        return tasks.get(taskId);
+    }
+
+    public List<Task> getAllTasks() {
+        List<Task> result = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            result.add(task);
+        }
+        return result;
+    }
+
+    public Stream<Task> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(tasks.iterator(), tasks.size(),
+                Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return tasks.iterator();
+    }
+
+    TaskSnapshot with(Task task) {
+        TaskChanges.Kind kind = tasks.get(task.getId()) == null ? TaskChanges.Kind.CREATED : TaskChanges.Kind.UPDATED;
+        return new TaskSnapshot(tasks.with(task), version + 1, changes.record(version + 1, task.getId(), kind));
+    }
+
+    // The next version with every task stored or, where it maps to null, removed, as one batch
+    TaskSnapshot withAll(Map<String, Task> results) {
+        long next = version + 1;
+        PersistentTaskMap result = tasks;
+        ChangeLog log = changes;
+        for (Map.Entry<String, Task> entry : results.entrySet()) {
+            String taskId = entry.getKey();
+            Task task = entry.getValue();
+            boolean existed = result.get(taskId) != null;
+            if (task != null) {
+                result = result.with(task);
+                log = log.record(next, taskId, existed ? TaskChanges.Kind.UPDATED : TaskChanges.Kind.CREATED);
+            } else if (existed) {
+                result = result.without(taskId);
+                log = log.record(next, taskId, TaskChanges.Kind.DELETED);
+            }
+        }
+        return result == tasks ? this : new TaskSnapshot(result, next, log);
+    }
+
+    // The next version holding exactly these tasks, as after reloading the store
+    TaskSnapshot replacedWith(Iterable<Task> tasks) {
+        long next = version + 1;
+        PersistentTaskMap result = PersistentTaskMap.EMPTY;
+        ChangeLog log = changes;
+        int changed = 0;
+        for (Task task : tasks) {
+            result = result.with(task);
+            // A reload reads every task afresh, so only those that differ in content count as updated
+            Task previous = this.tasks.size() == 0 ? null : this.tasks.get(task.getId());
+            boolean unchanged = previous != null && (previous == task || previous.sameContentAs(task));
+            if (!unchanged && changed++ < log.getCapacity()) {
+                log = log.record(next, task.getId(), previous == null ? TaskChanges.Kind.CREATED : TaskChanges.Kind.UPDATED);
+            }
+        }
+        for (Task task : this.tasks) {
+            if (result.get(task.getId()) == null && changed++ < log.getCapacity()) {
+                log = log.record(next, task.getId(), TaskChanges.Kind.DELETED);
+            }
+        }
+        // More than the log holds, as on the first load of a large store: consumers have to read in full
+        if (changed > log.getCapacity()) {
+            log = changes.forgetThrough(next);
+        }
+        return new TaskSnapshot(result, next, log);
+    }
+
+    TaskSnapshot without(String taskId) {
+        PersistentTaskMap result = tasks.without(taskId);
+        return result == tasks ? this
+                : new TaskSnapshot(result, version + 1, changes.record(version + 1, taskId, TaskChanges.Kind.DELETED));
+    }
+
+    // Same tasks and version; only how many changes are kept differs
+    TaskSnapshot withChangeLogCapacity(int capacity) {
+        return new TaskSnapshot(tasks, version, changes.withCapacity(capacity));
+    }
+}
@@ -0,0 +1,53 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.Duration;
+
+/**
+ * Counts over a set of tasks at one instant: how many there are, how many
+ * have each status and priority, how many are overdue and how many were
+ * completed recently. The histograms are indexed by enum ordinal.
+ */
+public final class TaskStatistics {
+    /** How far back {@link TaskStore#getStatistics()} counts completions. */
+    public static final Duration RECENT_WINDOW = Duration.ofDays(7);
+
+    private final int total;
+    private final int[] byStatus;
+    private final int[] byPriority;
+    private final int overdue;
+    private final int completed;
+
+    TaskStatistics(int total, int[] byStatus, int[] byPriority, int overdue, int completed) {
+        this.total = total;
+        this.byStatus = byStatus;
+        this.byPriority = byPriority;
+        this.overdue = overdue;
+        this.completed = completed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getStatusCount(TaskStatus status) {
+        return byStatus[status.ordinal()];
+    }
+
+    public int getPriorityCount(TaskPriority priority) {
+        return byPriority[priority.ordinal()];
+    }
+
+    public int getOverdue() {
+        return overdue;
+    }
+
+    /**
+     * Tasks completed after the start of the window the counts were taken over.
+     */
+    public int getCompleted() {
+        return completed;
+    }
+}
@@ -1,134 +1,1353 @@
 // src/main/java/taskmanager/storage/TaskStorage.java
 package za.co.wethinkcode.taskmanager.storage;
 
-import com.google.gson.*;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskPriority;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+public class TaskStorage implements TaskStore {
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 4L * 1024 * 1024;
+    /** Storage paths with this extension hold a binary snapshot instead of JSON. */
+    public static final String BINARY_EXTENSION = ".bin";
+    public static final Duration DEFAULT_GROUP_COMMIT_WINDOW = Duration.ofMillis(20);
+    // Pages come from an index's candidates instead of the creation order once it narrows the store this much
+    private static final int SELECTIVE_PLAN_FRACTION = 8;
 
-public class TaskStorage {
     private final String storagePath;
-    private final Map<String, Task> tasks;
-    private final Gson gson;
+    // Readers take whatever version is current; writers swap in the next one
+    private final AtomicReference<TaskSnapshot> current = new AtomicReference<>(TaskSnapshot.empty());
+    // Moved on after a change reaches the indexes too, unlike the snapshot version
+    private final AtomicLong modifications = new AtomicLong();
+    private final TaskIndexes indexes;
+    private final TaskJournal journal;
+    private final boolean binary;
+    private final StoreFileGuard files;
+    private final TaskArchive archive;
+    // Ids changed here since they were last written; they win over the files when the two are merged
+    private final Set<String> unsynced = ConcurrentHashMap.newKeySet();
+    // Set when other processes' changes were merged into the files but not into memory; guarded by the file lock
+    private boolean behind;
+    private boolean journaled;
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private ExecutorService compactor;
+    private Future<?> pendingCompaction;
+    // Resolved on first use: the default zone costs a read of the time zone database
+    private Clock clock;
+    private final WriteBehindQueue writeBehind = new WriteBehindQueue(this::flush);
+    private volatile Durability durability = Durability.SYNC;
+    private Duration groupCommitWindow = DEFAULT_GROUP_COMMIT_WINDOW;
 
     public TaskStorage(String storagePath) {
+        this(storagePath, false);
+    }
+
+    /**
+     * @param journaled when true, each mutation appends one record to
+     *                  {@code storagePath + ".log"} instead of rewriting the
+     *                  whole snapshot; the log is folded back into the
+     *                  snapshot in the background once it grows past the
+     *                  compaction threshold.
+     */
+    public TaskStorage(String storagePath, boolean journaled) {
+        this(storagePath, journaled, true);
+    }
+
+    // Subclasses that need their own fields set before loading pass loadNow = false
+    TaskStorage(String storagePath, boolean journaled, boolean loadNow) {
+        this(storagePath, journaled, loadNow, false);
+    }
+
+    // Concurrent storages get indexes that may be read while they are written
+    TaskStorage(String storagePath, boolean journaled, boolean loadNow, boolean concurrent) {
         this.storagePath = storagePath;
-        this.tasks = new HashMap<>();
+        this.indexes = new TaskIndexes(concurrent);
+        this.journaled = journaled;
+        this.binary = storagePath.endsWith(BINARY_EXTENSION);
+        this.journal = new TaskJournal(storagePath);
+        this.files = new StoreFileGuard(storagePath);
+        this.archive = TaskArchive.forStore(storagePath);
+
+        if (loadNow) {
+            load();
+        }
+    }
 
-        // Configure Gson with custom adapters for LocalDateTime
-        this.gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeSerializer())
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeDeserializer())
-                .setPrettyPrinting()
-                .create();
+    public boolean isJournaled() {
+        return journaled;
+    }
 
-        load();
+    /**
+     * Switching journaling off writes a full snapshot so that no state is
+     * left only in the log. Callers outside the package choose journaling
+     * when they build the storage.
+     */
+    void setJournaled(boolean journaled) {
+        if (this.journaled && !journaled) {
+            this.journaled = false;
+            save();
+        }
+        this.journaled = journaled;
     }
 
-    public void load() {
-        File file = new File(storagePath);
-        if (file.exists()) {
-            try (FileReader reader = new FileReader(file)) {
-                Task[] loadedTasks = gson.fromJson(reader, Task[].class);
-                if (loadedTasks != null) {
-                    for (Task task : loadedTasks) {
-                        tasks.put(task.getId(), task);
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Chooses when mutations reach disk. In the group and async modes a
+     * mutation returns once it is in memory, and a background thread writes
+     * it later together with whatever else changed in the meantime; call
+     * {@link #flush()} or {@link #close()} to wait for it. Switching back to
+     * sync flushes first.
+     */
+    public void setDurability(Durability durability) {
+        if (durability == Durability.SYNC) {
+            this.durability = durability;
+            flush();
+            writeBehind.stop();
+        } else {
+            writeBehind.start();
+            this.durability = durability;
+        }
+    }
+
+    /**
+     * How long group durability waits after the first unsaved mutation
+     * before writing it and everything that arrived since.
+     */
+    public void setGroupCommitWindow(Duration window) {
+        this.groupCommitWindow = window;
+    }
+
+    /**
+     * Mutations made in the group or async mode that are not on disk yet.
+     */
+    public int getPendingMutationCount() {
+        return writeBehind.pendingCount();
+    }
+
+    /**
+     * Writes every pending mutation now and returns once it is on disk.
+     * Journaled storages append one record per changed task; others write a
+     * full snapshot.
+     *
+     * @return false if the write failed, in which case the mutations stay
+     *         pending and are written again by the next flush
+     */
+    public boolean flush() {
+        return locked(() -> {
+            Set<String> taskIds = writeBehind.drain();
+            boolean written = taskIds.isEmpty() || writeChanges(taskIds);
+            writeBehind.flushed(written ? Set.of() : taskIds);
+            return written;
+        });
+    }
+
+    public void setCompactionThreshold(long bytes) {
+        this.compactionThreshold = bytes;
+    }
+
+    /**
+     * The clock that time-relative queries such as overdue and due today
+     * are evaluated against.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Clock getClock() {
+        return clock();
+    }
+
+    private Clock clock() {
+        Clock current = clock;
+        if (current == null) {
+            // Racing threads at worst each build an equivalent clock
+            current = Clock.systemDefaultZone();
+            clock = current;
+        }
+        return current;
+    }
+
+    /**
+     * Reads a single task without loading the store. For a binary snapshot
+     * with no pending journal this maps the file and decodes only the
+     * matching record; otherwise it streams the snapshot and journal and
+     * keeps only that task, without building the indexes a load would.
+     */
+    public static Task readTask(String storagePath, String taskId) {
+        Path snapshot = Paths.get(storagePath);
+        if (storagePath.endsWith(BINARY_EXTENSION)
+                && !Files.exists(Paths.get(storagePath + TaskJournal.LOG_SUFFIX))
+                && !Files.exists(Paths.get(storagePath + TaskJournal.ROTATED_SUFFIX))) {
+            if (!Files.exists(snapshot)) {
+                return null;
+            }
+            try {
+                return BinaryTaskSnapshot.readTask(snapshot, taskId);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reading task: " + e.getMessage());
+                return null;
+            }
+        }
+        return new TaskStorage(storagePath, false, false).readFromFiles(taskId);
+    }
+
+    // Streams the files for the one task, keeping none of the others and building no indexes
+    private Task readFromFiles(String taskId) {
+        Task[] found = new Task[1];
+        Consumer<Task> match = task -> {
+            if (task.getId().equals(taskId)) {
+                found[0] = task;
+            }
+        };
+        try {
+            files.locked(() -> {
+                readSnapshot(match);
+                journal.replay(match, deletedId -> {
+                    if (deletedId.equals(taskId)) {
+                        found[0] = null;
                     }
-                }
+                });
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading task: " + e.getMessage());
+            return null;
+        }
+        return found[0];
+    }
+
+    /**
+     * Reads the snapshot and journal in full and replaces the tasks with
+     * theirs, keeping changes made here that are not written yet.
+     */
+    public void load() {
+        load(this::readSnapshot);
+    }
+
+    // For subclasses that learn something about their files' layout while loading them
+    void load(SnapshotReader reader) {
+        locked(() -> {
+            awaitCompaction();
+            try {
+                files.locked(() -> {
+                    reloadAll(reader);
+                    return null;
+                });
             } catch (IOException e) {
                 System.err.println("Error loading tasks: " + e.getMessage());
             }
-        }
+            return null;
+        });
     }
 
+    /**
+     * Picks up what other processes changed in the store's files since this
+     * storage last read or wrote them, and reports whether they had. When
+     * nothing changed this costs a few file attribute reads and parses
+     * nothing; when others only appended to the journal, only their new
+     * records are read. Changes made here that are not written yet are kept.
+     *
+     * Writes do the same before touching the files, so they never overwrite
+     * another process's changes: tasks changed here are written over the
+     * files' latest state, and every other task keeps what is on disk.
+     */
+    public boolean refresh() {
+        return locked(() -> {
+            awaitCompaction();
+            try {
+                return files.locked(this::catchUp);
+            } catch (IOException e) {
+                System.err.println("Error refreshing tasks: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Writes a full snapshot and discards the journal it supersedes.
+     */
     public void save() {
-        try (FileWriter writer = new FileWriter(storagePath)) {
-            gson.toJson(tasks.values(), writer);
+        saveSnapshot();
+    }
+
+    // What save() does, reporting whether it reached disk
+    boolean saveSnapshot() {
+        return locked(() -> {
+            awaitCompaction();
+            try {
+                files.locked(() -> {
+                    writeSnapshot();
+                    return null;
+                });
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error saving tasks: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Writes every task as a JSON array, whatever the snapshot format.
+     */
+    public boolean exportJson(String path) {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            TaskTypeAdapter.SHARED.writeArray(writer, snapshot().getAllTasks());
+            return true;
         } catch (IOException e) {
-            System.err.println("Error saving tasks: " + e.getMessage());
+            System.err.println("Error exporting tasks: " + e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Adds the tasks from a JSON array file, replacing any with the same id,
+     * and saves once.
+     *
+     * @return the number of tasks imported, or -1 if the file could not be read
+     */
+    public int importJson(String path) {
+        List<Task> imported = new ArrayList<>();
+        try {
+            readJson(Paths.get(path), imported::add);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error importing tasks: " + e.getMessage());
+            return -1;
+        }
+        locked(() -> {
+            for (Task task : imported) {
+                store(task);
+            }
+            save();
+            return null;
+        });
+        return imported.size();
+    }
+
+    /**
+     * Moves done tasks completed longer ago than the age to the archive
+     * next to the store, then drops them from the store with one write.
+     * Other processes' changes are taken in first, so a task reopened
+     * elsewhere stays. The archive is forced to disk before the store is
+     * written, so a crash in between leaves a task in both tiers rather
+     * than in neither, and the store's copy wins.
+     *
+     * @return the number of tasks archived, or -1 if the archive could not be written
+     */
+    public int archiveCompleted(Duration age) {
+        return locked(() -> {
+            refresh();
+            LocalDateTime completedBefore = LocalDateTime.now(clock()).minus(age);
+            List<Task> completed = new ArrayList<>();
+            for (Task task : getTasksByStatus(TaskStatus.DONE)) {
+                if (task.getCompletedAt() != null && task.getCompletedAt().isBefore(completedBefore)) {
+                    completed.add(task);
+                }
+            }
+            if (completed.isEmpty()) {
+                return 0;
+            }
+            completed.sort(Comparator.comparing(Task::getCompletedAt).thenComparing(Task::getId));
+            try {
+                files.locked(() -> {
+                    archive.append(completed);
+                    return null;
+                });
+            } catch (IOException e) {
+                System.err.println("Error archiving tasks: " + e.getMessage());
+                return -1;
+            }
+            deleteTasks(completed.stream().map(Task::getId).collect(Collectors.toList()));
+            return completed.size();
+        });
+    }
+
+    public TaskArchive getArchive() {
+        return archive;
+    }
+
     public String addTask(Task task) {
-        tasks.put(task.getId(), task);
-        save();
-        return task.getId();
+        return locked(() -> {
+            store(task);
+            persist(task.getId());
+            return task.getId();
+        });
     }
 
     public Task getTask(String taskId) {
-        return tasks.get(taskId);
+        return snapshot().getTask(taskId);
+    }
+
+    /**
+     * The tasks as of now, unaffected by any later write. Reading a
+     * snapshot takes no lock, so a long report over one never delays
+     * writers and never sees a half-applied change.
+     */
+    public TaskSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * The ids created, updated and deleted since the sequence number, and
+     * the sequence number to ask from next time. Every mutation, or whole
+     * batch, takes the next number, the version of the snapshot it
+     * publishes, so pass 0 the first time and
+     * {@link TaskChanges#getSequence()} after that.
+     *
+     * The numbers belong to this storage object. Each one starts from a
+     * random epoch, so a number issued by another storage, or by this
+     * store before it was reopened, gets an incomplete result rather than
+     * someone else's changes. Loading the store counts as one mutation
+     * that creates every task. Only the latest changes are kept (see
+     * {@link #setChangeLogCapacity(int)}); when the ones asked for are
+     * gone the result is not {@link TaskChanges#isComplete() complete}
+     * and the consumer has to read the tasks in full.
+     */
+    public TaskChanges changesSince(long sequence) {
+        return snapshot().changesSince(sequence);
+    }
+
+    /**
+     * How many of the latest per-task changes {@link #changesSince(long)}
+     * can always answer from; up to twice as many are kept.
+     */
+    public void setChangeLogCapacity(int capacity) {
+        current.updateAndGet(snapshot -> snapshot.withChangeLogCapacity(capacity));
+    }
+
+    public long getModificationCount() {
+        return modifications.get();
     }
 
     public boolean updateTask(String taskId, Task updates) {
-        Task task = getTask(taskId);
-        if (task != null) {
-            task.update(updates);
-            save();
+        return locked(() -> {
+            Task task = getTask(taskId);
+            if (task != null) {
+                task = copyForChange(task);
+                task.update(updates);
+                store(task);
+                persist(task.getId());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Persists a task that was modified after being fetched with
+     * {@link #getTask(String)}, re-indexing it under its new values. A task
+     * edited in place is already visible to snapshots mid-edit; edit a copy,
+     * or use {@link #modifyTask(String, Predicate)}, to keep them consistent.
+     */
+    public void saveTask(Task task) {
+        locked(() -> {
+            store(task);
+            persist(task.getId());
+            return null;
+        });
+    }
+
+    /**
+     * Fetches a task, applies the change to a copy and publishes the copy
+     * if the change returns true. Prefer this to editing a task from
+     * {@link #getTask(String)} in place: snapshots never see the change
+     * half made, and concurrent storages run the whole read-modify-write
+     * atomically for the task.
+     *
+     * @return false if there is no such task or the change returned false
+     */
+    public boolean modifyTask(String taskId, Predicate<Task> change) {
+        return locked(() -> {
+            Task task = getTask(taskId);
+            if (task == null) {
+                return false;
+            }
+            task = copyForChange(task);
+            if (!change.test(task)) {
+                return false;
+            }
+            saveTask(task);
             return true;
+        });
+    }
+
+    /**
+     * Adds every task, replacing any with the same id, and persists once.
+     *
+     * @return the ids of the added tasks, in order
+     */
+    public List<String> addTasks(Collection<Task> newTasks) {
+        TaskBatch batch = new TaskBatch();
+        List<String> taskIds = new ArrayList<>(newTasks.size());
+        for (Task task : newTasks) {
+            batch.add(task);
+            taskIds.add(task.getId());
         }
-        return false;
+        applyBatch(batch);
+        return taskIds;
     }
 
-    public boolean deleteTask(String taskId) {
-        if (tasks.containsKey(taskId)) {
-            tasks.remove(taskId);
-            save();
-            return true;
+    /**
+     * Applies each entry as {@link #updateTask(String, Task)} would and
+     * persists once.
+     *
+     * @return false, with nothing changed, if any id is unknown
+     */
+    public boolean updateTasks(Map<String, Task> updates) {
+        TaskBatch batch = new TaskBatch();
+        updates.forEach(batch::update);
+        return applyBatch(batch);
+    }
+
+    /**
+     * @return false, with nothing deleted, if any id is unknown
+     */
+    public boolean deleteTasks(Collection<String> taskIds) {
+        TaskBatch batch = new TaskBatch();
+        for (String taskId : new LinkedHashSet<>(taskIds)) {
+            batch.delete(taskId);
         }
-        return false;
+        return applyBatch(batch);
+    }
+
+    /**
+     * Applies the operations in order, publishes the result as one version
+     * and persists it once: one snapshot write, or one journal append
+     * covering every touched task. Every operation is checked against the
+     * tasks as they will be at that point in the batch before anything
+     * changes. If a change throws, the exception propagates and nothing is
+     * changed, as with a rolled-back transaction.
+     *
+     * @return false, with nothing changed, if an update, modify or delete
+     *         targets a task that will not exist when it runs
+     */
+    public boolean applyBatch(TaskBatch batch) {
+        return locked(() -> {
+            TaskSnapshot before = snapshot();
+            Map<String, Boolean> existsAfter = new HashMap<>();
+            for (TaskBatch.Operation operation : batch.operations()) {
+                boolean exists = existsAfter.getOrDefault(operation.taskId, before.getTask(operation.taskId) != null);
+                if (operation.kind == TaskBatch.Kind.ADD) {
+                    existsAfter.put(operation.taskId, true);
+                } else if (!exists) {
+                    return false;
+                } else if (operation.kind == TaskBatch.Kind.DELETE) {
+                    existsAfter.put(operation.taskId, false);
+                }
+            }
+
+            // Every result is worked out on private copies first, so a change that throws leaves nothing published
+            Map<String, Task> results = new LinkedHashMap<>();
+            for (TaskBatch.Operation operation : batch.operations()) {
+                switch (operation.kind) {
+                    case ADD:
+                        results.put(operation.taskId, copyForStorage(operation.task));
+                        break;
+                    case UPDATE:
+                        Task updated = copyForChange(resultOrStored(results, operation.taskId));
+                        updated.update(operation.task);
+                        results.put(operation.taskId, updated);
+                        break;
+                    case MODIFY:
+                        Task modified = copyForChange(resultOrStored(results, operation.taskId));
+                        operation.change.accept(modified);
+                        results.put(operation.taskId, modified);
+                        break;
+                    case DELETE:
+                        results.put(operation.taskId, null);
+                        break;
+                }
+            }
+
+            Set<String> touched = results.keySet();
+            storeAll(results);
+
+            if (!touched.isEmpty()) {
+                if (durability != Durability.SYNC) {
+                    touched.forEach(this::deferWrite);
+                } else {
+                    writeChanges(touched);
+                }
+            }
+            return true;
+        });
+    }
+
+    // A batch sees its own earlier operations before the stored tasks
+    private Task resultOrStored(Map<String, Task> results, String taskId) {
+        return results.containsKey(taskId) ? results.get(taskId) : getTask(taskId);
+    }
+
+    public boolean deleteTask(String taskId) {
+        return locked(() -> {
+            if (snapshot().getTask(taskId) != null) {
+                evict(taskId);
+                persist(taskId);
+                return true;
+            }
+            return false;
+        });
     }
 
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks.values());
+        return snapshot().getAllTasks();
     }
 
     public List<Task> getTasksByStatus(TaskStatus status) {
-        return tasks.values().stream()
+        // The filter drops tasks edited in place without a saveTask call
+        return resolve(indexes.idsWithStatus(status)).stream()
                 .filter(task -> task.getStatus() == status)
                 .collect(Collectors.toList());
     }
 
     public List<Task> getTasksByPriority(TaskPriority priority) {
-        return tasks.values().stream()
+        return resolve(indexes.idsWithPriority(priority)).stream()
                 .filter(task -> task.getPriority() == priority)
                 .collect(Collectors.toList());
     }
 
     public List<Task> getOverdueTasks() {
-        return tasks.values().stream()
-                .filter(Task::isOverdue)
+        LocalDateTime now = LocalDateTime.now(clock());
+        return resolve(indexes.openIdsDueBefore(now)).stream()
+                .filter(task -> task.isOverdue(now))
+                .collect(Collectors.toList());
+    }
+
+    public List<Task> getTasksDueToday() {
+        LocalDate today = LocalDate.now(clock());
+        return getTasksDueBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Tasks whose due date falls in [from, to), ordered by due date.
+     */
+    public List<Task> getTasksDueBetween(LocalDateTime from, LocalDateTime to) {
+        return resolve(indexes.idsDueBetween(from, to)).stream()
+                .filter(task -> task.getDueDate() != null
+                        && !task.getDueDate().isBefore(from) && task.getDueDate().isBefore(to))
                 .collect(Collectors.toList());
     }
 
-    // Custom serializer for LocalDateTime
-    private static class LocalDateTimeSerializer implements JsonSerializer<LocalDateTime> {
-        private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    /**
+     * Counts kept by the indexes as tasks are stored, so this takes the same
+     * time however many tasks there are. Like the indexes it reflects the
+     * last stored value of each task.
+     */
+    public TaskStatistics getStatistics() {
+        return indexes.statistics(LocalDateTime.now(clock()));
+    }
+
+    /**
+     * Tasks carrying every tag in {@code allTags} and, when {@code anyTags}
+     * is not empty, at least one tag from it. Either argument may be null.
+     */
+    public List<Task> getTasksByTags(Collection<String> allTags, Collection<String> anyTags) {
+        boolean requireAll = allTags != null && !allTags.isEmpty();
+        boolean requireAny = anyTags != null && !anyTags.isEmpty();
+        if (!requireAll && !requireAny) {
+            return getAllTasks();
+        }
+
+        Collection<String> candidates;
+        if (requireAll) {
+            // Walk the shortest posting list and probe the others
+            List<Set<String>> postings = new ArrayList<>();
+            for (String tag : allTags) {
+                postings.add(indexes.idsWithTag(tag));
+            }
+            postings.sort(Comparator.comparingInt(Set::size));
+            List<String> matches = new ArrayList<>();
+            for (String taskId : postings.get(0)) {
+                boolean inAll = true;
+                for (int i = 1; i < postings.size() && inAll; i++) {
+                    inAll = postings.get(i).contains(taskId);
+                }
+                if (inAll) {
+                    matches.add(taskId);
+                }
+            }
+            candidates = matches;
+        } else {
+            Set<String> union = new LinkedHashSet<>();
+            for (String tag : anyTags) {
+                union.addAll(indexes.idsWithTag(tag));
+            }
+            candidates = union;
+        }
+
+        return resolve(candidates).stream()
+                .filter(task -> !requireAll || allTags.stream().allMatch(task::hasTag))
+                .filter(task -> !requireAny || anyTags.stream().anyMatch(task::hasTag))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a query lazily. The planner drives the scan from the smallest
+     * candidate set any index offers (status, priority, tag, due date or,
+     * with substring search on, text) and checks the full filter on each
+     * candidate, so a limit without a sort stops as soon as enough matches
+     * are found. A due-date sort over a due-date filter walks the due index
+     * in order and needs no sort step; other sorts with a limit keep only
+     * the top entries.
+     *
+     * Consume the stream before changing this storage.
+     */
+    public Stream<Task> query(TaskQuery query) {
+        LocalDateTime now = LocalDateTime.now(clock());
+        QueryPlan plan = plan(query, now, snapshot());
+        Stream<Task> results = plan.candidates.get().filter(query.matcher(now));
+        if (query.sortKey() != null && !plan.ordered) {
+            results = sortAndLimit(results, query.comparator(), query.limit());
+        }
+        if (query.limit() >= 0) {
+            results = results.limit(query.limit());
+        }
+        return results;
+    }
+
+    /**
+     * Returns up to {@code pageSize} tasks matching the query's filters, in
+     * creation order, starting after the task the cursor points at (or from
+     * the start when {@code after} is null). Queries with a sort key cannot
+     * be paged.
+     *
+     * A page walks the creation-order index from the cursor, so deep pages
+     * cost no more than the first. When an index narrows the query to a
+     * small fraction of the store, only those candidates are ordered instead.
+     */
+    public TaskPage page(TaskQuery query, String after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        if (query.sortKey() != null) {
+            throw new IllegalArgumentException("Pages are always in creation order; remove the sort key");
+        }
+        TaskIndexes.CreatedKey start = after == null ? null : TaskPage.decodeCursor(after);
+        LocalDateTime now = LocalDateTime.now(clock());
+        Predicate<Task> matches = query.matcher(now);
+        TaskSnapshot snapshot = snapshot();
+        QueryPlan plan = plan(query, now, snapshot);
+
+        // One extra match tells whether another page follows
+        Stream<Task> matching;
+        if (plan.size <= snapshot.size() / SELECTIVE_PLAN_FRACTION) {
+            matching = sortAndLimit(plan.candidates.get()
+                            .filter(task -> start == null || TaskIndexes.CreatedKey.of(task).compareTo(start) > 0)
+                            .filter(matches),
+                    Comparator.comparing(TaskIndexes.CreatedKey::of), pageSize + 1);
+        } else {
+            matching = resolveLazily(snapshot, indexes.streamCreatedAfter(start)).filter(matches);
+        }
+        List<Task> page = matching.limit(pageSize + 1L).collect(Collectors.toList());
+        if (page.size() <= pageSize) {
+            return new TaskPage(page, null);
+        }
+        page = new ArrayList<>(page.subList(0, pageSize));
+        return new TaskPage(page, TaskPage.cursorAfter(page.get(pageSize - 1)));
+    }
+
+    /**
+     * Tasks whose title or description contains every word of the query,
+     * ranked so that tasks where the words are rarer across the store, or
+     * appear in the title, come first. See {@link #setSubstringSearch} for
+     * matching inside words.
+     */
+    public List<Task> search(String query, int limit) {
+        return resolve(indexes.text().search(query, limit));
+    }
+
+    /**
+     * With substring search on, search terms also match inside longer words
+     * ("log" finds "login"), and text filters in {@link #query(TaskQuery)}
+     * are answered from the index instead of a scan. It keeps a trigram
+     * index over all titles and descriptions, which costs several times
+     * the memory of the word index, so it is off by default.
+     */
+    public void setSubstringSearch(boolean enabled) {
+        locked(() -> {
+            indexes.text().setTrigrams(enabled);
+            return null;
+        });
+    }
+
+    /**
+     * Names the index the planner would drive the query from.
+     */
+    String explain(TaskQuery query) {
+        return plan(query, LocalDateTime.now(clock()), snapshot()).index;
+    }
+
+    // Candidates are resolved against one snapshot, so a query never mixes versions of a task
+    private QueryPlan plan(TaskQuery query, LocalDateTime now, TaskSnapshot snapshot) {
+        QueryPlan best = new QueryPlan("scan", snapshot.size(), false, snapshot::stream);
+
+        if (query.hasDueFilter()) {
+            // Overdue means not DONE and due strictly before now, so it narrows the due range
+            LocalDateTime before = query.dueBefore();
+            if (query.isOverdue() && (before == null || now.isBefore(before))) {
+                before = now;
+            }
+            LocalDateTime from = query.dueFrom();
+            LocalDateTime end = before;
+            boolean openOnly = query.isOverdue();
+            boolean descending = query.isDescending();
+            boolean ordered = query.sortKey() == TaskQuery.SortKey.DUE_DATE;
+            QueryPlan due = new QueryPlan("due", indexes.countDue(from, end, openOnly, best.size), ordered,
+                    () -> resolveLazily(snapshot, indexes.streamDue(from, end, openOnly, descending)));
+            // Walking the due index in sort order saves the sort, so it wins whenever it is usable
+            best = ordered ? due : cheaper(best, due);
+        }
+        if (best.ordered) {
+            return best;
+        }
+        if (query.statuses() != null) {
+            List<Set<String>> postings = new ArrayList<>();
+            query.statuses().forEach(status -> postings.add(indexes.idsWithStatus(status)));
+            best = cheaper(best, union("status", postings, snapshot));
+        }
+        if (query.priorities() != null) {
+            List<Set<String>> postings = new ArrayList<>();
+            query.priorities().forEach(priority -> postings.add(indexes.idsWithPriority(priority)));
+            best = cheaper(best, union("priority", postings, snapshot));
+        }
+        for (String tag : query.allTags()) {
+            Set<String> posting = indexes.idsWithTag(tag);
+            best = cheaper(best, new QueryPlan("tag", posting.size(), false, () -> resolveLazily(snapshot, posting.stream())));
+        }
+        if (!query.anyTags().isEmpty()) {
+            List<Set<String>> postings = new ArrayList<>();
+            query.anyTags().forEach(tag -> postings.add(indexes.idsWithTag(tag)));
+            best = cheaper(best, union("any-tag", postings, snapshot));
+        }
+        Set<String> textCandidates = indexes.text().substringCandidates(query.text());
+        if (textCandidates != null) {
+            best = cheaper(best, new QueryPlan("text", textCandidates.size(), false,
+                    () -> resolveLazily(snapshot, textCandidates.stream())));
+        }
+        return best;
+    }
+
+    private QueryPlan union(String index, List<Set<String>> postings, TaskSnapshot snapshot) {
+        int size = 0;
+        for (Set<String> posting : postings) {
+            size += posting.size();
+        }
+        // Status and priority postings are disjoint; tag postings may overlap
+        return new QueryPlan(index, size, false,
+                () -> resolveLazily(snapshot, postings.stream().flatMap(Set::stream).distinct()));
+    }
+
+    private static QueryPlan cheaper(QueryPlan current, QueryPlan candidate) {
+        return candidate.size < current.size ? candidate : current;
+    }
+
+    private static Stream<Task> resolveLazily(TaskSnapshot snapshot, Stream<String> taskIds) {
+        return taskIds.map(snapshot::getTask).filter(Objects::nonNull);
+    }
+
+    // A sort has to see every match; with a limit only the best few are kept
+    private static Stream<Task> sortAndLimit(Stream<Task> tasks, Comparator<Task> order, int limit) {
+        if (limit < 0) {
+            return tasks.sorted(order);
+        }
+        if (limit == 0) {
+            return Stream.empty();
+        }
+        PriorityQueue<Task> top = new PriorityQueue<>(limit + 1, order.reversed());
+        tasks.forEach(task -> {
+            top.add(task);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<Task> result = new ArrayList<>(top);
+        result.sort(order);
+        return result.stream();
+    }
+
+    private static class QueryPlan {
+        private final String index;
+        private final int size;
+        private final boolean ordered;
+        private final Supplier<Stream<Task>> candidates;
+
+        QueryPlan(String index, int size, boolean ordered, Supplier<Stream<Task>> candidates) {
+            this.index = index;
+            this.size = size;
+            this.ordered = ordered;
+            this.candidates = candidates;
+        }
+    }
+
+    private List<Task> resolve(Collection<String> taskIds) {
+        TaskSnapshot snapshot = snapshot();
+        List<Task> result = new ArrayList<>(taskIds.size());
+        for (String taskId : taskIds) {
+            Task task = snapshot.getTask(taskId);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes pending mutations, waits for any background compaction and
+     * releases the journal file.
+     */
+    public void close() {
+        flush();
+        writeBehind.stop();
+        awaitCompaction();
+        if (compactor != null) {
+            compactor.shutdown();
+            compactor = null;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing task journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a mutation, or a flush, under the lock that keeps the two apart.
+     * A plain storage has a single writer plus the background flusher, so
+     * one monitor is enough; concurrent storages lock per task instead.
+     */
+    <T> T locked(Supplier<T> body) {
+        synchronized (this) {
+            return body.get();
+        }
+    }
+
+    /**
+     * Publishes a version holding the task and updates the indexes. Every
+     * in-memory change after loading goes through here,
+     * {@link #evict(String)} or {@link #storeAll(Map)}.
+     */
+    private void store(Task task) {
+        publish(task);
+        // Marked after publishing, so a write that drains the mark reads this version or a later one
+        unsynced.add(task.getId());
+        onTaskWritten(task);
+    }
+
+    /**
+     * Publishes every result of a batch as one version, so readers see all
+     * of it or none, then updates the indexes. A null result removes the
+     * task.
+     */
+    private void storeAll(Map<String, Task> results) {
+        current.updateAndGet(snapshot -> snapshot.withAll(results));
+        results.forEach((taskId, task) -> {
+            if (task == null) {
+                indexes.remove(taskId);
+            } else {
+                indexes.update(task);
+            }
+            modifications.incrementAndGet();
+        });
+        unsynced.addAll(results.keySet());
+        results.forEach((taskId, task) -> {
+            if (task == null) {
+                onTaskRemoved(taskId);
+            } else {
+                onTaskWritten(task);
+            }
+        });
+    }
+
+    private void evict(String taskId) {
+        unpublish(taskId);
+        unsynced.add(taskId);
+        onTaskRemoved(taskId);
+    }
+
+    private void publish(Task task) {
+        current.updateAndGet(snapshot -> snapshot.with(task));
+        indexes.update(task);
+        modifications.incrementAndGet();
+    }
+
+    private void unpublish(String taskId) {
+        current.updateAndGet(snapshot -> snapshot.without(taskId));
+        indexes.remove(taskId);
+        modifications.incrementAndGet();
+    }
+
+    // Hooks for subclasses that track which tasks changed since the last save
+    void onTaskWritten(Task task) {
+    }
+
+    void onTaskRemoved(String taskId) {
+    }
+
+    /**
+     * Feeds every task in the snapshot file to the sink, and changes
+     * nothing else.
+     */
+    void readSnapshot(Consumer<Task> sink) throws IOException {
+        Path file = Paths.get(storagePath);
+        if (!Files.exists(file)) {
+            return;
+        }
+        if (binary) {
+            BinaryTaskSnapshot.read(file, sink);
+        } else {
+            readJson(file, sink);
+        }
+    }
+
+    private void persist(String taskId) {
+        if (durability != Durability.SYNC) {
+            deferWrite(taskId);
+        } else {
+            writeChanges(List.of(taskId));
+        }
+    }
 
-        @Override
-        public JsonElement serialize(LocalDateTime src, Type typeOfSrc, JsonSerializationContext context) {
-            return new JsonPrimitive(formatter.format(src));
+    /**
+     * Persists the current state of the given tasks in one go: a journal
+     * append of one record per task, or a full snapshot. Returns whether
+     * it reached disk.
+     */
+    private boolean writeChanges(Collection<String> taskIds) {
+        if (!journaled) {
+            return saveSnapshot();
+        }
+        return appendToJournal(taskIds);
+    }
+
+    /**
+     * Brings memory up to date with the files if they changed since they
+     * were stamped, and reports whether they had. Called with the files
+     * locked.
+     */
+    private boolean catchUp() throws IOException {
+        StoreFileGuard.Change change = behind ? StoreFileGuard.Change.REWRITTEN : files.check();
+        if (change == StoreFileGuard.Change.NONE) {
+            return false;
+        }
+        // Another process may have rotated or removed the log our writer has open
+        journal.close();
+        if (change == StoreFileGuard.Change.APPENDED) {
+            journal.replayFrom(files.logOffset(), this::adopt, this::adoptDeletion);
+            files.stampJournal();
+        } else {
+            reloadAll(this::readSnapshot);
         }
+        return true;
     }
 
-    // Custom deserializer for LocalDateTime
-    private static class LocalDateTimeDeserializer implements JsonDeserializer<LocalDateTime> {
-        @Override
-        public LocalDateTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-                throws JsonParseException {
-            return LocalDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    /**
+     * Called with the files locked before writing to them. Returns false if
+     * the files changed and this storage cannot take in the changes while
+     * writing, in which case they must be merged on disk instead.
+     */
+    private boolean catchUpBeforeWrite() throws IOException {
+        if (catchesUpWhileWriting()) {
+            catchUp();
+        } else if (!behind && files.check() != StoreFileGuard.Change.NONE) {
+            journal.close();
+            behind = true;
         }
+        return !behind;
+    }
+
+    /**
+     * Whether writes may change the in-memory tasks to take in other
+     * processes' changes. Storages whose writers do not exclude each other
+     * leave that to {@link #refresh()} and merge on disk when writing.
+     */
+    boolean catchesUpWhileWriting() {
+        return true;
+    }
+
+    // Called with the files locked
+    private void reloadAll(SnapshotReader reader) throws IOException {
+        Map<String, Task> loaded = mergedWithFiles(unsynced, reader);
+        TaskSnapshot snapshot = current.updateAndGet(version -> version.replacedWith(loaded.values()));
+        indexes.rebuild(snapshot.getAllTasks());
+        modifications.incrementAndGet();
+        journal.close();
+        files.stamp();
+        behind = false;
+    }
+
+    /**
+     * The tasks in the files, with the given tasks as they are in memory
+     * written over them.
+     */
+    private Map<String, Task> mergedWithFiles(Collection<String> ours) {
+        return mergedWithFiles(ours, this::readSnapshot);
+    }
+
+    private Map<String, Task> mergedWithFiles(Collection<String> ours, SnapshotReader reader) {
+        Map<String, Task> merged = new HashMap<>();
+        try {
+            reader.read(task -> merged.put(task.getId(), task));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading tasks: " + e.getMessage());
+        }
+        try {
+            journal.replay(task -> merged.put(task.getId(), task), merged::remove);
+        } catch (IOException e) {
+            System.err.println("Error replaying task journal: " + e.getMessage());
+        }
+        TaskSnapshot snapshot = snapshot();
+        for (String taskId : ours) {
+            Task task = snapshot.getTask(taskId);
+            if (task != null) {
+                merged.put(taskId, task);
+            } else {
+                merged.remove(taskId);
+            }
+        }
+        return merged;
+    }
+
+    // Another process's change, unless this storage has its own change to the task still to write
+    private void adopt(Task task) {
+        if (!unsynced.contains(task.getId())) {
+            publish(task);
+        }
+    }
+
+    private void adoptDeletion(String taskId) {
+        if (!unsynced.contains(taskId)) {
+            unpublish(taskId);
+        }
+    }
+
+    // Called with the files locked
+    private void writeSnapshot() throws IOException {
+        boolean upToDate = catchUpBeforeWrite();
+        Set<String> written = drainUnsynced(unsynced);
+        try {
+            Collection<Task> tasks = upToDate ? snapshot().getAllTasks() : mergedWithFiles(written).values();
+            Map<Path, Long> hashes = writeSnapshotFiles(tasks);
+            journal.reset();
+            if (upToDate) {
+                files.stamp(hashes);
+            }
+        } catch (IOException | RuntimeException e) {
+            unsynced.addAll(written);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the tasks as the store's snapshot and returns the CRC32C of
+     * each file written. Called with the files locked; storages that lay
+     * out their files another way override this.
+     */
+    Map<Path, Long> writeSnapshotFiles(Collection<Task> tasks) throws IOException {
+        Path file = Paths.get(storagePath);
+        return Map.of(file, writeAtomically(file, out -> writeSnapshotTo(out, tasks)));
+    }
+
+    // Unmarks the tasks before their state is read, so a change made meanwhile stays marked
+    private Set<String> drainUnsynced(Collection<String> taskIds) {
+        Set<String> drained = new LinkedHashSet<>();
+        for (String taskId : new ArrayList<>(taskIds)) {
+            if (unsynced.remove(taskId)) {
+                drained.add(taskId);
+            }
+        }
+        return drained;
+    }
+
+    // Batch adds keep the caller's instance unless the storage needs a private copy
+    Task copyForStorage(Task task) {
+        return task;
+    }
+
+    // Published tasks are never edited; changes are made to a copy that replaces them
+    Task copyForChange(Task published) {
+        return new Task(published);
+    }
+
+    private void deferWrite(String taskId) {
+        writeBehind.changed(taskId, durability == Durability.GROUP ? groupCommitWindow.toMillis() : 0);
+    }
+
+    /**
+     * Appends the current state of the tasks to the journal. Appending
+     * merges by itself: replaying the log applies these records after any
+     * that other processes wrote before them. Returns whether the records
+     * were written.
+     */
+    boolean appendToJournal(Collection<String> taskIds) {
+        try {
+            files.locked(() -> {
+                boolean upToDate = catchUpBeforeWrite();
+                Set<String> written = drainUnsynced(taskIds);
+                try {
+                    TaskSnapshot snapshot = snapshot();
+                    Map<String, Task> changes = new LinkedHashMap<>();
+                    for (String taskId : taskIds) {
+                        changes.put(taskId, snapshot.getTask(taskId));
+                    }
+                    journal.appendChanges(changes);
+                } catch (IOException | RuntimeException e) {
+                    unsynced.addAll(written);
+                    throw e;
+                }
+                // A compaction snapshot comes from memory, so it waits until memory has caught up
+                if (upToDate) {
+                    files.stampJournal();
+                    compactIfNeeded();
+                }
+                return null;
+            });
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending to task journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Once the log passes the threshold it is rotated and a snapshot of the
+     * current state is written on a background thread. The snapshot is
+     * serialized here, while the files are locked, so it holds exactly the
+     * state the rotated log led to. The worker takes the lock again and
+     * gives up if another process has rewritten the store in the meantime.
+     */
+    private void compactIfNeeded() {
+        if (journal.size() < compactionThreshold
+                || (pendingCompaction != null && !pendingCompaction.isDone())) {
+            return;
+        }
+        try {
+            journal.rotate();
+            files.stampJournal();
+        } catch (IOException e) {
+            System.err.println("Error rotating task journal: " + e.getMessage());
+            return;
+        }
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try {
+            writeSnapshotTo(snapshot, snapshot().getAllTasks());
+        } catch (IOException e) {
+            System.err.println("Error compacting task journal: " + e.getMessage());
+            return;
+        }
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingCompaction = compactor.submit(() -> {
+            try {
+                files.locked(() -> {
+                    if (files.snapshotUnchanged()) {
+                        long hash = writeAtomically(Paths.get(storagePath), snapshot::writeTo);
+                        journal.deleteRotated();
+                        files.stampSnapshot(hash);
+                    }
+                    return null;
+                });
+            } catch (IOException e) {
+                System.err.println("Error compacting task journal: " + e.getMessage());
+            }
+        });
+    }
+
+    private void awaitCompaction() {
+        if (pendingCompaction == null) {
+            return;
+        }
+        try {
+            pendingCompaction.get();
+        } catch (Exception e) {
+            System.err.println("Error compacting task journal: " + e.getMessage());
+        }
+        pendingCompaction = null;
+    }
+
+    /**
+     * Writes to a sibling file first so a crash never leaves a half-written
+     * snapshot, and returns the CRC32C of what was written.
+     */
+    static long writeAtomically(Path target, SnapshotWriter content) throws IOException {
+        Path temp = Paths.get(target + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream out = new BufferedOutputStream(new CheckedOutputStream(Files.newOutputStream(temp), crc))) {
+            content.writeTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return crc.getValue();
+    }
+
+    private void writeSnapshotTo(OutputStream out, Collection<Task> snapshot) throws IOException {
+        if (binary) {
+            BinaryTaskSnapshot.write(snapshot, out);
+        } else {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            TaskTypeAdapter.SHARED.writeArray(writer, snapshot);
+            writer.flush();
+        }
+    }
+
+    void readJson(Path path, Consumer<Task> sink) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            TaskTypeAdapter.SHARED.readArray(reader, sink);
+        }
+    }
+
+    interface SnapshotWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    interface SnapshotReader {
+        void read(Consumer<Task> sink) throws IOException;
     }
 }
@@ -0,0 +1,195 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Where {@link za.co.wethinkcode.taskmanager.app.TaskManager} keeps its
+ * tasks. {@link TaskStorage} holds every task in memory and persists to a
+ * file; {@link JdbcTaskStore} keeps them in an embedded database and only
+ * loads what a call asks for.
+ *
+ * Tasks returned by a store may be edited and handed back through
+ * {@link #saveTask(Task)}; whether edits are visible before that depends on
+ * the implementation, so use {@link #modifyTask(String, Predicate)} for
+ * read-modify-write changes.
+ */
+public interface TaskStore extends AutoCloseable {
+
+    String addTask(Task task);
+
+    /**
+     * @return the task, or null if there is none with that id
+     */
+    Task getTask(String taskId);
+
+    /**
+     * Applies the non-null fields of {@code updates} as {@link Task#update(Task)} does.
+     *
+     * @return false if there is no such task
+     */
+    boolean updateTask(String taskId, Task updates);
+
+    /**
+     * Stores a task that was changed after being fetched.
+     */
+    void saveTask(Task task);
+
+    /**
+     * Fetches a task, applies the change and stores the result if the
+     * change returns true.
+     *
+     * @return false if there is no such task or the change returned false
+     */
+    boolean modifyTask(String taskId, Predicate<Task> change);
+
+    boolean deleteTask(String taskId);
+
+    /**
+     * Adds every task, replacing any with the same id.
+     *
+     * @return the ids of the added tasks, in order
+     */
+    List<String> addTasks(Collection<Task> tasks);
+
+    /**
+     * @return false, with nothing changed, if any id is unknown
+     */
+    boolean updateTasks(Map<String, Task> updates);
+
+    /**
+     * @return false, with nothing deleted, if any id is unknown
+     */
+    boolean deleteTasks(Collection<String> taskIds);
+
+    /**
+     * Applies the operations in order, all or nothing.
+     *
+     * @return false, with nothing changed, if an operation targets a task
+     *         that will not exist when it runs
+     */
+    boolean applyBatch(TaskBatch batch);
+
+    List<Task> getAllTasks();
+
+    List<Task> getTasksByStatus(TaskStatus status);
+
+    List<Task> getTasksByPriority(TaskPriority priority);
+
+    List<Task> getOverdueTasks();
+
+    List<Task> getTasksDueToday();
+
+    /**
+     * Tasks whose due date falls in [from, to), ordered by due date.
+     */
+    List<Task> getTasksDueBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Tasks carrying every tag in {@code allTags} and, when {@code anyTags}
+     * is not empty, at least one tag from it. Either argument may be null.
+     */
+    List<Task> getTasksByTags(Collection<String> allTags, Collection<String> anyTags);
+
+    /**
+     * Counts by status and priority, the overdue count and the number
+     * completed within {@link TaskStatistics#RECENT_WINDOW}, as of now.
+     */
+    TaskStatistics getStatistics();
+
+    /**
+     * Tasks matching every filter of the query, in its order and up to its limit.
+     */
+    Stream<Task> query(TaskQuery query);
+
+    /**
+     * Up to {@code pageSize} tasks matching the query's filters, in
+     * creation order, after the task the cursor points at.
+     */
+    TaskPage page(TaskQuery query, String after, int pageSize);
+
+    /**
+     * Tasks whose title or description contains every word of the query,
+     * best match first.
+     */
+    List<Task> search(String query, int limit);
+
+    /**
+     * Lets search terms also match inside longer words.
+     */
+    void setSubstringSearch(boolean enabled);
+
+    /**
+     * Writes every task as a JSON array.
+     */
+    boolean exportJson(String path);
+
+    /**
+     * Adds the tasks from a JSON array file, replacing any with the same id.
+     *
+     * @return the number of tasks imported, or -1 if the file could not be read
+     */
+    int importJson(String path);
+
+    /**
+     * Moves every done task completed longer ago than the age out of the
+     * store and appends it to {@link #getArchive()}.
+     *
+     * @return the number of tasks archived, or -1 if the archive could not be written
+     */
+    int archiveCompleted(Duration age);
+
+    /**
+     * Where {@link #archiveCompleted(Duration)} moves tasks, or null for a
+     * store that has no file to keep an archive next to.
+     */
+    TaskArchive getArchive();
+
+    /**
+     * A count that moves on with every change to the store's tasks, once
+     * the change is visible to every query. A result computed after
+     * reading it stays current for as long as it reads the same.
+     */
+    long getModificationCount();
+
+    /**
+     * The clock that time-relative queries such as overdue and due today
+     * are evaluated against.
+     */
+    Clock getClock();
+
+    void setDurability(Durability durability);
+
+    /**
+     * Mutations accepted but not yet durable.
+     */
+    int getPendingMutationCount();
+
+    /**
+     * Blocks until every mutation made so far is durable.
+     *
+     * @return false if they could not be written; they stay pending
+     */
+    boolean flush();
+
+    /**
+     * Picks up changes other processes made to the store since this one
+     * last read or wrote it.
+     *
+     * @return whether there were any
+     */
+    boolean refresh();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,239 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hand-written JSON mapping for {@link Task}.
+ *
+ * Reads and writes fields directly on the token stream instead of going
+ * through reflection and per-timestamp JsonElement trees. The layout matches
+ * what reflective Gson produced (enum names, ISO-8601 timestamps, null fields
+ * omitted), so existing task files load unchanged.
+ */
+public class TaskTypeAdapter extends TypeAdapter<Task> {
+    /**
+     * The adapter holds no state, so the stores share this one. It is only
+     * created when JSON is first read or written, which keeps Gson's classes
+     * out of runs that never touch it.
+     */
+    static final TaskTypeAdapter SHARED = new TaskTypeAdapter();
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    @Override
+    public void write(JsonWriter out, Task task) throws IOException {
+        if (task == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeString(out, "id", task.getId());
+        writeString(out, "title", task.getTitle());
+        writeString(out, "description", task.getDescription());
+        if (task.getPriority() != null) {
+            out.name("priority").value(task.getPriority().name());
+        }
+        if (task.getStatus() != null) {
+            out.name("status").value(task.getStatus().name());
+        }
+        writeDateTime(out, "createdAt", task.getCreatedAt());
+        writeDateTime(out, "updatedAt", task.getUpdatedAt());
+        writeDateTime(out, "dueDate", task.getDueDate());
+        writeDateTime(out, "completedAt", task.getCompletedAt());
+        out.name("tags").beginArray();
+        for (String tag : task.getTagView()) {
+            out.value(tag);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public Task read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        String title = null;
+        String description = null;
+        TaskPriority priority = null;
+        TaskStatus status = null;
+        LocalDateTime createdAt = null;
+        LocalDateTime updatedAt = null;
+        LocalDateTime dueDate = null;
+        LocalDateTime completedAt = null;
+        List<String> tags = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "title":
+                    title = in.nextString();
+                    break;
+                case "description":
+                    description = in.nextString();
+                    break;
+                case "priority":
+                    priority = TaskPriority.valueOf(in.nextString());
+                    break;
+                case "status":
+                    status = TaskStatus.valueOf(in.nextString());
+                    break;
+                case "createdAt":
+                    createdAt = parseDateTime(in.nextString());
+                    break;
+                case "updatedAt":
+                    updatedAt = parseDateTime(in.nextString());
+                    break;
+                case "dueDate":
+                    dueDate = parseDateTime(in.nextString());
+                    break;
+                case "completedAt":
+                    completedAt = parseDateTime(in.nextString());
+                    break;
+                case "tags":
+                    tags = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        tags.add(in.nextString());
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Task(id, title, description, priority, status, createdAt, updatedAt, dueDate, completedAt, tags);
+    }
+
+    /**
+     * Streams a JSON array of tasks, handing each one over as soon as it is
+     * parsed. An empty document counts as an empty array.
+     */
+    public void readArray(Reader source, Consumer<Task> sink) throws IOException {
+        JsonReader in = new JsonReader(source);
+        JsonToken first;
+        try {
+            first = in.peek();
+        } catch (EOFException e) {
+            return;
+        }
+        if (first == JsonToken.NULL) {
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            Task task = read(in);
+            if (task != null) {
+                sink.accept(task);
+            }
+        }
+        in.endArray();
+    }
+
+    /**
+     * Writes the tasks as one compact JSON array.
+     */
+    public void writeArray(Writer target, Iterable<Task> tasks) throws IOException {
+        JsonWriter out = new JsonWriter(target);
+        out.beginArray();
+        for (Task task : tasks) {
+            write(out, task);
+        }
+        out.endArray();
+        out.flush();
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeDateTime(JsonWriter out, String name, LocalDateTime value) throws IOException {
+        if (value != null) {
+            // toString() is ISO-8601 and skips the formatter machinery
+            out.name(name).value(value.toString());
+        }
+    }
+
+    /**
+     * Parses ISO-8601 local date-times, decoding the usual
+     * {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} shape by hand and leaving
+     * anything else to {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}.
+     */
+    static LocalDateTime parseDateTime(String text) {
+        int length = text.length();
+        if (length < 16 || length > 29 || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            return LocalDateTime.parse(text, formatter);
+        }
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            if (text.charAt(16) != ':' || length < 19) {
+                return LocalDateTime.parse(text, formatter);
+            }
+            second = digits(text, 17, 19);
+            if (length > 19) {
+                if (text.charAt(19) != '.' || length == 20) {
+                    return LocalDateTime.parse(text, formatter);
+                }
+                nano = digits(text, 20, length);
+                for (int i = length; i < 29; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return LocalDateTime.parse(text, formatter);
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    // Decimal value of text[from, to), or -1 if it holds a non-digit
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,367 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index over task titles and descriptions.
+ *
+ * Text is lower-cased and split into tokens of letters and digits. Each
+ * token maps to the ids containing it and a weight per id: every
+ * occurrence in the title counts {@link #TITLE_WEIGHT}, every occurrence in
+ * the description counts one.
+ *
+ * With trigrams enabled every three-character window of the text is
+ * indexed as well, so a term can also match inside a longer word: the
+ * trigram postings narrow the candidates and the stored text confirms them.
+ *
+ * Like {@link TaskIndexes}, a concurrent instance may be read while it is
+ * being updated, provided updates for one id are not run in parallel.
+ */
+class TextIndex {
+    static final int TITLE_WEIGHT = 3;
+    private static final int GRAM = 3;
+
+    private final boolean concurrent;
+    private final Map<String, Map<String, Integer>> byToken;
+    private final Map<String, Set<String>> byTrigram;
+    private final Map<String, Document> documents;
+    private volatile boolean trigrams;
+
+    TextIndex(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.byToken = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.byTrigram = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.documents = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    boolean hasTrigrams() {
+        return trigrams;
+    }
+
+    /**
+     * Turns trigram indexing on or off; turning it on indexes every
+     * document already held.
+     */
+    void setTrigrams(boolean enabled) {
+        if (enabled == trigrams) {
+            return;
+        }
+        byTrigram.clear();
+        trigrams = enabled;
+        if (enabled) {
+            documents.forEach((taskId, document) -> document.trigrams().forEach(gram -> addTo(byTrigram, gram, taskId)));
+        }
+    }
+
+    void clear() {
+        byToken.clear();
+        byTrigram.clear();
+        documents.clear();
+    }
+
+    /**
+     * Re-indexes a task whose title or description changed. Only the
+     * tokens and trigrams that differ from the last indexed text are touched.
+     */
+    void update(Task task) {
+        Document previous = documents.get(task.getId());
+        if (previous != null && previous.sameText(task.getTitle(), task.getDescription())) {
+            return;
+        }
+        Document current = new Document(task.getTitle(), task.getDescription());
+        String taskId = task.getId();
+        Map<String, Integer> oldWeights = previous == null ? Collections.emptyMap() : previous.weights();
+        Map<String, Integer> newWeights = current.weights();
+        for (String token : oldWeights.keySet()) {
+            if (!newWeights.containsKey(token)) {
+                removePosting(token, taskId);
+            }
+        }
+        newWeights.forEach((token, weight) -> {
+            if (!weight.equals(oldWeights.get(token))) {
+                byToken.compute(token, (k, posting) -> {
+                    Map<String, Integer> ids = posting != null ? posting : newPosting();
+                    ids.put(taskId, weight);
+                    return ids;
+                });
+            }
+        });
+        if (trigrams) {
+            Set<String> oldGrams = previous == null ? Collections.emptySet() : previous.trigrams();
+            Set<String> newGrams = current.trigrams();
+            for (String gram : oldGrams) {
+                if (!newGrams.contains(gram)) {
+                    removeFrom(byTrigram, gram, taskId);
+                }
+            }
+            for (String gram : newGrams) {
+                if (!oldGrams.contains(gram)) {
+                    addTo(byTrigram, gram, taskId);
+                }
+            }
+        }
+        documents.put(taskId, current);
+    }
+
+    void remove(String taskId) {
+        Document previous = documents.remove(taskId);
+        if (previous == null) {
+            return;
+        }
+        for (String token : previous.weights().keySet()) {
+            removePosting(token, taskId);
+        }
+        if (trigrams) {
+            for (String gram : previous.trigrams()) {
+                removeFrom(byTrigram, gram, taskId);
+            }
+        }
+    }
+
+    /**
+     * Ids of the tasks containing every term of the query, best first.
+     *
+     * A term matches a whole token, or with trigrams enabled any part of
+     * the text. Each matched term scores its weight in the task times its
+     * inverse document frequency, so rare words count for more than common
+     * ones; a match inside a longer word scores as a single description
+     * occurrence. Ties are broken by id.
+     */
+    List<String> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<TermMatch> matches = new ArrayList<>();
+        for (String term : terms) {
+            TermMatch match = match(term);
+            if (match.size() == 0) {
+                return Collections.emptyList();
+            }
+            matches.add(match);
+        }
+        // Walk the rarest term and probe the others
+        matches.sort(Comparator.comparingInt(TermMatch::size));
+        double documentCount = Math.max(documents.size(), 1);
+        double[] idf = new double[matches.size()];
+        for (int i = 0; i < idf.length; i++) {
+            idf[i] = Math.log(1 + documentCount / matches.get(i).size());
+        }
+        Comparator<Map.Entry<String, Double>> order = Map.Entry.<String, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(limit + 1, order.reversed());
+        for (String taskId : matches.get(0).candidates()) {
+            double score = 0;
+            for (int i = 0; i < idf.length && score >= 0; i++) {
+                int weight = matches.get(i).weight(taskId);
+                score = weight == 0 ? -1 : score + weight * idf[i];
+            }
+            if (score < 0) {
+                continue;
+            }
+            // Most candidates of a common word cannot make the top entries; skip them without allocating
+            if (top.size() == limit) {
+                Map.Entry<String, Double> worst = top.peek();
+                if (score < worst.getValue() || (score == worst.getValue() && taskId.compareTo(worst.getKey()) > 0)) {
+                    continue;
+                }
+            }
+            top.add(Map.entry(taskId, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(order);
+        List<String> taskIds = new ArrayList<>(ranked.size());
+        ranked.forEach(entry -> taskIds.add(entry.getKey()));
+        return taskIds;
+    }
+
+    /**
+     * A superset of the ids whose title or description contains the text,
+     * taken from the rarest of its trigrams, or null when no trigram index
+     * can narrow it (trigrams disabled, or text shorter than a trigram).
+     */
+    Set<String> substringCandidates(String text) {
+        if (!trigrams || text == null || text.length() < GRAM) {
+            return null;
+        }
+        Set<String> rarest = null;
+        for (String gram : trigramsOf(text)) {
+            Set<String> ids = byTrigram.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (rarest == null || ids.size() < rarest.size()) {
+                rarest = ids;
+            }
+        }
+        return Collections.unmodifiableSet(rarest);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Each token of the text with its weight: {@link #TITLE_WEIGHT} per
+     * occurrence in the title plus one per occurrence in the description.
+     */
+    static Map<String, Integer> weigh(String title, String description) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String token : tokenize(title)) {
+            weights.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(description)) {
+            weights.merge(token, 1, Integer::sum);
+        }
+        return weights;
+    }
+
+    private TermMatch match(String term) {
+        Map<String, Integer> exact = byToken.getOrDefault(term, Collections.emptyMap());
+        Set<String> partial = substringCandidates(term);
+        if (partial == null || partial.isEmpty()) {
+            return new TermMatch(exact, Collections.emptySet(), term);
+        }
+        return new TermMatch(exact, partial, term);
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private Map<String, Integer> newPosting() {
+        return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    private void removePosting(String token, String taskId) {
+        byToken.computeIfPresent(token, (k, posting) -> {
+            posting.remove(taskId);
+            return posting.isEmpty() ? null : posting;
+        });
+    }
+
+    private void addTo(Map<String, Set<String>> index, String key, String taskId) {
+        index.compute(key, (k, bucket) -> {
+            Set<String> ids = bucket != null ? bucket : (concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>());
+            ids.add(taskId);
+            return ids;
+        });
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String taskId) {
+        index.computeIfPresent(key, (k, bucket) -> bucket.remove(taskId) && bucket.isEmpty() ? null : bucket);
+    }
+
+    /**
+     * The tasks one search term matches: whole-token hits with their
+     * weights, plus trigram candidates that still have to be confirmed
+     * against the stored text.
+     */
+    private class TermMatch {
+        private final Map<String, Integer> exact;
+        private final Set<String> partial;
+        private final String term;
+
+        TermMatch(Map<String, Integer> exact, Set<String> partial, String term) {
+            this.exact = exact;
+            this.partial = partial;
+            this.term = term;
+        }
+
+        int size() {
+            return Math.max(exact.size(), partial.size());
+        }
+
+        Iterable<String> candidates() {
+            if (partial.isEmpty()) {
+                return exact.keySet();
+            }
+            // Trigram candidates include every whole-token hit of a term that long
+            return partial;
+        }
+
+        int weight(String taskId) {
+            Integer weight = exact.get(taskId);
+            if (weight != null) {
+                return weight;
+            }
+            if (!partial.contains(taskId)) {
+                return 0;
+            }
+            Document document = documents.get(taskId);
+            return document != null && document.contains(term) ? 1 : 0;
+        }
+    }
+
+    // The text a task was last indexed under. Its token weights are worked
+    // out again when it is replaced rather than kept in a map per task.
+    private static class Document {
+        private final String title;
+        private final String description;
+
+        Document(String title, String description) {
+            this.title = title;
+            this.description = description;
+        }
+
+        Map<String, Integer> weights() {
+            return weigh(title, description);
+        }
+
+        boolean sameText(String title, String description) {
+            return Objects.equals(this.title, title) && Objects.equals(this.description, description);
+        }
+
+        boolean contains(String term) {
+            return (title != null && title.toLowerCase(Locale.ROOT).contains(term))
+                    || (description != null && description.toLowerCase(Locale.ROOT).contains(term));
+        }
+
+        Set<String> trigrams() {
+            Set<String> grams = new HashSet<>();
+            if (title != null) {
+                grams.addAll(trigramsOf(title.toLowerCase(Locale.ROOT)));
+            }
+            if (description != null) {
+                grams.addAll(trigramsOf(description.toLowerCase(Locale.ROOT)));
+            }
+            return grams;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the mutations a {@link TaskStorage} has not yet written in the
+ * group and async durability modes, and schedules the flush that writes
+ * them on a background thread.
+ *
+ * At most one flush is queued at a time; mutations arriving before it
+ * starts join it, and those arriving while it runs queue the next one.
+ * A flush that fails leaves its mutations queued and tries again shortly.
+ * A shutdown hook flushes whatever is left when the JVM exits.
+ */
+class WriteBehindQueue {
+    // How long after a failed write the background thread tries again
+    static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Runnable flush;
+    private final Set<String> pendingIds = new LinkedHashSet<>();
+    private int pendingMutations;
+    private int flushingMutations;
+    private boolean flushQueued;
+    private ScheduledExecutorService executor;
+    private Thread shutdownHook;
+
+    WriteBehindQueue(Runnable flush) {
+        this.flush = flush;
+    }
+
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-storage-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        shutdownHook = new Thread(flush, "task-storage-shutdown-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stops the background thread; callers flush first.
+     */
+    synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        executor = null;
+        flushQueued = false;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook is running or has run
+        }
+        shutdownHook = null;
+    }
+
+    /**
+     * Records a change to one task and makes sure a flush will run no
+     * later than {@code delayMillis} from now.
+     */
+    synchronized void changed(String taskId, long delayMillis) {
+        pendingIds.add(taskId);
+        pendingMutations++;
+        if (!flushQueued && executor != null) {
+            flushQueued = true;
+            executor.schedule(this::runFlush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands the changed task ids to a flush that is about to write them.
+     */
+    synchronized Set<String> drain() {
+        Set<String> taskIds = new LinkedHashSet<>(pendingIds);
+        pendingIds.clear();
+        flushingMutations += pendingMutations;
+        pendingMutations = 0;
+        flushQueued = false;
+        return taskIds;
+    }
+
+    /**
+     * Ends the flush that drained the queue. Ids it could not write are
+     * queued again along with the mutations they stand for, and retried.
+     */
+    synchronized void flushed(Set<String> failedIds) {
+        if (!failedIds.isEmpty()) {
+            pendingIds.addAll(failedIds);
+            pendingMutations += flushingMutations;
+            if (!flushQueued && executor != null) {
+                flushQueued = true;
+                executor.schedule(this::runFlush, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        flushingMutations = 0;
+    }
+
+    /**
+     * Mutations not yet written, counting those in a flush still running.
+     */
+    synchronized int pendingCount() {
+        return pendingMutations + flushingMutations;
+    }
+
+    private void runFlush() {
+        try {
+            flush.run();
+        } catch (RuntimeException e) {
+            System.err.println("Error flushing tasks: " + e.getMessage());
+        }
+    }
+}
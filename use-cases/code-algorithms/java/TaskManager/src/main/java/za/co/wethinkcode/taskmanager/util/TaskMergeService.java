@@ -1,7 +1,10 @@
 package za.co.wethinkcode.taskmanager.util;
 
+import za.co.wethinkcode.taskmanager.model.TagList;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.TaskChanges;
+import za.co.wethinkcode.taskmanager.storage.TaskSnapshot;
 
 import java.util.*;
 
@@ -66,6 +69,108 @@ public class TaskMergeService {
         );
     }
 
+    /**
+     * Merge only what changed on either side since the last sync, rather
+     * than both full task lists. Both sides must have been in step at that
+     * sync, so a task changed on one side only is simply copied across,
+     * and only tasks changed on both go through conflict resolution.
+     *
+     * Unlike a full merge, deletions are known here and propagate. A task
+     * deleted on one side but edited on the other is kept, as a full merge
+     * would keep it.
+     *
+     * @param localTasks the local tasks now
+     * @param localChanges what changed locally since the sync, from
+     *                     {@link za.co.wethinkcode.taskmanager.storage.TaskStorage#changesSince(long)};
+     *                     it must be complete
+     * @param remoteChanges the remote tasks changed since the sync
+     *                      {task_id: task}, with null for each one deleted
+     * @return MergeResult with the merged state of every task that changed
+     */
+    public MergeResult mergeChanges(TaskSnapshot localTasks, TaskChanges localChanges,
+                                    Map<String, Task> remoteChanges) {
+        if (!localChanges.isComplete()) {
+            throw new IllegalArgumentException("Local changes are incomplete; merge the full task lists instead");
+        }
+        Map<String, Task> mergedTasks = new HashMap<>();
+        Map<String, Task> toCreateRemote = new HashMap<>();
+        Map<String, Task> toUpdateRemote = new HashMap<>();
+        Map<String, Task> toCreateLocal = new HashMap<>();
+        Map<String, Task> toUpdateLocal = new HashMap<>();
+        Set<String> toDeleteRemote = new HashSet<>();
+        Set<String> toDeleteLocal = new HashSet<>();
+
+        Set<String> changedLocally = new HashSet<>(localChanges.getCreated());
+        changedLocally.addAll(localChanges.getUpdated());
+
+        for (String taskId : changedLocally) {
+            Task localTask = localTasks.getTask(taskId);
+            if (!remoteChanges.containsKey(taskId)) {
+                // Remote is as it was at the sync, so the local change stands
+                mergedTasks.put(taskId, localTask);
+                if (localChanges.getCreated().contains(taskId)) {
+                    toCreateRemote.put(taskId, localTask);
+                } else {
+                    toUpdateRemote.put(taskId, localTask);
+                }
+                continue;
+            }
+            Task remoteTask = remoteChanges.get(taskId);
+            if (remoteTask == null) {
+                // Deleted remotely but edited here: the edit brings it back
+                mergedTasks.put(taskId, localTask);
+                toCreateRemote.put(taskId, localTask);
+                continue;
+            }
+            ConflictResolution resolution = resolveTaskConflict(localTask, remoteTask);
+            Task mergedTask = resolution.getMergedTask();
+            mergedTasks.put(taskId, mergedTask);
+            if (resolution.isShouldUpdateLocal()) {
+                toUpdateLocal.put(taskId, mergedTask);
+            }
+            if (resolution.isShouldUpdateRemote()) {
+                toUpdateRemote.put(taskId, mergedTask);
+            }
+        }
+
+        for (Map.Entry<String, Task> change : remoteChanges.entrySet()) {
+            String taskId = change.getKey();
+            Task remoteTask = change.getValue();
+            if (changedLocally.contains(taskId)) {
+                continue;
+            }
+            boolean deletedLocally = localChanges.getDeleted().contains(taskId);
+            if (remoteTask == null) {
+                if (!deletedLocally && localTasks.getTask(taskId) != null) {
+                    toDeleteLocal.add(taskId);
+                }
+            } else if (deletedLocally || localTasks.getTask(taskId) == null) {
+                // Deleted here but edited remotely: the edit brings it back
+                mergedTasks.put(taskId, remoteTask);
+                toCreateLocal.put(taskId, remoteTask);
+            } else {
+                mergedTasks.put(taskId, remoteTask);
+                toUpdateLocal.put(taskId, remoteTask);
+            }
+        }
+
+        for (String taskId : localChanges.getDeleted()) {
+            if (!remoteChanges.containsKey(taskId)) {
+                toDeleteRemote.add(taskId);
+            }
+        }
+
+        return new MergeResult(
+                mergedTasks,
+                toCreateRemote,
+                toUpdateRemote,
+                toCreateLocal,
+                toUpdateLocal,
+                toDeleteRemote,
+                toDeleteLocal
+        );
+    }
+
     /**
      * Resolve conflicts between two versions of the same task.
      */
@@ -109,16 +214,15 @@ public class TaskMergeService {
             }
         }
 
-        // Merge tags from both sources (union)
-        Set<String> allTags = new HashSet<>(localTask.getTags());
-        allTags.addAll(remoteTask.getTags());
-        mergedTask.setTags(new ArrayList<>(allTags));
+        // Merge tags from both sources (union, local tags first)
+        TagList allTags = localTask.getTagView().union(remoteTask.getTagView());
+        mergedTask.setTags(allTags);
 
         // If tags changed in either source, update both
-        if (!new HashSet<>(mergedTask.getTags()).equals(new HashSet<>(localTask.getTags()))) {
+        if (!allTags.sameTagsAs(localTask.getTagView())) {
             shouldUpdateLocal = true;
         }
-        if (!new HashSet<>(mergedTask.getTags()).equals(new HashSet<>(remoteTask.getTags()))) {
+        if (!allTags.sameTagsAs(remoteTask.getTagView())) {
             shouldUpdateRemote = true;
         }
 
@@ -141,7 +245,7 @@ public class TaskMergeService {
         copy.setUpdatedAt(original.getUpdatedAt());
         copy.setDueDate(original.getDueDate());
         copy.setCompletedAt(original.getCompletedAt());
-        copy.setTags(new ArrayList<>(original.getTags()));
+        copy.setTags(original.getTagView());
         return copy;
     }
 
@@ -177,6 +281,8 @@ public class TaskMergeService {
         private final Map<String, Task> toUpdateRemote;
         private final Map<String, Task> toCreateLocal;
         private final Map<String, Task> toUpdateLocal;
+        private final Set<String> toDeleteRemote;
+        private final Set<String> toDeleteLocal;
 
         public MergeResult(
                 Map<String, Task> mergedTasks,
@@ -184,12 +290,27 @@ public class TaskMergeService {
                 Map<String, Task> toUpdateRemote,
                 Map<String, Task> toCreateLocal,
                 Map<String, Task> toUpdateLocal
+        ) {
+            this(mergedTasks, toCreateRemote, toUpdateRemote, toCreateLocal, toUpdateLocal,
+                    Collections.emptySet(), Collections.emptySet());
+        }
+
+        public MergeResult(
+                Map<String, Task> mergedTasks,
+                Map<String, Task> toCreateRemote,
+                Map<String, Task> toUpdateRemote,
+                Map<String, Task> toCreateLocal,
+                Map<String, Task> toUpdateLocal,
+                Set<String> toDeleteRemote,
+                Set<String> toDeleteLocal
         ) {
             this.mergedTasks = mergedTasks;
             this.toCreateRemote = toCreateRemote;
             this.toUpdateRemote = toUpdateRemote;
             this.toCreateLocal = toCreateLocal;
             this.toUpdateLocal = toUpdateLocal;
+            this.toDeleteRemote = toDeleteRemote;
+            this.toDeleteLocal = toDeleteLocal;
         }
 
         // Getters
@@ -212,5 +333,13 @@ public class TaskMergeService {
         public Map<String, Task> getToUpdateLocal() {
             return toUpdateLocal;
         }
+
+        public Set<String> getToDeleteRemote() {
+            return toDeleteRemote;
+        }
+
+        public Set<String> getToDeleteLocal() {
+            return toDeleteLocal;
+        }
     }
 }
\ No newline at end of file
@@ -1,42 +1,77 @@
 package za.co.wethinkcode.taskmanager.util;
 
+import za.co.wethinkcode.taskmanager.model.EpochTime;
+import za.co.wethinkcode.taskmanager.model.TagDictionary;
+import za.co.wethinkcode.taskmanager.model.TagList;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskPriority;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.ColumnarTasks;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class TaskPriorityManager {
+    private static final List<String> BOOST_TAGS = List.of("blocker", "critical", "urgent");
+    // Dictionary ids of the boost tags, so scoring a task allocates nothing
+    private static final int[] BOOST_TAG_IDS = BOOST_TAGS.stream().mapToInt(TagDictionary::idOf).toArray();
+    // Base priority weights
+    private static final Map<TaskPriority, Integer> PRIORITY_WEIGHTS = Map.of(
+        TaskPriority.LOW,
+        1,
+        TaskPriority.MEDIUM,
+        2,
+        TaskPriority.HIGH,
+        3,
+        TaskPriority.URGENT,
+        4
+    );
+    // The same weights indexed by priority ordinal, for scoring columns
+    private static final int[] WEIGHTS_BY_ORDINAL = Arrays.stream(TaskPriority.values())
+        .mapToInt(priority -> PRIORITY_WEIGHTS.getOrDefault(priority, 0))
+        .toArray();
+    private static final int NO_STATUS = -1;
+    private static final int DONE = TaskStatus.DONE.ordinal();
+    private static final int REVIEW = TaskStatus.REVIEW.ordinal();
+    private static final long SECONDS_PER_DAY = 86_400;
 
     /**
      * Calculate a priority score for a task based on multiple factors.
      */
     public static int calculateTaskScore(Task task) {
-        // Base priority weights
-        Map<TaskPriority, Integer> priorityWeights = Map.of(
-            TaskPriority.LOW,
-            1,
-            TaskPriority.MEDIUM,
-            2,
-            TaskPriority.HIGH,
-            3,
-            TaskPriority.URGENT,
-            4
+        LocalDateTime now = LocalDateTime.now();
+        TaskStatus status = task.getStatus();
+        return score(
+            PRIORITY_WEIGHTS.getOrDefault(task.getPriority(), 0),
+            task.hasDueDate(),
+            task.hasDueDate() ? task.daysUntilDue(now) : 0,
+            status == null ? NO_STATUS : status.ordinal(),
+            isBoosted(task.getTagView()),
+            task.daysSinceUpdate(now)
         );
+    }
+
+    private static boolean isBoosted(TagList tags) {
+        for (int boostTag : BOOST_TAG_IDS) {
+            if (tags.containsId(boostTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * The scoring rules, on values either a task or a row of columns can
+     * supply without building anything.
+     */
+    private static int score(int priorityWeight, boolean hasDueDate, long daysUntilDue, int status,
+                             boolean boosted, long daysSinceUpdate) {
         // Calculate base score from priority
-        int score = priorityWeights.getOrDefault(task.getPriority(), 0) * 10;
+        int score = priorityWeight * 10;
 
         // Add due date factor (higher score for tasks due sooner)
-        if (task.getDueDate() != null) {
-            long daysUntilDue = ChronoUnit.DAYS.between(
-                LocalDateTime.now(),
-                task.getDueDate()
-            );
-
+        if (hasDueDate) {
             if (daysUntilDue < 0) { // Overdue tasks
                 score += 30;
             } else if (daysUntilDue == 0) { // Due today
@@ -49,29 +84,18 @@ public class TaskPriorityManager {
         }
 
         // Reduce score for tasks that are completed or in review
-        if (task.getStatus() == TaskStatus.DONE) {
+        if (status == DONE) {
             score -= 50;
-        } else if (task.getStatus() == TaskStatus.REVIEW) {
+        } else if (status == REVIEW) {
             score -= 15;
         }
 
         // Boost score for tasks with certain tags
-        if (
-            task
-                .getTags()
-                .stream()
-                .anyMatch(tag ->
-                    List.of("blocker", "critical", "urgent").contains(tag)
-                )
-        ) {
+        if (boosted) {
             score += 8;
         }
 
         // Boost score for recently updated tasks
-        long daysSinceUpdate = ChronoUnit.DAYS.between(
-            task.getUpdatedAt(),
-            LocalDateTime.now()
-        );
         if (daysSinceUpdate < 1) {
             score += 5;
         }
@@ -102,4 +126,48 @@ public class TaskPriorityManager {
             .limit(limit)
             .collect(Collectors.toList());
     }
+
+    /**
+     * {@link #calculateTaskScore(Task)} for every row of the columns in one
+     * loop, as of {@code now} and to the second.
+     */
+    public static int[] calculateTaskScores(ColumnarTasks tasks, LocalDateTime now) {
+        long nowSecond = EpochTime.secondOf(now);
+        int[] scores = new int[tasks.size()];
+        for (int row = 0; row < scores.length; row++) {
+            byte priority = tasks.priority(row);
+            long due = tasks.dueDate(row);
+            long updated = tasks.updatedAt(row);
+            // Whole days, truncated toward zero like ChronoUnit.DAYS.between; a task never updated is not recent
+            scores[row] = score(
+                priority == ColumnarTasks.NO_ORDINAL ? 0 : WEIGHTS_BY_ORDINAL[priority],
+                due != ColumnarTasks.NO_TIME,
+                (due - nowSecond) / SECONDS_PER_DAY,
+                tasks.status(row),
+                tasks.hasAnyTag(row, BOOST_TAG_IDS),
+                updated == ColumnarTasks.NO_TIME ? Long.MAX_VALUE : (nowSecond - updated) / SECONDS_PER_DAY
+            );
+        }
+        return scores;
+    }
+
+    /**
+     * Ids of the {@code limit} highest scoring rows, best first; equal
+     * scores keep row order.
+     */
+    public static List<String> getTopPriorityTaskIds(ColumnarTasks tasks, int limit, LocalDateTime now) {
+        int[] scores = calculateTaskScores(tasks, now);
+        Comparator<Integer> best = Comparator.<Integer>comparingInt(row -> scores[row]).reversed()
+                .thenComparingInt(row -> row);
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(limit, 1) + 1, best.reversed());
+        for (int row = 0; row < scores.length && limit > 0; row++) {
+            top.add(row);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Integer> rows = new ArrayList<>(top);
+        rows.sort(best);
+        return rows.stream().map(tasks::id).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,77 @@
+package za.co.wethinkcode.taskmanager.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+
+    private long millis = 1_000_000;
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    };
+    private final QueryCache cache = new QueryCache(() -> clock);
+
+    @Test
+    void get_shouldRecomputeOnlyWhenTheCountMovesOrTheBucketIsLeft() {
+        AtomicInteger computed = new AtomicInteger();
+        List<?> key = List.of("list", 1);
+
+        assertEquals(1, cache.get(key, 5, false, computed::incrementAndGet));
+        assertEquals(1, cache.get(key, 5, false, computed::incrementAndGet));
+        assertEquals(2, cache.get(key, 6, false, computed::incrementAndGet));
+        assertEquals(3, cache.get(List.of("list", 2), 6, false, computed::incrementAndGet));
+        millis += Duration.ofDays(1).toMillis();
+        assertEquals(2, cache.get(key, 6, false, computed::incrementAndGet));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        cache.setTimeBucket(Duration.ofSeconds(10));
+        assertEquals(4, cache.get(List.of("stats"), 6, true, computed::incrementAndGet));
+        millis += 9_000;
+        assertEquals(4, cache.get(List.of("stats"), 6, true, computed::incrementAndGet));
+        millis += 1_000;
+        assertEquals(5, cache.get(List.of("stats"), 6, true, computed::incrementAndGet));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.setTimeBucket(Duration.ZERO));
+    }
+
+    @Test
+    void get_shouldKeepOnlyTheMostRecentlyUsedResults() {
+        AtomicInteger computed = new AtomicInteger();
+        cache.get(List.of(0), 1, false, computed::incrementAndGet);
+        for (int i = 1; i <= QueryCache.DEFAULT_CAPACITY; i++) {
+            // Using the first key keeps it while the others push older ones out
+            cache.get(List.of(0), 1, false, computed::incrementAndGet);
+            cache.get(List.of(i), 1, false, computed::incrementAndGet);
+        }
+
+        assertEquals(1, cache.get(List.of(0), 1, false, computed::incrementAndGet));
+        int before = computed.get();
+        cache.get(List.of(1), 1, false, computed::incrementAndGet);
+        assertEquals(before + 1, computed.get());
+    }
+}
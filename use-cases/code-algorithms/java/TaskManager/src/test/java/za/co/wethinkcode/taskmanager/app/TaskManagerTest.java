@@ -1,10 +1,14 @@
 package za.co.wethinkcode.taskmanager.app;
 
 import java.io.File;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +34,7 @@ public class TaskManagerTest {
                     System.err.println("Failed to delete the test storage file.");
                 }
             }
+            new File(test_storage_file + ".lock").delete();
         } catch (Exception e) {
             System.err.println("Failed to delete the test storage file: "+e.getMessage());
         }
@@ -356,8 +361,9 @@ public class TaskManagerTest {
             }
         };
 
-        List<Task> overdueTasks = mock(List.class);
+        List<Task> overdueTasks = List.of(new Task("Overdue"));
         when(mockStorage.getOverdueTasks()).thenReturn(overdueTasks);
+        when(mockStorage.getClock()).thenReturn(Clock.systemUTC());
 
         // Act
         List<Task> result = taskManager.listTasks(null, null, true);
@@ -368,21 +374,29 @@ public class TaskManagerTest {
     }
 
     /**
-     * Tests that listTasks returns overdue tasks when showOverdue is true,
-     * regardless of other filter parameters.
+     * Tests that listTasks combines showOverdue with the other filters
+     * instead of honouring only the first one given.
      */
     @Test
-    public void test_listTasks_showOverdue_ignores_other_filters() {
+    public void test_listTasks_showOverdue_combines_with_other_filters() {
         TaskManager taskManager = new TaskManager(test_storage_file);
+        String match = taskManager.createTask("Match", "", 1, "2020-01-01", null);
+        String wrongPriority = taskManager.createTask("Wrong priority", "", 3, "2020-01-01", null);
+        String notOverdue = taskManager.createTask("Not overdue", "", 1, "2999-01-01", null);
+        taskManager.createTask("Wrong status", "", 1, "2020-01-01", null);
+        for (String id : List.of(match, wrongPriority, notOverdue)) {
+            taskManager.updateTaskStatus(id, "in_progress");
+        }
+
         List<Task> result = taskManager.listTasks("IN_PROGRESS", 1, true);
 
-        // Assert that the result is not null
         assertNotNull(result);
-
-        // Verify that the result contains only overdue tasks
-        // This assumes that getOverdueTasks() is implemented correctly in TaskStorage
+        assertEquals(1, result.size());
+        assertEquals(match, result.get(0).getId());
         for (Task task : result) {
             assertTrue(task.isOverdue());
+            assertEquals(TaskStatus.IN_PROGRESS, task.getStatus());
+            assertEquals(TaskPriority.LOW, task.getPriority());
         }
     }
 
@@ -487,6 +501,9 @@ public class TaskManagerTest {
         Task mockTask = new Task("Test Task");
         mockTask.addTag(tag);
         when(mockStorage.getTask(taskId)).thenReturn(mockTask);
+        // Stands in for the storage's read-modify-write, which needs a real store behind it
+        when(mockStorage.modifyTask(eq(taskId), any())).thenAnswer(invocation ->
+                invocation.<Predicate<Task>>getArgument(1).test(mockTask));
         doNothing().when(mockStorage).save();
 
         boolean result = taskManager.removeTagFromTask(taskId, tag);
@@ -671,5 +688,79 @@ public class TaskManagerTest {
         assertEquals(TaskStatus.IN_PROGRESS, mockStorage.getTask(taskId).getStatus());
     }
 
+    /**
+     * Tests that the bulk operations change every listed task, and change
+     * nothing when one of the ids does not exist.
+     */
+    @Test
+    public void test_bulkOperations_applyToAllListedTasksOrNone() {
+        TaskManager taskManager = new TaskManager(test_storage_file);
+        String first = taskManager.createTask("First", "", 1, null, null);
+        String second = taskManager.createTask("Second", "", 1, null, null);
+        List<String> ids = List.of(first, second);
+
+        assertTrue(taskManager.updateTasksStatus(ids, "done"));
+        assertTrue(taskManager.updateTasksPriority(ids, 4));
+        assertTrue(taskManager.addTagToTasks(ids, "bulk"));
+        assertFalse(taskManager.addTagToTasks(List.of(first, "missing"), "partial"));
+
+        for (String id : ids) {
+            Task task = new TaskManager(test_storage_file).getTaskDetails(id);
+            assertEquals(TaskStatus.DONE, task.getStatus());
+            assertNotNull(task.getCompletedAt());
+            assertEquals(TaskPriority.URGENT, task.getPriority());
+            assertTrue(task.getTags().contains("bulk"));
+            assertFalse(task.getTags().contains("partial"));
+        }
+
+        assertTrue(taskManager.deleteTasks(ids));
+        assertTrue(taskManager.listTasks(null, null, false).isEmpty());
+    }
 
+    /**
+     * Tests that repeated list and stats calls are answered from the cache
+     * until a mutation moves the store on.
+     */
+    @Test
+    public void test_listTasksAndStatistics_areCachedUntilTheStoreChanges() {
+        TaskManager taskManager = new TaskManager(test_storage_file);
+        taskManager.createTask("First", "", 1, null, null);
+
+        List<Task> first = taskManager.listTasks(null, 1, false);
+        assertSame(first, taskManager.listTasks(null, 1, false));
+        assertEquals(1, taskManager.getStatistics().get("total"));
+        assertEquals(1, taskManager.getStatistics().get("total"));
+        assertEquals(2, taskManager.getCacheHitCount());
+        assertEquals(2, taskManager.getCacheMissCount());
+
+        taskManager.createTask("Second", "", 1, null, null);
+        assertEquals(2, taskManager.listTasks(null, 1, false).size());
+        assertEquals(2, taskManager.getStatistics().get("total"));
+        assertEquals(4, taskManager.getCacheMissCount());
+    }
+
+    /**
+     * Tests that cached lists are keyed by copies of the tag lists, cannot
+     * be modified, and go stale on the store's clock rather than the wall
+     * clock.
+     */
+    @Test
+    public void test_listTasks_cacheIsKeyedOnCopiesAndFollowsTheStoreClock() {
+        TaskStorage storage = new TaskStorage(test_storage_file);
+        TaskManager taskManager = new TaskManager(storage);
+        taskManager.createTask("Tagged", "", 1, "2025-06-01", List.of("home"));
+
+        List<String> tags = new ArrayList<>(List.of("home"));
+        List<Task> tagged = taskManager.listTasks(null, null, false, tags, null);
+        tags.set(0, "work");
+        assertTrue(taskManager.listTasks(null, null, false, tags, null).isEmpty());
+        assertEquals(1, taskManager.listTasks(null, null, false, List.of("home"), null).size());
+        assertThrows(UnsupportedOperationException.class, () -> tagged.add(new Task("Sneaked in")));
+
+        storage.setClock(Clock.fixed(Instant.parse("2025-05-31T12:00:00Z"), ZoneOffset.UTC));
+        assertTrue(taskManager.listTasks(null, null, true).isEmpty());
+        storage.setClock(Clock.fixed(Instant.parse("2025-06-02T12:00:00Z"), ZoneOffset.UTC));
+        assertEquals(1, taskManager.listTasks(null, null, true).size());
+        storage.close();
+    }
 }
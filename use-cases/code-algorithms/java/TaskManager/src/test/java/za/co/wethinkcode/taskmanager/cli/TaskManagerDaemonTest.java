@@ -0,0 +1,145 @@
+package za.co.wethinkcode.taskmanager.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskManagerDaemonTest {
+    private Path directory;
+    private Path socket;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("task-daemon");
+        socket = TaskManagerDaemon.socketFor(directory.resolve("tasks.json").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(socket);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void forward_shouldRunTheCommandInTheDaemonAndPrintItsOutput() throws Exception {
+        List<String> ran = new ArrayList<>();
+        TaskManagerDaemon daemon = new TaskManagerDaemon(socket, "", (command, args) -> {
+            ran.add(command + " " + String.join(" ", args));
+            if (command.equals("fail")) {
+                throw new IllegalArgumentException("Invalid priority value: 9");
+            }
+            System.out.println("Created task «" + args[0] + "»");
+            System.err.println("a warning");
+        });
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+            int status = DaemonClient.forward(socket, "", new String[]{"create", "Fix café menu", ""},
+                    print(out), print(err));
+
+            assertEquals(TaskManagerDaemon.OK, status);
+            assertEquals("Created task «Fix café menu»" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+            assertEquals("a warning" + System.lineSeparator(), err.toString(StandardCharsets.UTF_8));
+
+            err.reset();
+            assertEquals(TaskManagerDaemon.FAILED, DaemonClient.forward(socket, "", new String[]{"fail"}, print(out), print(err)));
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("Invalid priority value: 9"));
+            assertEquals(List.of("create Fix café menu ", "fail "), ran);
+            assertThrows(IOException.class, () -> new TaskManagerDaemon(socket, "", (command, args) -> { }));
+        } finally {
+            daemon.close();
+            server.join(5000);
+        }
+
+        assertFalse(server.isAlive());
+        assertFalse(Files.exists(socket));
+        assertEquals(DaemonClient.NO_DAEMON, DaemonClient.forward(socket, "", new String[]{"list"}, System.out, System.err));
+    }
+
+    @Test
+    void daemon_shouldRefuseCommandsSentWithOtherStoreOptions() throws Exception {
+        List<String> ran = new ArrayList<>();
+        TaskManagerDaemon daemon = new TaskManagerDaemon(socket, "", (command, args) -> ran.add(command));
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        try {
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(TaskManagerDaemon.FAILED, DaemonClient.forward(socket, "--journal",
+                    new String[]{"create", "Journaled"}, System.out, print(err)));
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("not \"--journal\""));
+
+            assertEquals(TaskManagerDaemon.OK, DaemonClient.forward(socket, "", new String[]{"list"}, System.out, System.err));
+            assertEquals(List.of("list"), ran);
+        } finally {
+            daemon.close();
+            server.join(5000);
+        }
+    }
+
+    @Test
+    void daemon_shouldReplaceASocketLeftBehindByOneThatDied() throws Exception {
+        Files.createFile(socket);
+        assertFalse(DaemonClient.isRunning(socket));
+        assertEquals(DaemonClient.NO_DAEMON, DaemonClient.forward(socket, "", new String[]{"list"}, System.out, System.err));
+
+        TaskManagerDaemon daemon = new TaskManagerDaemon(socket, "", (command, args) -> { });
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        try {
+            assertTrue(DaemonClient.isRunning(socket));
+        } finally {
+            daemon.close();
+            server.join(5000);
+        }
+        assertFalse(server.isAlive());
+    }
+
+    @Test
+    void daemon_shouldKeepServingPastStalledAndMalformedClients() throws Exception {
+        TaskManagerDaemon daemon = new TaskManagerDaemon(socket, "", (command, args) -> System.out.println("ran " + command));
+        Thread server = new Thread(daemon::serve);
+        server.start();
+        try (SocketChannel stalled = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            assertTrue(stalled.isConnected());
+            for (int[] header : new int[][]{{Integer.MAX_VALUE}, {1, Integer.MAX_VALUE}, {1, -1}}) {
+                try (SocketChannel malformed = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                    DataOutputStream request = new DataOutputStream(Channels.newOutputStream(malformed));
+                    for (int value : header) {
+                        request.writeInt(value);
+                    }
+                    // The daemon drops the connection instead of allocating for the request
+                    assertEquals(-1, Channels.newInputStream(malformed).read());
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(TaskManagerDaemon.OK, DaemonClient.forward(socket, "", new String[]{"list"}, print(out), System.err));
+            assertEquals("ran list" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+        } finally {
+            daemon.close();
+            server.join(5000);
+        }
+    }
+
+    private static PrintStream print(ByteArrayOutputStream buffer) {
+        return new PrintStream(buffer, true, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package za.co.wethinkcode.taskmanager.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagListTest {
+
+    @Test
+    void tags_shouldKeepTheirOrderAndShareOneNamePerTag() {
+        Task first = new Task("First", "", TaskPriority.LOW, null, List.of("work", "finance"));
+        Task second = new Task("Second", "", TaskPriority.LOW, null, List.of(new String("finance")));
+
+        assertEquals(List.of("work", "finance"), first.getTagView());
+        assertSame(first.getTagView().get(1), second.getTagView().get(0));
+        assertEquals(TagDictionary.idOf("finance"), second.getTagView().idAt(0));
+        assertTrue(first.getTagView().containsId(TagDictionary.idOf("work")));
+        assertEquals(-1, TagDictionary.lookup("never-used-" + System.nanoTime()));
+    }
+
+    @Test
+    void tagView_shouldStayAsItWasWhenTheTaskChanges() {
+        Task task = new Task("Task", "", TaskPriority.LOW, null, List.of("a", "b"));
+        TagList before = task.getTagView();
+        Task copy = new Task(task);
+
+        task.addTag("c");
+        task.addTag("a");
+        assertTrue(task.removeTag("b"));
+        assertFalse(task.removeTag("missing"));
+
+        assertEquals(List.of("a", "b"), before);
+        assertSame(before, copy.getTagView());
+        assertEquals(List.of("a", "c"), task.getTagView());
+        assertThrows(UnsupportedOperationException.class, () -> task.getTagView().add("d"));
+
+        List<String> tags = task.getTags();
+        tags.add("d");
+        assertFalse(task.hasTag("d"));
+    }
+
+    @Test
+    void union_shouldAddOnlyMissingTagsAndReuseAListThatHasThemAll() {
+        TagList local = TagList.of(List.of("x", "y"));
+        TagList remote = TagList.of(List.of("y", "z", "z"));
+
+        TagList merged = local.union(remote);
+
+        assertEquals(List.of("x", "y", "z"), merged);
+        assertSame(merged, merged.union(local));
+        assertTrue(merged.sameTagsAs(TagList.of(List.of("z", "x", "y", "x"))));
+        assertFalse(merged.sameTagsAs(local));
+        assertEquals(new ArrayList<>(merged), merged);
+        assertEquals(merged.hashCode(), new ArrayList<>(merged).hashCode());
+    }
+}
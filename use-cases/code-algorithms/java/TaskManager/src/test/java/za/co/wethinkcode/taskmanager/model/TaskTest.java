@@ -0,0 +1,57 @@
+package za.co.wethinkcode.taskmanager.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTest {
+
+    @Test
+    void encodedFields_shouldReadBackExactlyAsTheyWereSet() {
+        LocalDateTime created = LocalDateTime.of(2025, 3, 30, 2, 30, 15, 123_456_789);
+        Task task = new Task("id-1", "Title", "Description", null, null,
+                created, LocalDateTime.MAX, LocalDateTime.MIN, null, List.of("a"));
+
+        assertEquals(created, task.getCreatedAt());
+        assertEquals(LocalDateTime.MAX, task.getUpdatedAt());
+        assertEquals(LocalDateTime.MIN, task.getDueDate());
+        assertNull(task.getCompletedAt());
+        assertNull(task.getPriority());
+        assertNull(task.getStatus());
+
+        task.setPriority(TaskPriority.URGENT);
+        task.setStatus(TaskStatus.REVIEW);
+        task.setDueDate(null);
+        Task copy = new Task(task);
+        assertEquals(TaskPriority.URGENT, copy.getPriority());
+        assertEquals(TaskStatus.REVIEW, copy.getStatus());
+        assertFalse(copy.hasDueDate());
+        assertEquals(created, copy.getCreatedAt());
+        assertEquals(List.of("a"), copy.getTagView());
+    }
+
+    @Test
+    void dayCountsAndOverdue_shouldMatchTheLocalDateTimeArithmetic() {
+        Random random = new Random(3);
+        LocalDateTime base = LocalDateTime.of(2025, 6, 15, 12, 0);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime now = base.plusSeconds(random.nextInt(200_000) - 100_000).withNano(random.nextInt(3) * 400_000_000);
+            LocalDateTime other = i % 7 == 0 ? now.plusDays(random.nextInt(5) - 2)
+                    : now.plusSeconds(random.nextInt(2_000_000) - 1_000_000).withNano(random.nextInt(1_000_000_000));
+            Task task = new Task("Task", "", TaskPriority.LOW, other, null);
+            task.setUpdatedAt(other);
+
+            assertEquals(ChronoUnit.DAYS.between(now, other), task.daysUntilDue(now), other + " from " + now);
+            assertEquals(ChronoUnit.DAYS.between(other, now), task.daysSinceUpdate(now), other + " to " + now);
+            assertEquals(other.isBefore(now), task.isOverdue(now));
+        }
+        Task done = new Task("Done", "", TaskPriority.LOW, base.minusDays(1), null);
+        done.markAsDone();
+        assertFalse(done.isOverdue(base));
+    }
+}
@@ -0,0 +1,73 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.EpochTime;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarTasksTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 12, 0);
+
+    @Test
+    void summarize_shouldMatchCountsTakenFromTheTasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("Task " + i, "", TaskPriority.values()[i % 4],
+                    i % 3 == 0 ? null : NOW.plusDays(i - 50), List.of());
+            task.setStatus(TaskStatus.values()[i % 4]);
+            if (task.getStatus() == TaskStatus.DONE) {
+                task.setCompletedAt(NOW.minusDays(i % 14));
+            }
+            tasks.add(task);
+        }
+
+        TaskStatistics summary = ColumnarTasks.of(tasks).summarize(NOW, NOW.minusDays(7));
+
+        assertEquals(100, summary.getTotal());
+        for (TaskStatus status : TaskStatus.values()) {
+            assertEquals(tasks.stream().filter(task -> task.getStatus() == status).count(),
+                    summary.getStatusCount(status));
+        }
+        for (TaskPriority priority : TaskPriority.values()) {
+            assertEquals(tasks.stream().filter(task -> task.getPriority() == priority).count(),
+                    summary.getPriorityCount(priority));
+        }
+        assertEquals(tasks.stream().filter(task -> task.isOverdue(NOW)).count(), summary.getOverdue());
+        assertEquals(tasks.stream().filter(task -> task.getCompletedAt() != null
+                && task.getCompletedAt().isAfter(NOW.minusDays(7))).count(), summary.getCompleted());
+    }
+
+    @Test
+    void putAndRemove_shouldKeepRowsDense() {
+        Task first = new Task("First", "", TaskPriority.LOW, null, List.of("a"));
+        Task second = new Task("Second", "", TaskPriority.HIGH, NOW, List.of("b", "a"));
+        Task third = new Task("Third");
+        ColumnarTasks columns = ColumnarTasks.of(List.of(first, second, third));
+
+        assertTrue(columns.remove(first.getId()));
+        assertFalse(columns.remove(first.getId()));
+
+        assertEquals(2, columns.size());
+        assertEquals(-1, columns.rowOf(first.getId()));
+        int row = columns.rowOf(second.getId());
+        assertEquals(second.getId(), columns.id(row));
+        assertEquals(TaskPriority.HIGH.ordinal(), columns.priority(row));
+        assertEquals(EpochTime.secondOf(NOW), columns.dueDate(row));
+        assertTrue(columns.hasAnyTag(row, new int[]{columns.tagId("a")}));
+        assertFalse(columns.hasAnyTag(columns.rowOf(third.getId()), new int[]{columns.tagId("a"), columns.tagId("b")}));
+        assertEquals(ColumnarTasks.NO_TIME, columns.dueDate(columns.rowOf(third.getId())));
+
+        second.setStatus(TaskStatus.DONE);
+        columns.put(second);
+        assertEquals(2, columns.size());
+        assertEquals(TaskStatus.DONE.ordinal(), columns.status(columns.rowOf(second.getId())));
+    }
+}
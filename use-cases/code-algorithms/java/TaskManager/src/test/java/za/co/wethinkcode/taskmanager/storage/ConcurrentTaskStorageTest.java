@@ -0,0 +1,148 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskStorageTest {
+
+    private static final String STORAGE_FILE = "test_concurrent_storage.json";
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int TASKS = 50;
+    private static final int ROUNDS = 40;
+
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void concurrentModifications_shouldNotLoseUpdates_journaled() throws Exception {
+        stress(new ConcurrentTaskStorage(STORAGE_FILE, true));
+    }
+
+    @Test
+    void concurrentModifications_shouldNotLoseUpdates_fullSnapshots() throws Exception {
+        stress(new ConcurrentTaskStorage(STORAGE_FILE));
+    }
+
+    @Test
+    void getTask_shouldReturnCopyThatDoesNotChangeTheStore() {
+        ConcurrentTaskStorage storage = new ConcurrentTaskStorage(STORAGE_FILE);
+        String taskId = storage.addTask(new Task("Original"));
+
+        Task copy = storage.getTask(taskId);
+        copy.setStatus(TaskStatus.DONE);
+
+        assertEquals(TaskStatus.TODO, storage.getTask(taskId).getStatus());
+        assertTrue(storage.getTasksByStatus(TaskStatus.DONE).isEmpty());
+
+        storage.saveTask(copy);
+        assertEquals(TaskStatus.DONE, storage.getTask(taskId).getStatus());
+        assertEquals(1, storage.getTasksByStatus(TaskStatus.DONE).size());
+    }
+
+    /**
+     * Every writer tags every task with its own tag, one read-modify-write at
+     * a time, while readers keep querying the indexes. Any lost update shows
+     * up as a missing tag, any unsafe read as an exception.
+     */
+    private void stress(ConcurrentTaskStorage storage) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            ids.add(storage.addTask(new Task("Task " + i)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int offset = w;
+            String tag = "writer-" + w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int round = 0; round < ROUNDS; round++) {
+                    String taskId = ids.get((round * 7 + offset) % TASKS);
+                    storage.modifyTask(taskId, task -> {
+                        task.setPriority(TaskPriority.values()[(task.getPriority().ordinal() + 1) % 3]);
+                        return true;
+                    });
+                }
+                for (String taskId : ids) {
+                    assertTrue(storage.modifyTask(taskId, task -> {
+                        task.addTag(tag);
+                        return true;
+                    }));
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (TaskPriority priority : TaskPriority.values()) {
+                        for (Task task : storage.getTasksByPriority(priority)) {
+                            assertNotNull(task.getId());
+                        }
+                    }
+                    storage.getTasksByTags(List.of("writer-0"), null);
+                    assertEquals(TASKS, storage.getAllTasks().size());
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        storage.close();
+
+        assertAllTagged(storage, ids);
+        assertAllTagged(new ConcurrentTaskStorage(STORAGE_FILE, storage.isJournaled()), ids);
+        for (int w = 0; w < WRITERS; w++) {
+            assertEquals(TASKS, storage.getTasksByTags(List.of("writer-" + w), null).size());
+        }
+        int byPriority = 0;
+        for (TaskPriority priority : TaskPriority.values()) {
+            byPriority += storage.getTasksByPriority(priority).size();
+        }
+        assertEquals(TASKS, byPriority);
+    }
+
+    private static void assertAllTagged(TaskStorage storage, List<String> ids) {
+        for (String taskId : ids) {
+            Task task = storage.getTask(taskId);
+            assertNotNull(task);
+            for (int w = 0; w < WRITERS; w++) {
+                assertTrue(task.hasTag("writer-" + w), taskId + " lost writer-" + w);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcTaskStoreTest {
+
+    private static final String DATABASE = "test_jdbc_store";
+    private static final String MEMORY_FILE = "test_jdbc_reference.json";
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 12, 0);
+
+    private JdbcTaskStore store;
+    private TaskStorage reference;
+
+    @BeforeEach
+    void setUp() {
+        store = JdbcTaskStore.openFile(DATABASE + JdbcTaskStore.DB_EXTENSION);
+        store.setClock(Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        reference = new TaskStorage(MEMORY_FILE, true);
+        reference.setClock(Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        reference.close();
+        for (String name : new String[]{DATABASE + ".mv.db", DATABASE + ".trace.db",
+                DATABASE + JdbcTaskStore.DB_EXTENSION + TaskArchive.ARCHIVE_SUFFIX, MEMORY_FILE,
+                MEMORY_FILE + TaskJournal.LOG_SUFFIX, MEMORY_FILE + TaskJournal.ROTATED_SUFFIX,
+                MEMORY_FILE + StoreFileGuard.LOCK_SUFFIX}) {
+            new File(name).delete();
+        }
+    }
+
+    @Test
+    void tasks_shouldRoundTripEveryFieldAcrossReopen() {
+        Task task = new Task("Write report", "Quarterly numbers", TaskPriority.HIGH, NOW.plusDays(2),
+                List.of("work", "finance"));
+        task.markAsDone();
+        store.addTask(task);
+        store.close();
+
+        store = JdbcTaskStore.openFile(DATABASE + JdbcTaskStore.DB_EXTENSION);
+        Task loaded = store.getTask(task.getId());
+
+        assertNotNull(loaded);
+        assertEquals(task.getTitle(), loaded.getTitle());
+        assertEquals(task.getDescription(), loaded.getDescription());
+        assertEquals(TaskPriority.HIGH, loaded.getPriority());
+        assertEquals(TaskStatus.DONE, loaded.getStatus());
+        assertEquals(task.getDueDate(), loaded.getDueDate());
+        assertEquals(task.getCompletedAt(), loaded.getCompletedAt());
+        assertEquals(List.of("work", "finance"), loaded.getTags());
+        assertNull(store.getTask("missing"));
+    }
+
+    @Test
+    void mutations_shouldBeVisibleOnlyOnceStored() {
+        String taskId = store.addTask(new Task("Original"));
+
+        Task copy = store.getTask(taskId);
+        copy.setStatus(TaskStatus.REVIEW);
+        assertEquals(TaskStatus.TODO, store.getTask(taskId).getStatus());
+
+        store.saveTask(copy);
+        assertEquals(TaskStatus.REVIEW, store.getTask(taskId).getStatus());
+
+        assertTrue(store.modifyTask(taskId, task -> {
+            task.addTag("urgent");
+            return true;
+        }));
+        assertEquals(List.of("urgent"), store.getTask(taskId).getTags());
+        assertEquals(1, store.getTasksByTags(List.of("urgent"), null).size());
+
+        assertTrue(store.deleteTask(taskId));
+        assertFalse(store.deleteTask(taskId));
+        assertTrue(store.getAllTasks().isEmpty());
+    }
+
+    @Test
+    void applyBatch_shouldChangeNothingIfAnyTargetIsMissing() {
+        String first = store.addTask(new Task("First"));
+
+        boolean applied = store.applyBatch(new TaskBatch()
+                .modify(first, task -> task.setStatus(TaskStatus.DONE))
+                .delete("missing"));
+
+        assertFalse(applied);
+        assertEquals(TaskStatus.TODO, store.getTask(first).getStatus());
+        assertTrue(store.updateTasks(Map.of(first, new Task("Renamed"))));
+        assertEquals("Renamed", store.getTask(first).getTitle());
+    }
+
+    @Test
+    void archiveCompleted_shouldMoveOldDoneTasksToTheArchiveFile() {
+        Task old = new Task("Old");
+        old.setStatus(TaskStatus.DONE);
+        old.setCompletedAt(NOW.minusDays(40));
+        Task recent = new Task("Recent");
+        recent.setStatus(TaskStatus.DONE);
+        recent.setCompletedAt(NOW.minusDays(3));
+        store.addTasks(List.of(old, recent));
+
+        assertEquals(1, store.archiveCompleted(Duration.ofDays(30)));
+        assertNull(store.getTask(old.getId()));
+        assertNotNull(store.getTask(recent.getId()));
+        assertEquals("Old", store.getArchive().getTask(old.getId()).getTitle());
+        assertEquals(0, store.archiveCompleted(Duration.ofDays(30)));
+    }
+
+    @Test
+    void queries_shouldMatchTheInMemoryStore() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Task task = new Task("Task " + i, i % 10 == 0 ? "Fix the login page" : "Routine work",
+                    TaskPriority.values()[i % 4], i % 7 == 0 ? null : NOW.plusDays(i - 30),
+                    i % 5 == 0 ? List.of("rare", "common") : List.of("common"));
+            task.setStatus(TaskStatus.values()[i % 4]);
+            tasks.add(task);
+        }
+        store.addTasks(tasks);
+        reference.addTasks(tasks);
+
+        List<TaskQuery> queries = List.of(
+                new TaskQuery().status(TaskStatus.TODO, TaskStatus.REVIEW).sortBy(TaskQuery.SortKey.TITLE, false),
+                new TaskQuery().overdue().sortBy(TaskQuery.SortKey.DUE_DATE, true).limit(5),
+                new TaskQuery().allTags(List.of("rare")).priority(TaskPriority.LOW, TaskPriority.URGENT)
+                        .sortBy(TaskQuery.SortKey.PRIORITY, false),
+                new TaskQuery().anyTags(List.of("rare", "none")).dueFrom(NOW).sortBy(TaskQuery.SortKey.DUE_DATE, false),
+                new TaskQuery().text("LOGIN").sortBy(TaskQuery.SortKey.CREATED, false));
+        for (TaskQuery query : queries) {
+            assertEquals(ids(reference.query(query).collect(Collectors.toList())),
+                    ids(store.query(query).collect(Collectors.toList())));
+        }
+        assertEquals(reference.getOverdueTasks().size(), store.getOverdueTasks().size());
+        TaskStatistics expected = reference.getStatistics();
+        TaskStatistics actual = store.getStatistics();
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getOverdue(), actual.getOverdue());
+        for (TaskStatus status : TaskStatus.values()) {
+            assertEquals(expected.getStatusCount(status), actual.getStatusCount(status));
+        }
+        assertEquals(ids(reference.search("fix login", 3)), ids(store.search("fix login", 3)));
+
+        List<String> paged = new ArrayList<>();
+        TaskPage page = store.page(new TaskQuery().status(TaskStatus.TODO), null, 4);
+        paged.addAll(ids(page.getTasks()));
+        while (page.hasMore()) {
+            page = store.page(new TaskQuery().status(TaskStatus.TODO), page.getNextCursor(), 4);
+            paged.addAll(ids(page.getTasks()));
+        }
+        assertEquals(ids(reference.query(new TaskQuery().status(TaskStatus.TODO)
+                .sortBy(TaskQuery.SortKey.CREATED, false)).collect(Collectors.toList())), paged);
+    }
+
+    @Test
+    void overdue_shouldIncludeTasksWithNoStatus() {
+        Task task = new Task("Unsorted", "", TaskPriority.LOW, NOW.minusDays(1), List.of());
+        task.setStatus(null);
+        store.addTask(task);
+        reference.addTask(task);
+
+        assertEquals(ids(reference.getOverdueTasks()), ids(store.getOverdueTasks()));
+        assertEquals(1, store.getOverdueTasks().size());
+        assertEquals(reference.getStatistics().getOverdue(), store.getStatistics().getOverdue());
+        assertEquals(1, store.getStatistics().getOverdue());
+    }
+
+    @Test
+    void setDurability_shouldOnlyAcceptSync() {
+        store.setDurability(Durability.SYNC);
+        assertThrows(IllegalArgumentException.class, () -> store.setDurability(Durability.GROUP));
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
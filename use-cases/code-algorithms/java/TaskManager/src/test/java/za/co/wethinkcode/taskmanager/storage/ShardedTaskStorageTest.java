@@ -0,0 +1,126 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTaskStorageTest {
+
+    private static final String STORAGE_DIR = "test_sharded_storage";
+
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(STORAGE_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        new File(STORAGE_DIR).delete();
+        new File(STORAGE_DIR + StoreFileGuard.LOCK_SUFFIX).delete();
+    }
+
+    private static String[] shardFiles() {
+        return new File(STORAGE_DIR).list((dir, name) -> name.startsWith("shard-"));
+    }
+
+    @Test
+    void mutation_shouldRewriteOnlyTheTouchedShard() {
+        ShardedTaskStorage storage = new ShardedTaskStorage(STORAGE_DIR, 8);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Task task = new Task("Task " + i);
+            tasks.add(task);
+            storage.addTask(task);
+        }
+        assertEquals(0, storage.getDirtyShardCount());
+        assertEquals(8, shardFiles().length);
+
+        for (File file : new File(STORAGE_DIR).listFiles()) {
+            assertTrue(file.delete());
+        }
+        Task changed = tasks.get(5);
+        changed.setStatus(TaskStatus.IN_PROGRESS);
+        storage.saveTask(changed);
+
+        assertEquals(1, shardFiles().length);
+        assertEquals(0, storage.getDirtyShardCount());
+    }
+
+    @Test
+    void load_shouldReadAllShardsBack() {
+        ShardedTaskStorage storage = new ShardedTaskStorage(STORAGE_DIR, 4);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(storage.addTask(new Task("Task " + i)));
+        }
+        storage.deleteTask(ids.get(0));
+
+        ShardedTaskStorage reloaded = new ShardedTaskStorage(STORAGE_DIR, 4);
+
+        assertEquals(19, reloaded.getAllTasks().size());
+        assertNull(reloaded.getTask(ids.get(0)));
+        assertNotNull(reloaded.getTask(ids.get(19)));
+        assertEquals(19, reloaded.getTasksByStatus(TaskStatus.TODO).size());
+    }
+
+    @Test
+    void load_shouldRepartitionWhenShardCountChanges() {
+        ShardedTaskStorage storage = new ShardedTaskStorage(STORAGE_DIR, 8);
+        for (int i = 0; i < 40; i++) {
+            storage.addTask(new Task("Task " + i));
+        }
+
+        ShardedTaskStorage resharded = new ShardedTaskStorage(STORAGE_DIR, 3);
+
+        assertEquals(40, resharded.getAllTasks().size());
+        assertEquals(3, shardFiles().length);
+        assertEquals(40, new ShardedTaskStorage(STORAGE_DIR, 3).getAllTasks().size());
+    }
+
+    @Test
+    void save_shouldKeepTasksAnotherWriterAddedToTheSameShard() {
+        ShardedTaskStorage first = new ShardedTaskStorage(STORAGE_DIR, 1);
+        ShardedTaskStorage second = new ShardedTaskStorage(STORAGE_DIR, 1);
+
+        String firstId = first.addTask(new Task("From first"));
+        String secondId = second.addTask(new Task("From second"));
+
+        assertNotNull(second.getTask(firstId));
+        assertTrue(first.refresh());
+        assertNotNull(first.getTask(secondId));
+        assertEquals(2, new ShardedTaskStorage(STORAGE_DIR, 1).getAllTasks().size());
+    }
+
+    @Test
+    void readSnapshot_shouldLeaveTheShardsAsTheyAre() throws IOException {
+        ShardedTaskStorage storage = new ShardedTaskStorage(STORAGE_DIR, 2);
+        for (int i = 0; i < 10; i++) {
+            storage.addTask(new Task("Task " + i));
+        }
+        // A file from a wider partitioning that appeared after loading
+        Path extra = Path.of(STORAGE_DIR, "shard-007.json");
+        Files.copy(Path.of(STORAGE_DIR, "shard-000.json"), extra);
+
+        List<Task> copied = new ArrayList<>();
+        storage.readJson(extra, copied::add);
+        List<Task> read = new ArrayList<>();
+        storage.readSnapshot(read::add);
+        storage.readSnapshot(read::add);
+        storage.save();
+
+        assertEquals(2 * (10 + copied.size()), read.size());
+        assertEquals(0, storage.getDirtyShardCount());
+        assertTrue(Files.exists(extra));
+    }
+}
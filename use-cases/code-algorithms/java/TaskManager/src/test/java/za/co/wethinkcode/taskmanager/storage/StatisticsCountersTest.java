@@ -0,0 +1,142 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsCountersTest {
+
+    private static final String STORAGE_FILE = "test_statistics.json";
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 12, 0);
+
+    private TaskStorage storage;
+    private Clock clockAt;
+
+    @BeforeEach
+    void setUp() {
+        storage = new TaskStorage(STORAGE_FILE, true);
+        setTime(NOW);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void statistics_shouldMatchAFullScanAfterEveryKindOfChange() {
+        Random random = new Random(7);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Task " + i, "", TaskPriority.values()[i % 4],
+                    i % 3 == 0 ? null : NOW.plusDays(i % 20 - 10), List.of());
+            ids.add(storage.addTask(task));
+        }
+        assertMatchesScan();
+
+        for (int step = 0; step < 300; step++) {
+            String taskId = ids.get(random.nextInt(ids.size()));
+            switch (step % 4) {
+                case 0:
+                    storage.modifyTask(taskId, task -> {
+                        task.markAsDone();
+                        task.setCompletedAt(NOW.minusDays(random.nextInt(14)));
+                        return true;
+                    });
+                    break;
+                case 1:
+                    Task updates = new Task("Task " + step);
+                    updates.setStatus(TaskStatus.values()[random.nextInt(3)]);
+                    updates.setDueDate(NOW.plusHours(random.nextInt(48) - 24));
+                    storage.updateTask(taskId, updates);
+                    break;
+                case 2:
+                    storage.modifyTask(taskId, task -> {
+                        task.setPriority(TaskPriority.values()[random.nextInt(4)]);
+                        return true;
+                    });
+                    break;
+                default:
+                    storage.deleteTask(taskId);
+                    ids.remove(taskId);
+            }
+            if (step % 50 == 0) {
+                setTime(NOW.plusHours(step / 10));
+                assertMatchesScan();
+            }
+        }
+        assertMatchesScan();
+    }
+
+    @Test
+    void timeBasedCounts_shouldRollWithTheClock() {
+        String dueSoon = storage.addTask(new Task("Due soon", "", TaskPriority.HIGH, NOW.plusHours(1), List.of()));
+        Task finished = new Task("Finished");
+        finished.markAsDone();
+        finished.setCompletedAt(NOW.minusDays(1));
+        storage.addTask(finished);
+
+        assertEquals(0, storage.getStatistics().getOverdue());
+        assertEquals(1, storage.getStatistics().getCompleted());
+
+        setTime(NOW.plusHours(2));
+        assertEquals(1, storage.getStatistics().getOverdue());
+
+        setTime(NOW.plusDays(7));
+        TaskStatistics weekLater = storage.getStatistics();
+        assertEquals(1, weekLater.getOverdue());
+        assertEquals(0, weekLater.getCompleted());
+
+        setTime(NOW);
+        assertEquals(0, storage.getStatistics().getOverdue());
+        assertEquals(1, storage.getStatistics().getCompleted());
+
+        setTime(NOW.plusHours(2));
+        storage.modifyTask(dueSoon, task -> {
+            task.markAsDone();
+            return true;
+        });
+        TaskStatistics afterCompletion = storage.getStatistics();
+        assertEquals(0, afterCompletion.getOverdue());
+        assertEquals(2, afterCompletion.getStatusCount(TaskStatus.DONE));
+        assertEquals(2, afterCompletion.getCompleted());
+    }
+
+    private void assertMatchesScan() {
+        LocalDateTime now = LocalDateTime.now(clockAt);
+        TaskStatistics expected = ColumnarTasks.of(storage.getAllTasks())
+                .summarize(now, now.minus(TaskStatistics.RECENT_WINDOW));
+        TaskStatistics actual = storage.getStatistics();
+        assertEquals(expected.getTotal(), actual.getTotal());
+        for (TaskStatus status : TaskStatus.values()) {
+            assertEquals(expected.getStatusCount(status), actual.getStatusCount(status), status.getValue());
+        }
+        for (TaskPriority priority : TaskPriority.values()) {
+            assertEquals(expected.getPriorityCount(priority), actual.getPriorityCount(priority));
+        }
+        assertEquals(expected.getOverdue(), actual.getOverdue());
+        assertEquals(expected.getCompleted(), actual.getCompleted());
+    }
+
+    private void setTime(LocalDateTime time) {
+        clockAt = Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        storage.setClock(clockAt);
+    }
+}
@@ -0,0 +1,151 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskArchiveTest {
+
+    private static final String STORAGE_FILE = "test_archive_storage.json";
+
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX, TaskArchive.ARCHIVE_SUFFIX, TaskArchive.ARCHIVE_SUFFIX + ".part"}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void archiveCompleted_shouldMoveOnlyOldDoneTasksOutOfTheStoreInCompletionOrder() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        String open = storage.addTask(new Task("Open"));
+        String recent = storage.addTask(done("Recent", 3));
+        Task report = done("Quarterly report", 40);
+        report.addTag("report");
+        String oldReport = storage.addTask(report);
+        String oldest = storage.addTask(done("Annual plan", 400));
+
+        assertEquals(2, storage.archiveCompleted(Duration.ofDays(30)));
+        assertEquals(0, storage.archiveCompleted(Duration.ofDays(30)));
+
+        assertNull(storage.getTask(oldReport));
+        assertEquals(Set.of(open, recent), ids(new TaskStorage(STORAGE_FILE).getAllTasks()));
+        TaskArchive archive = storage.getArchive();
+        assertEquals(List.of(oldest, oldReport), archive.getAllTasks().stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(List.of("report"), archive.getTask(oldReport).getTags());
+
+        TaskQuery done = new TaskQuery().status(TaskStatus.DONE);
+        assertEquals(Set.of(recent), ids(storage.query(done).collect(Collectors.toList())));
+        assertEquals(Set.of(recent, oldReport, oldest), ids(archive.query(storage, done)));
+        assertEquals(List.of("Annual plan", "Quarterly report"),
+                archive.query(storage, new TaskQuery().status(TaskStatus.DONE).sortBy(TaskQuery.SortKey.TITLE, false).limit(2))
+                        .stream().map(Task::getTitle).collect(Collectors.toList()));
+        assertEquals(Set.of(oldReport), ids(archive.query(new TaskQuery().allTags(List.of("report")))));
+        assertEquals(Set.of(oldReport), ids(archive.search(storage, "quarterly", 10)));
+        assertTrue(archive.search(storage, "quart", 10).isEmpty());
+        archive.setSubstringSearch(true);
+        assertEquals(Set.of(oldReport), ids(archive.search(storage, "quart", 10)));
+        storage.close();
+    }
+
+    @Test
+    void readers_shouldSkipATornMemberAndPreferLaterAndLiveCopies() throws IOException {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        TaskArchive archive = storage.getArchive();
+        Task first = done("First", 40);
+        Task second = done("Second", 40);
+        archive.append(List.of(first, second));
+
+        Task renamed = new Task(first);
+        renamed.setTitle("First, renamed");
+        archive.append(List.of(renamed));
+        assertEquals(List.of("Second", "First, renamed"),
+                archive.getAllTasks().stream().map(Task::getTitle).collect(Collectors.toList()));
+
+        // Half of a member, as a crash mid-append would leave it
+        Path part = Paths.get(STORAGE_FILE + TaskArchive.ARCHIVE_SUFFIX + ".part");
+        Task torn = done("Torn", 40);
+        new TaskArchive(part).append(List.of(torn));
+        byte[] member = Files.readAllBytes(part);
+        Files.write(archive.getPath(), Arrays.copyOf(member, member.length / 2), StandardOpenOption.APPEND);
+        assertEquals(2, archive.getAllTasks().size());
+        assertNull(archive.getTask(torn.getId()));
+
+        // The store still holds a copy of the second task, which wins over the archived one
+        Task kept = new Task(second);
+        kept.setTitle("Second, kept");
+        storage.addTask(kept);
+        assertEquals(List.of("Second, kept", "First, renamed"),
+                archive.query(storage, new TaskQuery()).stream().map(Task::getTitle).collect(Collectors.toList()));
+        storage.close();
+    }
+
+    @Test
+    void append_shouldCutATornMemberOffBeforeWriting() throws IOException {
+        TaskArchive archive = TaskArchive.forStore(STORAGE_FILE);
+        Task first = done("First", 40);
+        archive.append(List.of(first));
+
+        Path part = Paths.get(STORAGE_FILE + TaskArchive.ARCHIVE_SUFFIX + ".part");
+        new TaskArchive(part).append(List.of(done("Torn", 40)));
+        byte[] member = Files.readAllBytes(part);
+        Files.write(archive.getPath(), Arrays.copyOf(member, member.length - 3), StandardOpenOption.APPEND);
+
+        Task second = done("Second", 40);
+        archive.append(List.of(second));
+
+        assertEquals(List.of("First", "Second"),
+                archive.getAllTasks().stream().map(Task::getTitle).collect(Collectors.toList()));
+    }
+
+    @Test
+    void readers_shouldSkipAnUnreadableRecordAndKeepTheOnesAfterIt() throws IOException {
+        TaskArchive archive = TaskArchive.forStore(STORAGE_FILE);
+        Task first = done("First", 40);
+        Task unreadable = done("Unreadable", 40);
+        Task second = done("Second", 40);
+        String unknownStatus = TaskTypeAdapter.SHARED.toJson(unreadable).replace("\"DONE\"", "\"SHELVED\"");
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(archive.getPath())),
+                StandardCharsets.UTF_8)) {
+            out.write(TaskTypeAdapter.SHARED.toJson(first) + "\n" + unknownStatus + "\n"
+                    + TaskTypeAdapter.SHARED.toJson(second) + "\n");
+        }
+
+        assertEquals(List.of("First", "Second"),
+                archive.getAllTasks().stream().map(Task::getTitle).collect(Collectors.toList()));
+        assertNull(archive.getTask(unreadable.getId()));
+        assertEquals("Second", archive.getTask(second.getId()).getTitle());
+    }
+
+    private static Task done(String title, int daysAgo) {
+        Task task = new Task(title);
+        task.setStatus(TaskStatus.DONE);
+        task.setCompletedAt(LocalDateTime.now().minusDays(daysAgo));
+        return task;
+    }
+
+    private static Set<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toSet());
+    }
+}
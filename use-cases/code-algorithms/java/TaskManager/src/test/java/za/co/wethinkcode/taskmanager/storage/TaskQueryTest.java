@@ -0,0 +1,175 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskQueryTest {
+
+    private static final String STORAGE_FILE = "test_task_query.json";
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 15, 12, 0);
+
+    private TaskStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new TaskStorage(STORAGE_FILE, true);
+        storage.setClock(Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Task " + i, i % 50 == 0 ? "Fix the Login page" : "Routine work",
+                    TaskPriority.values()[i % 4], NOW.plusDays(i - 100), i % 20 == 0 ? List.of("rare") : List.of("common"));
+            task.setStatus(i % 2 == 0 ? TaskStatus.TODO : TaskStatus.DONE);
+            tasks.add(task);
+        }
+        storage.addTasks(tasks);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void query_shouldCombineEveryFilter() {
+        List<Task> result = storage.query(new TaskQuery()
+                .status(TaskStatus.TODO)
+                .priority(TaskPriority.LOW)
+                .overdue()
+                .allTags(List.of("rare")))
+                .collect(Collectors.toList());
+
+        assertFalse(result.isEmpty());
+        for (Task task : result) {
+            assertEquals(TaskStatus.TODO, task.getStatus());
+            assertEquals(TaskPriority.LOW, task.getPriority());
+            assertTrue(task.isOverdue(NOW));
+            assertTrue(task.hasTag("rare"));
+        }
+        long expected = storage.getAllTasks().stream()
+                .filter(task -> task.getStatus() == TaskStatus.TODO && task.getPriority() == TaskPriority.LOW
+                        && task.isOverdue(NOW) && task.hasTag("rare"))
+                .count();
+        assertEquals(expected, result.size());
+    }
+
+    @Test
+    void planner_shouldDriveFromTheMostSelectiveIndex() {
+        assertEquals("scan", storage.explain(new TaskQuery().text("login")));
+        assertEquals("tag", storage.explain(new TaskQuery().status(TaskStatus.TODO).allTags(List.of("rare"))));
+        assertEquals("priority", storage.explain(new TaskQuery().status(TaskStatus.TODO).priority(TaskPriority.URGENT)));
+        assertEquals("due", storage.explain(new TaskQuery().status(TaskStatus.TODO)
+                .dueFrom(NOW).dueBefore(NOW.plusDays(3))));
+    }
+
+    @Test
+    void dueDateSort_shouldWalkTheIndexInOrderAndStopAtTheLimit() {
+        TaskQuery query = new TaskQuery().overdue().sortBy(TaskQuery.SortKey.DUE_DATE, true).limit(3);
+        assertEquals("due", storage.explain(query));
+
+        List<Task> result = storage.query(query).collect(Collectors.toList());
+
+        assertEquals(3, result.size());
+        assertEquals(NOW.minusDays(2), result.get(0).getDueDate());
+        assertEquals(NOW.minusDays(4), result.get(1).getDueDate());
+        assertEquals(NOW.minusDays(6), result.get(2).getDueDate());
+    }
+
+    @Test
+    void dueDateSort_shouldBreakTiesByIdWhetherOrNotTheIndexIsWalked() {
+        LocalDateTime shared = NOW.plusYears(1);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            ids.add(storage.addTask(new Task("Same day " + i, "", TaskPriority.LOW, shared, List.of("same-day"))));
+        }
+        ids.sort(Comparator.naturalOrder());
+
+        for (boolean descending : new boolean[]{false, true}) {
+            TaskQuery walked = new TaskQuery().dueFrom(shared).sortBy(TaskQuery.SortKey.DUE_DATE, descending).limit(3);
+            TaskQuery sorted = new TaskQuery().allTags(List.of("same-day")).sortBy(TaskQuery.SortKey.DUE_DATE, descending).limit(3);
+            assertEquals("due", storage.explain(walked));
+            assertEquals("tag", storage.explain(sorted));
+
+            assertEquals(ids.subList(0, 3), storage.query(walked).map(Task::getId).collect(Collectors.toList()));
+            assertEquals(ids.subList(0, 3), storage.query(sorted).map(Task::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void sortWithLimit_shouldKeepOnlyTheTopEntries() {
+        List<Task> result = storage.query(new TaskQuery()
+                .anyTags(List.of("rare"))
+                .sortBy(TaskQuery.SortKey.TITLE, false)
+                .limit(2))
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("Task 0", "Task 100"),
+                result.stream().map(Task::getTitle).collect(Collectors.toList()));
+    }
+
+    @Test
+    void text_shouldMatchTitleOrDescriptionIgnoringCase() {
+        assertEquals(4, storage.query(new TaskQuery().text("LOGIN")).count());
+        assertEquals(1, storage.query(new TaskQuery().text("task 199")).count());
+    }
+
+    @Test
+    void pages_shouldVisitEveryMatchOnceInCreationOrder() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            TaskPage page = storage.page(new TaskQuery(), cursor, 30);
+            assertTrue(page.getTasks().size() <= 30);
+            page.getTasks().forEach(task -> seen.add(task.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<String> expected = storage.getAllTasks().stream()
+                .sorted(Comparator.comparing(Task::getCreatedAt).thenComparing(Task::getId))
+                .map(Task::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void pages_shouldApplyFiltersOnBothPagingPaths() {
+        // "rare" narrows the store enough to page from its posting list; TODO does not
+        for (TaskQuery query : List.of(new TaskQuery().allTags(List.of("rare")), new TaskQuery().status(TaskStatus.TODO))) {
+            long expected = storage.query(query).count();
+            int total = 0;
+            TaskPage page = storage.page(query, null, 3);
+            total += page.getTasks().size();
+            while (page.hasMore()) {
+                page = storage.page(query, page.getNextCursor(), 3);
+                total += page.getTasks().size();
+            }
+            assertEquals(expected, total);
+        }
+    }
+
+    @Test
+    void page_shouldRejectBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> storage.page(new TaskQuery(), "not a cursor", 10));
+        assertThrows(IllegalArgumentException.class, () -> storage.page(new TaskQuery(), null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.page(new TaskQuery().sortBy(TaskQuery.SortKey.TITLE, false), null, 10));
+    }
+}
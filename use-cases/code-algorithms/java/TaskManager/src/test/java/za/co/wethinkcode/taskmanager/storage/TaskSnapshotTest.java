@@ -0,0 +1,196 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskSnapshotTest {
+
+    private static final String STORAGE_FILE = "test_snapshot.json";
+
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void snapshot_shouldKeepItsVersionWhileTheStorageMovesOn() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        String kept = storage.addTask(new Task("Kept"));
+        String deleted = storage.addTask(new Task("Deleted"));
+        TaskSnapshot before = storage.snapshot();
+
+        storage.modifyTask(kept, task -> {
+            task.addTag("report");
+            return true;
+        });
+        storage.updateTask(kept, statusUpdate(TaskStatus.REVIEW));
+        storage.deleteTask(deleted);
+        storage.addTask(new Task("Added"));
+        TaskSnapshot after = storage.snapshot();
+
+        assertEquals(2, before.size());
+        assertTrue(before.getTask(kept).getTags().isEmpty());
+        assertEquals(TaskStatus.TODO, before.getTask(kept).getStatus());
+        assertNotNull(before.getTask(deleted));
+        assertEquals(Set.of("Kept", "Deleted"), titles(before.getAllTasks()));
+
+        assertEquals(List.of("report"), after.getTask(kept).getTags());
+        assertEquals(TaskStatus.REVIEW, after.getTask(kept).getStatus());
+        assertNull(after.getTask(deleted));
+        assertEquals(Set.of("Kept", "Added"), after.stream().map(Task::getTitle).collect(Collectors.toSet()));
+        assertTrue(after.getVersion() > before.getVersion());
+        storage.close();
+    }
+
+    @Test
+    void changesSince_shouldReportTheNetChangeToEachTaskAndAHighWaterMark() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        String edited = storage.addTask(new Task("Edited"));
+        String deleted = storage.addTask(new Task("Deleted"));
+        TaskChanges first = storage.changesSince(0);
+        assertTrue(first.isComplete());
+        assertEquals(Set.of(edited, deleted), first.getCreated());
+        long mark = first.getSequence();
+
+        storage.modifyTask(edited, task -> {
+            task.addTag("report");
+            return true;
+        });
+        storage.deleteTask(deleted);
+        String added = storage.addTask(new Task("Added"));
+        storage.modifyTask(added, task -> {
+            task.setTitle("Added and edited");
+            return true;
+        });
+        String shortLived = storage.addTask(new Task("Gone again"));
+        storage.deleteTask(shortLived);
+        TaskChanges changes = storage.changesSince(mark);
+
+        assertTrue(changes.isComplete());
+        assertEquals(Set.of(added), changes.getCreated());
+        assertEquals(Set.of(edited), changes.getUpdated());
+        assertEquals(Set.of(deleted), changes.getDeleted());
+        assertEquals(storage.snapshot().getVersion(), changes.getSequence());
+        assertTrue(storage.changesSince(changes.getSequence()).isEmpty());
+        assertFalse(storage.changesSince(changes.getSequence() + 1).isComplete());
+        storage.close();
+    }
+
+    @Test
+    void changesSince_shouldBeIncompleteOnceTheChangesAskedForAreDropped() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        storage.setChangeLogCapacity(3);
+        long start = storage.snapshot().getVersion();
+        for (int i = 0; i < 7; i++) {
+            storage.addTask(new Task("Task " + i));
+        }
+        long end = storage.snapshot().getVersion();
+
+        assertFalse(storage.changesSince(start).isComplete());
+        TaskChanges latest = storage.changesSince(end - 3);
+        assertTrue(latest.isComplete());
+        assertEquals(3, latest.getCreated().size());
+
+        // Another process adds more tasks than the log holds; reloading cannot say which
+        TaskStorage other = new TaskStorage(STORAGE_FILE, true);
+        for (int i = 0; i < 5; i++) {
+            other.addTask(new Task("Elsewhere " + i));
+        }
+        other.close();
+        storage.load();
+        assertFalse(storage.changesSince(end).isComplete());
+        long reloaded = storage.snapshot().getVersion();
+
+        // Reloading files that did not change reports nothing
+        storage.load();
+        TaskChanges unchanged = storage.changesSince(reloaded);
+        assertTrue(unchanged.isComplete());
+        assertTrue(unchanged.isEmpty());
+        storage.close();
+    }
+
+    @Test
+    void changesSince_shouldBeIncompleteForAMarkIssuedByAnotherStorage() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        storage.addTask(new Task("First"));
+        long mark = storage.changesSince(0).getSequence();
+        storage.close();
+
+        TaskStorage reopened = new TaskStorage(STORAGE_FILE, true);
+        reopened.addTask(new Task("Second"));
+        reopened.addTask(new Task("Third"));
+
+        assertFalse(reopened.changesSince(mark).isComplete());
+        TaskChanges all = reopened.changesSince(0);
+        assertTrue(all.isComplete());
+        assertEquals(3, all.getCreated().size());
+        reopened.close();
+    }
+
+    @Test
+    void persistentMap_shouldAgreeWithAHashMapIncludingHashCollisions() {
+        Random random = new Random(11);
+        String[] ids = new String[2000];
+        for (int i = 0; i < ids.length; i++) {
+            // "Aa" and "BB" have the same hash code, so these pairs collide
+            ids[i] = i % 20 == 0 ? (i % 40 == 0 ? "Aa" : "BB") + (i / 40) : "task-" + random.nextLong();
+        }
+        PersistentTaskMap map = PersistentTaskMap.EMPTY;
+        PersistentTaskMap earlier = map;
+        Map<String, Task> expected = new HashMap<>();
+        Map<String, Task> expectedEarlier = Map.of();
+        for (int step = 0; step < 50_000; step++) {
+            String id = ids[random.nextInt(ids.length)];
+            if (random.nextInt(3) == 0) {
+                map = map.without(id);
+                expected.remove(id);
+            } else {
+                Task task = new Task("Task " + step);
+                task.setId(id);
+                map = map.with(task);
+                expected.put(id, task);
+            }
+            assertEquals(expected.size(), map.size());
+            if (step == 25_000) {
+                earlier = map;
+                expectedEarlier = new HashMap<>(expected);
+            }
+        }
+
+        for (String id : ids) {
+            assertSame(expected.get(id), map.get(id));
+            assertSame(expectedEarlier.get(id), earlier.get(id));
+        }
+        Set<String> iterated = new HashSet<>();
+        for (Task task : map) {
+            assertTrue(iterated.add(task.getId()));
+        }
+        assertEquals(expected.keySet(), iterated);
+    }
+
+    private static Task statusUpdate(TaskStatus status) {
+        Task updates = new Task("Kept");
+        updates.setStatus(status);
+        return updates;
+    }
+
+    private static Set<String> titles(List<Task> tasks) {
+        return tasks.stream().map(Task::getTitle).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,601 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+import za.co.wethinkcode.taskmanager.model.TaskPriority;
+import za.co.wethinkcode.taskmanager.model.TaskStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskStorageTest {
+
+    private static final String STORAGE_FILE = "test_task_storage.json";
+    private static final String BINARY_FILE = "test_task_storage.bin";
+    private static final String EXPORT_FILE = "test_task_export.json";
+
+    @AfterEach
+    void tearDown() {
+        for (String path : new String[]{STORAGE_FILE, BINARY_FILE, EXPORT_FILE}) {
+            for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                    StoreFileGuard.LOCK_SUFFIX}) {
+                File file = new File(path + suffix);
+                if (file.exists() && !file.delete()) {
+                    System.err.println("Failed to delete " + file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void journaledMutations_shouldAppendToLogWithoutRewritingSnapshot() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+
+        storage.addTask(new Task("Journaled task"));
+        storage.close();
+
+        assertFalse(new File(STORAGE_FILE).exists());
+        assertTrue(new File(STORAGE_FILE + TaskJournal.LOG_SUFFIX).length() > 0);
+    }
+
+    @Test
+    void load_shouldReplaySnapshotPlusJournal() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task kept = new Task("Kept");
+        Task removed = new Task("Removed");
+        storage.addTask(kept);
+        storage.addTask(removed);
+
+        storage.setJournaled(true);
+        Task added = new Task("Added later");
+        storage.addTask(added);
+        Task updates = new Task("Renamed");
+        updates.setPriority(TaskPriority.URGENT);
+        storage.updateTask(kept.getId(), updates);
+        storage.deleteTask(removed.getId());
+        storage.close();
+
+        TaskStorage reloaded = new TaskStorage(STORAGE_FILE);
+
+        assertEquals(2, reloaded.getAllTasks().size());
+        assertEquals("Renamed", reloaded.getTask(kept.getId()).getTitle());
+        assertEquals(TaskPriority.URGENT, reloaded.getTask(kept.getId()).getPriority());
+        assertNotNull(reloaded.getTask(added.getId()));
+        assertNull(reloaded.getTask(removed.getId()));
+    }
+
+    @Test
+    void load_shouldKeepRecordsAppendedAfterATornRecord() throws IOException {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        storage.addTask(new Task("one"));
+        storage.addTask(new Task("two"));
+        storage.close();
+        // A crash mid-append leaves the last record without its end
+        Path log = Path.of(STORAGE_FILE + TaskJournal.LOG_SUFFIX);
+        byte[] records = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(records, records.length - 10));
+
+        TaskStorage reopened = new TaskStorage(STORAGE_FILE, true);
+        assertEquals(List.of("one"), titles(reopened.getAllTasks()));
+        reopened.addTask(new Task("three"));
+        reopened.addTask(new Task("four"));
+        reopened.close();
+
+        assertEquals(Set.of("one", "three", "four"), new HashSet<>(titles(new TaskStorage(STORAGE_FILE, true).getAllTasks())));
+    }
+
+    @Test
+    void saveTask_shouldJournalInPlaceChanges() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        Task task = new Task("Tag me");
+        storage.addTask(task);
+
+        storage.getTask(task.getId()).addTag("journaled");
+        storage.saveTask(storage.getTask(task.getId()));
+        storage.close();
+
+        assertTrue(new TaskStorage(STORAGE_FILE).getTask(task.getId()).getTags().contains("journaled"));
+    }
+
+    @Test
+    void compaction_shouldFoldLogIntoSnapshot() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        storage.setCompactionThreshold(1);
+
+        Task first = new Task("First");
+        storage.addTask(first);
+        storage.close();
+
+        assertTrue(new File(STORAGE_FILE).exists());
+        assertFalse(new File(STORAGE_FILE + TaskJournal.ROTATED_SUFFIX).exists());
+        assertNotNull(new TaskStorage(STORAGE_FILE).getTask(first.getId()));
+    }
+
+    @Test
+    void save_shouldDiscardJournalOnceSnapshotIsWritten() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        Task task = new Task("Snapshotted");
+        storage.addTask(task);
+
+        storage.save();
+
+        assertFalse(new File(STORAGE_FILE + TaskJournal.LOG_SUFFIX).exists());
+        assertNotNull(new TaskStorage(STORAGE_FILE).getTask(task.getId()));
+    }
+
+    @Test
+    void statusAndPriorityIndexes_shouldFollowMutations() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task task = new Task("Indexed");
+        storage.addTask(task);
+        storage.addTask(new Task("Other"));
+
+        assertEquals(2, storage.getTasksByStatus(TaskStatus.TODO).size());
+        assertEquals(2, storage.getTasksByPriority(TaskPriority.MEDIUM).size());
+
+        Task updates = new Task("Indexed");
+        updates.setPriority(TaskPriority.HIGH);
+        storage.updateTask(task.getId(), updates);
+        // Updates publish a changed copy, so the instance added above is now stale
+        task = storage.getTask(task.getId());
+        assertEquals(List.of(task), storage.getTasksByPriority(TaskPriority.HIGH));
+        assertEquals(1, storage.getTasksByPriority(TaskPriority.MEDIUM).size());
+
+        task.markAsDone();
+        storage.saveTask(task);
+        assertEquals(List.of(task), storage.getTasksByStatus(TaskStatus.DONE));
+        assertEquals(1, storage.getTasksByStatus(TaskStatus.TODO).size());
+
+        storage.deleteTask(task.getId());
+        assertTrue(storage.getTasksByStatus(TaskStatus.DONE).isEmpty());
+        assertTrue(storage.getTasksByPriority(TaskPriority.HIGH).isEmpty());
+    }
+
+    @Test
+    void indexes_shouldBeRebuiltOnLoad() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task task = new Task("Persisted");
+        task.setStatus(TaskStatus.REVIEW);
+        storage.addTask(task);
+
+        TaskStorage reloaded = new TaskStorage(STORAGE_FILE);
+
+        assertEquals(1, reloaded.getTasksByStatus(TaskStatus.REVIEW).size());
+        assertTrue(reloaded.getTasksByStatus(TaskStatus.TODO).isEmpty());
+    }
+
+    @Test
+    void dueDateQueries_shouldUseRangeIndexAndOneClockReading() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        LocalDateTime now = LocalDateTime.of(2025, 6, 10, 12, 0);
+        storage.setClock(Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+
+        Task overdue = new Task("Overdue", "", TaskPriority.HIGH, now.minusDays(2), null);
+        Task overdueButDone = new Task("Done late", "", TaskPriority.LOW, now.minusDays(1), null);
+        overdueButDone.markAsDone();
+        Task dueToday = new Task("Today", "", TaskPriority.LOW, now.plusHours(3), null);
+        Task dueNextWeek = new Task("Next week", "", TaskPriority.LOW, now.plusDays(7), null);
+        Task undated = new Task("Undated");
+        for (Task task : List.of(overdue, overdueButDone, dueToday, dueNextWeek, undated)) {
+            storage.addTask(task);
+        }
+
+        assertEquals(List.of(overdue), storage.getOverdueTasks());
+        assertEquals(List.of(dueToday), storage.getTasksDueToday());
+        assertEquals(List.of(overdue, overdueButDone, dueToday),
+                storage.getTasksDueBetween(now.minusDays(3), now.plusDays(1)));
+
+        overdue.markAsDone();
+        storage.saveTask(overdue);
+        assertTrue(storage.getOverdueTasks().isEmpty());
+
+        Task moved = new Task("Moved");
+        moved.setDueDate(now.minusHours(1));
+        storage.updateTask(dueNextWeek.getId(), moved);
+        assertEquals(List.of(storage.getTask(dueNextWeek.getId())), storage.getOverdueTasks());
+    }
+
+    @Test
+    void getTasksByTags_shouldIntersectAllTagsAndUnionAnyTags() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task bugAndUrgent = new Task("Crash", "", TaskPriority.HIGH, null, List.of("bug", "urgent"));
+        Task bugOnly = new Task("Typo", "", TaskPriority.LOW, null, List.of("bug"));
+        Task docs = new Task("Docs", "", TaskPriority.LOW, null, List.of("docs"));
+        storage.addTask(bugAndUrgent);
+        storage.addTask(bugOnly);
+        storage.addTask(docs);
+
+        assertEquals(List.of(bugAndUrgent), storage.getTasksByTags(List.of("urgent", "bug"), null));
+        assertEquals(Set.of(bugOnly, bugAndUrgent, docs),
+                new HashSet<>(storage.getTasksByTags(null, List.of("bug", "docs"))));
+        assertEquals(List.of(bugAndUrgent), storage.getTasksByTags(List.of("bug"), List.of("urgent", "docs")));
+        assertTrue(storage.getTasksByTags(List.of("bug", "missing"), null).isEmpty());
+
+        bugOnly.addTag("urgent");
+        storage.saveTask(bugOnly);
+        docs.removeTag("docs");
+        storage.saveTask(docs);
+
+        assertEquals(2, storage.getTasksByTags(List.of("bug", "urgent"), null).size());
+        assertTrue(storage.getTasksByTags(List.of("docs"), null).isEmpty());
+    }
+
+    @Test
+    void load_shouldReadFilesWrittenByReflectiveGson() throws Exception {
+        String legacy = "[\n"
+                + "  {\n"
+                + "    \"id\": \"legacy-1\",\n"
+                + "    \"title\": \"Old task\",\n"
+                + "    \"description\": \"From before the codec\",\n"
+                + "    \"priority\": \"HIGH\",\n"
+                + "    \"status\": \"DONE\",\n"
+                + "    \"createdAt\": \"2025-01-02T03:04:05.123456\",\n"
+                + "    \"updatedAt\": \"2025-01-03T00:00:00\",\n"
+                + "    \"dueDate\": \"2025-01-31T23:59:59.999999999\",\n"
+                + "    \"completedAt\": \"2025-01-03T00:00:00\",\n"
+                + "    \"tags\": [\"work\", \"q1\"],\n"
+                + "    \"unknownField\": {\"ignored\": true}\n"
+                + "  }\n"
+                + "]";
+        Files.writeString(Path.of(STORAGE_FILE), legacy);
+
+        Task task = new TaskStorage(STORAGE_FILE).getTask("legacy-1");
+
+        assertEquals("Old task", task.getTitle());
+        assertEquals("From before the codec", task.getDescription());
+        assertEquals(TaskPriority.HIGH, task.getPriority());
+        assertEquals(TaskStatus.DONE, task.getStatus());
+        assertEquals(LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123456000), task.getCreatedAt());
+        assertEquals(LocalDateTime.of(2025, 1, 31, 23, 59, 59, 999999999), task.getDueDate());
+        assertEquals(List.of("work", "q1"), task.getTags());
+    }
+
+    @Test
+    void save_shouldRoundTripEveryField() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task task = new Task("Round trip", "All fields", TaskPriority.URGENT,
+                LocalDateTime.of(2030, 5, 1, 23, 59, 59, 999999999), List.of("a", "b"));
+        task.markAsDone();
+        storage.addTask(task);
+        storage.addTask(new Task("No description", null, TaskPriority.LOW, null, null));
+
+        Task loaded = new TaskStorage(STORAGE_FILE).getTask(task.getId());
+
+        assertEquals(task.getTitle(), loaded.getTitle());
+        assertEquals(task.getDescription(), loaded.getDescription());
+        assertEquals(task.getPriority(), loaded.getPriority());
+        assertEquals(task.getStatus(), loaded.getStatus());
+        assertEquals(task.getCreatedAt(), loaded.getCreatedAt());
+        assertEquals(task.getUpdatedAt(), loaded.getUpdatedAt());
+        assertEquals(task.getDueDate(), loaded.getDueDate());
+        assertEquals(task.getCompletedAt(), loaded.getCompletedAt());
+        assertEquals(task.getTags(), loaded.getTags());
+    }
+
+    @Test
+    void binarySnapshot_shouldRoundTripAndServeSingleTaskReads() {
+        TaskStorage storage = new TaskStorage(BINARY_FILE);
+        Task first = new Task("First", "Binary", TaskPriority.HIGH,
+                LocalDateTime.of(2030, 1, 1, 23, 59, 59, 999999999), List.of("x", "y"));
+        Task second = new Task("Second", null, TaskPriority.LOW, null, List.of("y"));
+        second.markAsDone();
+        storage.addTask(first);
+        storage.addTask(second);
+        for (int i = 0; i < 50; i++) {
+            storage.addTask(new Task("Filler " + i));
+        }
+
+        TaskStorage reloaded = new TaskStorage(BINARY_FILE);
+        assertEquals(52, reloaded.getAllTasks().size());
+        assertEquals(first.getDueDate(), reloaded.getTask(first.getId()).getDueDate());
+        assertEquals(List.of("x", "y"), reloaded.getTask(first.getId()).getTags());
+
+        Task read = TaskStorage.readTask(BINARY_FILE, second.getId());
+        assertEquals("Second", read.getTitle());
+        assertNull(read.getDescription());
+        assertEquals(TaskStatus.DONE, read.getStatus());
+        assertEquals(second.getCompletedAt(), read.getCompletedAt());
+        assertNull(TaskStorage.readTask(BINARY_FILE, "missing"));
+    }
+
+    @Test
+    void readTask_shouldApplyTheJournalToAJsonSnapshot() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task kept = new Task("Kept");
+        Task deleted = new Task("Deleted");
+        storage.addTask(kept);
+        storage.addTask(deleted);
+        storage.setJournaled(true);
+        storage.modifyTask(kept.getId(), task -> {
+            task.setTitle("Renamed in the journal");
+            return true;
+        });
+        storage.deleteTask(deleted.getId());
+        storage.close();
+
+        assertEquals("Renamed in the journal", TaskStorage.readTask(STORAGE_FILE, kept.getId()).getTitle());
+        assertNull(TaskStorage.readTask(STORAGE_FILE, deleted.getId()));
+        assertNull(TaskStorage.readTask(STORAGE_FILE, "missing"));
+    }
+
+    @Test
+    void exportAndImportJson_shouldMoveTasksBetweenFormats() {
+        TaskStorage binary = new TaskStorage(BINARY_FILE);
+        Task task = new Task("Exported", "", TaskPriority.URGENT, null, List.of("ship"));
+        binary.addTask(task);
+
+        assertTrue(binary.exportJson(EXPORT_FILE));
+        TaskStorage json = new TaskStorage(STORAGE_FILE);
+        assertEquals(1, json.importJson(EXPORT_FILE));
+
+        assertEquals("Exported", new TaskStorage(STORAGE_FILE).getTask(task.getId()).getTitle());
+        assertEquals(1, json.getTasksByTags(List.of("ship"), null).size());
+        assertEquals(-1, json.importJson("missing-file.json"));
+    }
+
+    @Test
+    void groupDurability_shouldCoalesceMutationsUntilFlushed() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        storage.setGroupCommitWindow(Duration.ofMinutes(1));
+        storage.setDurability(Durability.GROUP);
+
+        Task first = new Task("First");
+        storage.addTask(first);
+        storage.addTask(new Task("Second"));
+        storage.deleteTask(first.getId());
+
+        assertFalse(new File(STORAGE_FILE).exists());
+        assertEquals(3, storage.getPendingMutationCount());
+
+        storage.flush();
+        assertEquals(0, storage.getPendingMutationCount());
+        assertEquals(1, new TaskStorage(STORAGE_FILE).getAllTasks().size());
+        storage.close();
+    }
+
+    @Test
+    void flush_shouldKeepMutationsPendingWhenTheWriteFails() throws IOException {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        storage.setGroupCommitWindow(Duration.ofMinutes(1));
+        storage.setDurability(Durability.GROUP);
+        storage.addTask(new Task("First"));
+        storage.addTask(new Task("Second"));
+
+        // The snapshot is written to a sibling file first, which cannot be created over a directory
+        Path blocker = Files.createDirectory(Path.of(STORAGE_FILE + ".tmp"));
+        assertFalse(storage.flush());
+        assertEquals(2, storage.getPendingMutationCount());
+        assertFalse(new File(STORAGE_FILE).exists());
+
+        Files.delete(blocker);
+        assertTrue(storage.flush());
+        assertEquals(0, storage.getPendingMutationCount());
+        assertEquals(2, new TaskStorage(STORAGE_FILE).getAllTasks().size());
+        storage.close();
+    }
+
+    @Test
+    void asyncDurability_shouldWriteInBackgroundAndFlushOnClose() throws Exception {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        storage.setDurability(Durability.ASYNC);
+
+        for (int i = 0; i < 100; i++) {
+            storage.addTask(new Task("Task " + i));
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (storage.getPendingMutationCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, storage.getPendingMutationCount());
+        assertEquals(100, new TaskStorage(STORAGE_FILE).getAllTasks().size());
+
+        Task last = new Task("Last");
+        storage.addTask(last);
+        storage.close();
+        assertNotNull(new TaskStorage(STORAGE_FILE).getTask(last.getId()));
+    }
+
+    @Test
+    void switchingBackToSync_shouldFlushPendingMutations() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        storage.setGroupCommitWindow(Duration.ofMinutes(1));
+        storage.setDurability(Durability.GROUP);
+        storage.addTask(new Task("Pending"));
+
+        storage.setDurability(Durability.SYNC);
+
+        assertEquals(0, storage.getPendingMutationCount());
+        assertEquals(1, new TaskStorage(STORAGE_FILE).getAllTasks().size());
+    }
+
+    @Test
+    void addTasks_shouldPersistWholeBatchInOneAppend() throws Exception {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new Task("Task " + i));
+        }
+
+        List<String> ids = storage.addTasks(batch);
+        storage.close();
+
+        assertEquals(100, ids.size());
+        assertEquals(100, Files.readAllLines(Path.of(STORAGE_FILE + TaskJournal.LOG_SUFFIX)).size());
+        assertEquals(100, new TaskStorage(STORAGE_FILE).getTasksByStatus(TaskStatus.TODO).size());
+    }
+
+    @Test
+    void batch_shouldChangeNothingWhenAnyTargetIsMissing() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task task = new Task("Existing");
+        storage.addTask(task);
+        Task updates = new Task("Renamed");
+
+        assertFalse(storage.updateTasks(Map.of(task.getId(), updates, "missing", updates)));
+        assertFalse(storage.deleteTasks(List.of(task.getId(), "missing")));
+        assertFalse(storage.applyBatch(new TaskBatch()
+                .delete(task.getId())
+                .modify(task.getId(), t -> t.setStatus(TaskStatus.DONE))));
+
+        assertEquals("Existing", storage.getTask(task.getId()).getTitle());
+        assertEquals(TaskStatus.TODO, new TaskStorage(STORAGE_FILE).getTask(task.getId()).getStatus());
+    }
+
+    @Test
+    void applyBatch_shouldApplyMixedOperationsInOrder() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE, true);
+        Task kept = new Task("Kept");
+        Task removed = new Task("Removed");
+        storage.addTask(removed);
+
+        assertTrue(storage.applyBatch(new TaskBatch()
+                .add(kept)
+                .modify(kept.getId(), task -> task.addTag("batch"))
+                .update(kept.getId(), new Task("Kept and renamed"))
+                .delete(removed.getId())));
+        storage.close();
+
+        TaskStorage reloaded = new TaskStorage(STORAGE_FILE);
+        assertEquals(1, reloaded.getAllTasks().size());
+        assertEquals("Kept and renamed", reloaded.getTask(kept.getId()).getTitle());
+        assertEquals(1, reloaded.getTasksByTags(List.of("batch"), null).size());
+        assertNull(reloaded.getTask(removed.getId()));
+    }
+
+    @Test
+    void applyBatch_shouldPublishTheWholeBatchAsOneVersion() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task kept = new Task("Kept");
+        Task removed = new Task("Removed");
+        storage.addTask(kept);
+        storage.addTask(removed);
+        TaskSnapshot before = storage.snapshot();
+        Task added = new Task("Added");
+
+        assertTrue(storage.applyBatch(new TaskBatch()
+                .add(added)
+                .modify(kept.getId(), task -> task.setTitle("Kept and renamed"))
+                .delete(removed.getId())));
+
+        TaskSnapshot after = storage.snapshot();
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals("Kept", before.getTask(kept.getId()).getTitle());
+        assertNotNull(before.getTask(removed.getId()));
+        assertEquals("Kept and renamed", after.getTask(kept.getId()).getTitle());
+        assertNull(after.getTask(removed.getId()));
+        TaskChanges changes = storage.changesSince(before.getVersion());
+        assertEquals(Set.of(added.getId()), changes.getCreated());
+        assertEquals(Set.of(kept.getId()), changes.getUpdated());
+        assertEquals(Set.of(removed.getId()), changes.getDeleted());
+    }
+
+    @Test
+    void applyBatch_shouldChangeNothingWhenAChangeThrows() {
+        TaskStorage storage = new TaskStorage(STORAGE_FILE);
+        Task first = new Task("X");
+        Task second = new Task("Y");
+        storage.addTask(first);
+        storage.addTask(second);
+
+        assertThrows(IllegalStateException.class, () -> storage.applyBatch(new TaskBatch()
+                .modify(first.getId(), task -> task.setTitle("X2"))
+                .modify(second.getId(), task -> {
+                    throw new IllegalStateException("rejected");
+                })));
+        storage.addTask(new Task("Unrelated"));
+        storage.close();
+
+        assertEquals("X", storage.getTask(first.getId()).getTitle());
+        assertEquals("X", new TaskStorage(STORAGE_FILE).getTask(first.getId()).getTitle());
+    }
+
+    @Test
+    void writes_shouldMergeWithChangesAnotherStorageMadeToTheFile() {
+        TaskStorage first = new TaskStorage(STORAGE_FILE);
+        TaskStorage second = new TaskStorage(STORAGE_FILE);
+        Task shared = new Task("Shared");
+        first.addTask(shared);
+
+        Task added = new Task("Added by second");
+        second.addTask(added);
+        assertEquals("Shared", second.getTask(shared.getId()).getTitle());
+
+        assertTrue(first.updateTask(shared.getId(), new Task("Renamed by first")));
+        assertTrue(second.deleteTask(added.getId()));
+        first.close();
+        second.close();
+
+        TaskStorage reloaded = new TaskStorage(STORAGE_FILE);
+        assertEquals(1, reloaded.getAllTasks().size());
+        assertEquals("Renamed by first", reloaded.getTask(shared.getId()).getTitle());
+        assertEquals(1, reloaded.getTasksByStatus(TaskStatus.TODO).size());
+    }
+
+    @Test
+    void refresh_shouldReadOnlyRecordsAppendedSinceTheLastRead() {
+        TaskStorage writer = new TaskStorage(STORAGE_FILE, true);
+        writer.addTask(new Task("Before"));
+        AtomicInteger snapshotReads = new AtomicInteger();
+        TaskStorage reader = new TaskStorage(STORAGE_FILE, true) {
+            @Override
+            void readSnapshot(Consumer<Task> sink) throws IOException {
+                snapshotReads.incrementAndGet();
+                super.readSnapshot(sink);
+            }
+        };
+        assertFalse(reader.refresh());
+
+        Task added = new Task("After");
+        writer.addTask(added);
+        writer.deleteTask(writer.getAllTasks().stream()
+                .filter(task -> task.getTitle().equals("Before")).findFirst().orElseThrow().getId());
+
+        assertTrue(reader.refresh());
+        assertEquals(List.of("After"), titles(reader.getAllTasks()));
+        assertEquals(1, reader.getTasksByStatus(TaskStatus.TODO).size());
+        assertFalse(reader.refresh());
+        assertEquals(1, snapshotReads.get());
+        writer.close();
+        reader.close();
+    }
+
+    @Test
+    void refresh_shouldReloadOnlyWhenTheSnapshotContentChanged() throws Exception {
+        TaskStorage writer = new TaskStorage(STORAGE_FILE);
+        writer.addTask(new Task("First"));
+        TaskStorage reader = new TaskStorage(STORAGE_FILE);
+        Path file = Path.of(STORAGE_FILE);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertFalse(reader.refresh());
+
+        writer.addTask(new Task("Second"));
+        assertTrue(reader.refresh());
+        assertEquals(2, reader.getAllTasks().size());
+        assertFalse(reader.refresh());
+    }
+
+    private static List<String> titles(List<Task> tasks) {
+        List<String> titles = new ArrayList<>();
+        tasks.forEach(task -> titles.add(task.getTitle()));
+        return titles;
+    }
+}
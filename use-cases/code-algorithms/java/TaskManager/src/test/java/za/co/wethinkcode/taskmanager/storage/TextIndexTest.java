@@ -0,0 +1,98 @@
+package za.co.wethinkcode.taskmanager.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.wethinkcode.taskmanager.model.Task;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextIndexTest {
+
+    private static final String STORAGE_FILE = "test_text_index.json";
+
+    private TaskStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new TaskStorage(STORAGE_FILE, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+        for (String suffix : new String[]{"", ".tmp", TaskJournal.LOG_SUFFIX, TaskJournal.ROTATED_SUFFIX,
+                StoreFileGuard.LOCK_SUFFIX}) {
+            new File(STORAGE_FILE + suffix).delete();
+        }
+    }
+
+    @Test
+    void tokenize_shouldLowerCaseAndSplitOnAnythingButLettersAndDigits() {
+        assertEquals(List.of("fix", "login", "page", "v2"), TextIndex.tokenize("Fix LOGIN-page (v2)!"));
+        assertTrue(TextIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void search_shouldRequireEveryWordAndRankTitleMatchesFirst() {
+        String inDescription = storage.addTask(new Task("Weekly chores", "Fix the login page"));
+        String inTitle = storage.addTask(new Task("Login page broken", "Needs a fix"));
+        storage.addTask(new Task("Login audit", "Nothing to repair"));
+
+        List<String> result = ids(storage.search("fix login", 10));
+
+        assertEquals(List.of(inTitle, inDescription), result);
+        assertEquals(1, storage.search("fix login", 1).size());
+        assertTrue(storage.search("fix unicorn", 10).isEmpty());
+        assertTrue(storage.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void search_shouldFollowTitleAndDescriptionChanges() {
+        Task task = new Task("Draft report", "Quarterly numbers");
+        String taskId = storage.addTask(task);
+
+        Task stored = storage.getTask(taskId);
+        stored.setTitle("Final summary");
+        storage.saveTask(stored);
+        Task updates = new Task("Final summary", "Annual numbers");
+        storage.updateTask(taskId, updates);
+
+        assertTrue(storage.search("draft", 10).isEmpty());
+        assertTrue(storage.search("quarterly", 10).isEmpty());
+        assertEquals(List.of(taskId), ids(storage.search("annual summary", 10)));
+
+        storage.deleteTask(taskId);
+        assertTrue(storage.search("summary", 10).isEmpty());
+    }
+
+    @Test
+    void substringSearch_shouldMatchInsideWordsAndDriveTextQueries() {
+        String login = storage.addTask(new Task("Login page", null));
+        storage.addTask(new Task("Catalogue", "Dialogue"));
+        for (int i = 0; i < 50; i++) {
+            storage.addTask(new Task("Routine " + i, "Nothing special"));
+        }
+
+        assertTrue(storage.search("ogi", 10).isEmpty());
+        assertEquals("scan", storage.explain(new TaskQuery().text("logi")));
+
+        storage.setSubstringSearch(true);
+
+        assertEquals(List.of(login), ids(storage.search("ogin", 10)));
+        assertEquals(2, storage.search("log", 10).size());
+        assertEquals("text", storage.explain(new TaskQuery().text("logi")));
+        assertEquals(List.of(login), ids(storage.query(new TaskQuery().text("login p")).collect(Collectors.toList())));
+
+        storage.addTask(new Task("Blogging", null));
+        assertEquals(3, storage.search("log", 10).size());
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
@@ -5,9 +5,15 @@ import org.junit.jupiter.api.Test;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskPriority;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.TaskChanges;
+import za.co.wethinkcode.taskmanager.storage.TaskStorage;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -254,6 +260,56 @@ class TaskMergeServiceTest {
         assertEquals(TaskStatus.DONE, result.getMergedTasks().get(taskId4).getStatus());
     }
 
+    @Test
+    void mergeChanges_shouldMergeOnlyWhatChangedSinceTheLastSync() throws IOException {
+        Path directory = Files.createTempDirectory("task-merge");
+        try {
+            TaskStorage storage = new TaskStorage(directory.resolve("tasks.json").toString());
+            for (String id : List.of(taskId1, taskId2, taskId3, taskId4, "task-7")) {
+                storage.addTask(createTask(id, "Synced " + id, "Description", TaskPriority.MEDIUM, TaskStatus.TODO, now));
+            }
+            long synced = storage.changesSince(0).getSequence();
+
+            storage.modifyTask(taskId1, task -> {
+                task.setTitle("Edited here");
+                task.setUpdatedAt(now.plusMinutes(5));
+                return true;
+            });
+            storage.modifyTask(taskId4, task -> {
+                task.setTitle("Edited here first");
+                task.setUpdatedAt(now.plusMinutes(1));
+                return true;
+            });
+            storage.deleteTask(taskId2);
+            storage.addTask(createTask("task-5", "Created here", "Description", TaskPriority.LOW, TaskStatus.TODO, now));
+
+            Map<String, Task> remoteChanges = new HashMap<>();
+            remoteChanges.put(taskId3, createTask(taskId3, "Edited remotely", "Description", TaskPriority.HIGH, TaskStatus.TODO, now.plusMinutes(2)));
+            remoteChanges.put(taskId4, createTask(taskId4, "Edited remotely later", "Description", TaskPriority.HIGH, TaskStatus.TODO, now.plusMinutes(3)));
+            remoteChanges.put("task-6", createTask("task-6", "Created remotely", "Description", TaskPriority.LOW, TaskStatus.TODO, now));
+            remoteChanges.put("task-7", null);
+
+            TaskChanges changes = storage.changesSince(synced);
+            TaskMergeService.MergeResult result = mergeService.mergeChanges(storage.snapshot(), changes, remoteChanges);
+
+            assertEquals(Set.of(taskId1), result.getToUpdateRemote().keySet());
+            assertEquals(Set.of("task-5"), result.getToCreateRemote().keySet());
+            assertEquals(Set.of(taskId2), result.getToDeleteRemote());
+            assertEquals(Set.of(taskId3, taskId4), result.getToUpdateLocal().keySet());
+            assertEquals("Edited remotely later", result.getMergedTasks().get(taskId4).getTitle());
+            assertEquals(Set.of("task-6"), result.getToCreateLocal().keySet());
+            assertEquals(Set.of("task-7"), result.getToDeleteLocal());
+            assertEquals(Set.of(taskId1, taskId3, taskId4, "task-5", "task-6"), result.getMergedTasks().keySet());
+            storage.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
     // Helper method to create tasks with specific properties
     private Task createTask(String id, String title, String description, TaskPriority priority, 
                            TaskStatus status, LocalDateTime timestamp) {
@@ -3,9 +3,11 @@ package za.co.wethinkcode.taskmanager.util;
 import za.co.wethinkcode.taskmanager.model.Task;
 import za.co.wethinkcode.taskmanager.model.TaskPriority;
 import za.co.wethinkcode.taskmanager.model.TaskStatus;
+import za.co.wethinkcode.taskmanager.storage.ColumnarTasks;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -137,4 +139,33 @@ class TaskPriorityManagerTest {
         assertEquals(task4, topTasks.get(0));
         assertEquals(task3, topTasks.get(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    void calculateTaskScores_shouldMatchThePerTaskScoreForEveryRow() {
+        // Arrange: due dates half a day off whole-day boundaries, so the second-level rounding cannot matter
+        LocalDateTime now = LocalDateTime.now();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Task task = new Task("Task " + i, "", TaskPriority.values()[i % 4],
+                    i % 5 == 0 ? null : now.plusHours(i * 12L - 200), i % 3 == 0 ? List.of("critical") : List.of());
+            task.setStatus(TaskStatus.values()[i % 4]);
+            task.setUpdatedAt(now.minusHours(i * 5L + 2));
+            tasks.add(task);
+        }
+        ColumnarTasks columns = ColumnarTasks.of(tasks);
+
+        // Act
+        int[] scores = TaskPriorityManager.calculateTaskScores(columns, now);
+        List<String> top = TaskPriorityManager.getTopPriorityTaskIds(columns, 3, now);
+
+        // Assert
+        for (Task task : tasks) {
+            assertEquals(TaskPriorityManager.calculateTaskScore(task), scores[columns.rowOf(task.getId())]);
+        }
+        List<Task> expectedTop = TaskPriorityManager.getTopPriorityTasks(tasks, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TaskPriorityManager.calculateTaskScore(expectedTop.get(i)),
+                    scores[columns.rowOf(top.get(i))]);
+        }
+    }
+}